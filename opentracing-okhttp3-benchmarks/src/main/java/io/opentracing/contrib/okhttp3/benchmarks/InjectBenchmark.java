@@ -0,0 +1,82 @@
+package io.opentracing.contrib.okhttp3.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import io.opentracing.Span;
+import io.opentracing.contrib.okhttp3.HeadersInjectAdapter;
+import io.opentracing.contrib.okhttp3.RequestBuilderInjectAdapter;
+import io.opentracing.mock.MockTracer;
+import io.opentracing.propagation.Format;
+import okhttp3.Request;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost of rebuilding a request with injected span context, {@link RequestBuilderInjectAdapter}
+ * (add semantics) against {@link HeadersInjectAdapter} (set semantics).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class InjectBenchmark {
+
+    /**
+     * Number of headers the request already has.
+     */
+    @Param({"2", "10"})
+    public int requestHeaders;
+
+    /**
+     * Number of baggage items, each is injected as a header.
+     */
+    @Param({"0", "4"})
+    public int baggageItems;
+
+    private final MockTracer tracer = new MockTracer(MockTracer.Propagator.TEXT_MAP);
+    private Span span;
+    private Request request;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        span = tracer.buildSpan("GET").start();
+        for (int i = 0; i < baggageItems; i++) {
+            span.setBaggageItem("item" + i, "value" + i);
+        }
+
+        Request.Builder builder = new Request.Builder()
+                .url("http://localhost/users/42");
+        for (int i = 0; i < requestHeaders; i++) {
+            builder.header("X-Header-" + i, "value" + i);
+        }
+        request = builder.build();
+    }
+
+    @Benchmark
+    public Request addHeader() {
+        Request.Builder requestBuilder = request.newBuilder();
+        tracer.inject(span.context(), Format.Builtin.HTTP_HEADERS, new RequestBuilderInjectAdapter(requestBuilder));
+        return requestBuilder.tag(span).build();
+    }
+
+    @Benchmark
+    public Request setHeaders() {
+        HeadersInjectAdapter injectAdapter = new HeadersInjectAdapter();
+        tracer.inject(span.context(), Format.Builtin.HTTP_HEADERS, injectAdapter);
+        return injectAdapter.newBuilder(request)
+                .tag(span)
+                .build();
+    }
+}
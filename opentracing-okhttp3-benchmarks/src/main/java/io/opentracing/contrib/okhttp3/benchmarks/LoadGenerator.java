@@ -0,0 +1,173 @@
+package io.opentracing.contrib.okhttp3.benchmarks;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import io.opentracing.contrib.okhttp3.LatencyHistogram;
+import okhttp3.HttpUrl;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * Closed loop load: each of {@code threads} executes calls back to back, first for the warmup and then
+ * for the measured duration.
+ *
+ * <p>Reports throughput, latency percentiles and bytes allocated per call by the calling threads.
+ * Calls are executed synchronously, so interceptors run on the calling threads and their allocation is included.
+ */
+public class LoadGenerator {
+
+    private final int threads;
+    private final long warmupNanos;
+    private final long durationNanos;
+
+    /**
+     * @param threads number of calling threads
+     * @param warmup warmup duration, calls are not measured
+     * @param duration measured duration
+     * @param unit unit of durations
+     */
+    public LoadGenerator(int threads, long warmup, long duration, TimeUnit unit) {
+        if (threads <= 0) {
+            throw new IllegalArgumentException("threads must be positive: " + threads);
+        }
+        this.threads = threads;
+        this.warmupNanos = unit.toNanos(warmup);
+        this.durationNanos = unit.toNanos(duration);
+    }
+
+    /**
+     * @param client client to load
+     * @param url URL called by all threads
+     * @return measured result
+     */
+    public Result run(final OkHttpClient client, final HttpUrl url) throws InterruptedException {
+        final Request request = new Request.Builder()
+                .url(url)
+                .build();
+        final LatencyHistogram latency = new LatencyHistogram();
+        final AtomicLong errors = new AtomicLong();
+        final AtomicLong allocatedBytes = new AtomicLong();
+        final CountDownLatch started = new CountDownLatch(threads);
+        final CountDownLatch done = new CountDownLatch(threads);
+        final com.sun.management.ThreadMXBean threadMXBean = threadMXBean();
+
+        final long startNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(100);
+        final long measureNanos = startNanos + warmupNanos;
+        final long endNanos = measureNanos + durationNanos;
+        for (int i = 0; i < threads; i++) {
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    started.countDown();
+                    try {
+                        while (System.nanoTime() < measureNanos) {
+                            execute(client, request);
+                        }
+                        long allocated = allocatedBytes(threadMXBean);
+                        long now;
+                        while ((now = System.nanoTime()) < endNanos) {
+                            if (execute(client, request)) {
+                                latency.recordNanos(System.nanoTime() - now);
+                            } else {
+                                errors.incrementAndGet();
+                            }
+                        }
+                        allocatedBytes.addAndGet(allocatedBytes(threadMXBean) - allocated);
+                    } finally {
+                        done.countDown();
+                    }
+                }
+            }, "load-generator-" + i);
+            thread.setDaemon(true);
+            thread.start();
+        }
+        started.await();
+        done.await();
+
+        LatencyHistogram.Snapshot snapshot = latency.snapshot();
+        long calls = snapshot.count() + errors.get();
+        return new Result(snapshot, errors.get(), durationNanos,
+                threadMXBean == null || calls == 0 ? -1 : allocatedBytes.get() / calls);
+    }
+
+    private static boolean execute(OkHttpClient client, Request request) {
+        try {
+            Response response = client.newCall(request).execute();
+            response.body().close();
+            return response.isSuccessful();
+        } catch (IOException ex) {
+            return false;
+        }
+    }
+
+    private static com.sun.management.ThreadMXBean threadMXBean() {
+        java.lang.management.ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+        if (threadMXBean instanceof com.sun.management.ThreadMXBean
+                && ((com.sun.management.ThreadMXBean) threadMXBean).isThreadAllocatedMemorySupported()) {
+            ((com.sun.management.ThreadMXBean) threadMXBean).setThreadAllocatedMemoryEnabled(true);
+            return (com.sun.management.ThreadMXBean) threadMXBean;
+        }
+        return null;
+    }
+
+    private static long allocatedBytes(com.sun.management.ThreadMXBean threadMXBean) {
+        return threadMXBean == null ? 0 : threadMXBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    /**
+     * Result of one {@link #run(OkHttpClient, HttpUrl)}.
+     */
+    public static final class Result {
+        private final LatencyHistogram.Snapshot latency;
+        private final long errors;
+        private final long durationNanos;
+        private final long bytesPerCall;
+
+        Result(LatencyHistogram.Snapshot latency, long errors, long durationNanos, long bytesPerCall) {
+            this.latency = latency;
+            this.errors = errors;
+            this.durationNanos = durationNanos;
+            this.bytesPerCall = bytesPerCall;
+        }
+
+        /**
+         * @return latency of successful calls
+         */
+        public LatencyHistogram.Snapshot latency() {
+            return latency;
+        }
+
+        /**
+         * @return failed calls and calls with unsuccessful status code
+         */
+        public long errors() {
+            return errors;
+        }
+
+        /**
+         * @return successful calls per second
+         */
+        public double throughput() {
+            return latency.count() * (double) TimeUnit.SECONDS.toNanos(1) / durationNanos;
+        }
+
+        /**
+         * @return bytes allocated per call by calling threads, -1 if the JVM does not measure allocation
+         */
+        public long bytesPerCall() {
+            return bytesPerCall;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%.0f calls/s, p50 %d us, p99 %d us, p999 %d us, %d B/call, %d errors",
+                    throughput(), latency.percentileMicros(0.5), latency.percentileMicros(0.99),
+                    latency.percentileMicros(0.999), bytesPerCall, errors);
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package io.opentracing.contrib.okhttp3.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import io.opentracing.contrib.okhttp3.OperationNameResolver;
+import io.opentracing.contrib.okhttp3.RouteTemplateResolver;
+import okhttp3.Request;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Latency of resolving an operation name with {@link RouteTemplateResolver} compared to the HTTP method default.
+ *
+ * <p>Resolvers are compiled with {@code templates} routes of 2 - 4 segments, requests are built once
+ * so only the lookup is measured.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OperationNameBenchmark {
+
+    @Param({"10", "1000"})
+    public int templates;
+
+    private OperationNameResolver resolver;
+
+    private Request literal;
+    private Request variables;
+    private Request notMatched;
+
+    @Setup
+    public void setup() {
+        List<String> routes = new ArrayList<>();
+        for (int i = 0; i < templates; i++) {
+            routes.add("/api/resource" + i + "/{id}");
+            routes.add("/api/resource" + i + "/{id}/items/{itemId}");
+            routes.add("/api/resource" + i + "/search");
+        }
+        resolver = new RouteTemplateResolver(routes);
+
+        literal = request("/api/resource7/search");
+        variables = request("/api/resource7/8b1f3e2a-5c1d-4a7e-9f10-3b2c1d0e9f8a/items/42");
+        notMatched = request("/api/unknown/42/items");
+    }
+
+    @Benchmark
+    public String method() {
+        return OperationNameResolver.METHOD.operationName(variables);
+    }
+
+    @Benchmark
+    public String literal() {
+        return resolver.operationName(literal);
+    }
+
+    @Benchmark
+    public String variables() {
+        return resolver.operationName(variables);
+    }
+
+    @Benchmark
+    public String notMatched() {
+        return resolver.operationName(notMatched);
+    }
+
+    private static Request request(String path) {
+        return new Request.Builder()
+                .url("http://localhost:8080" + path)
+                .build();
+    }
+}
@@ -0,0 +1,167 @@
+package io.opentracing.contrib.okhttp3.benchmarks;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.util.concurrent.TimeUnit;
+
+import io.opentracing.NoopSpan;
+import io.opentracing.Span;
+import io.opentracing.contrib.okhttp3.DeduplicatingErrorLogger;
+import io.opentracing.contrib.okhttp3.SpanDecorator;
+import io.opentracing.contrib.okhttp3.StandardTagsDecorator;
+import okhttp3.Connection;
+import okhttp3.Handshake;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.Route;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost of {@link SpanDecorator#STANDARD_TAGS} callbacks in isolation, with a no-op span so that
+ * only the decorator's own work is measured. Run with {@code -prof gc} and compare
+ * {@code gc.alloc.rate.norm} of {@code standard} against the {@code legacy} baseline.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SpanDecoratorBenchmark {
+
+    /**
+     * {@code legacy} - baseline, {@code standard} - {@link SpanDecorator#STANDARD_TAGS},
+     * {@code deduplicating} - standard tags with {@link DeduplicatingErrorLogger}.
+     */
+    @Param({"legacy", "standard", "deduplicating"})
+    public String decorator;
+
+    private SpanDecorator spanDecorator;
+    private final Span span = NoopSpan.INSTANCE;
+
+    private StandInServer server;
+    private Socket socket;
+    private Connection connection;
+
+    private Request request;
+    private Response response;
+    private Response redirect;
+    private Throwable error;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        if ("legacy".equals(decorator)) {
+            spanDecorator = new LegacyStandardTags();
+        } else if ("standard".equals(decorator)) {
+            spanDecorator = SpanDecorator.STANDARD_TAGS;
+        } else if ("deduplicating".equals(decorator)) {
+            spanDecorator = new StandardTagsDecorator(new DeduplicatingErrorLogger());
+        } else {
+            throw new IllegalArgumentException("Unknown decorator: " + decorator);
+        }
+
+        server = new StandInServer();
+        socket = new Socket(InetAddress.getLoopbackAddress(), server.getPort());
+        connection = new SocketConnection(socket);
+
+        request = new Request.Builder()
+                .url(server.url("/users/42/orders?page=1"))
+                .build();
+        response = response(200);
+        redirect = response(302).newBuilder()
+                .header("Location", "/ok")
+                .build();
+        error = new SocketTimeoutException("timeout");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        socket.close();
+        server.close();
+    }
+
+    @Benchmark
+    public Span onRequest() {
+        spanDecorator.onRequest(request, span);
+        return span;
+    }
+
+    @Benchmark
+    public Span onResponse() {
+        spanDecorator.onResponse(response, span);
+        return span;
+    }
+
+    @Benchmark
+    public Span onNetworkResponse() {
+        spanDecorator.onNetworkResponse(connection, response, span);
+        return span;
+    }
+
+    @Benchmark
+    public Span onNetworkResponseRedirect() {
+        spanDecorator.onNetworkResponse(connection, redirect, span);
+        return span;
+    }
+
+    @Benchmark
+    public Span onError() {
+        spanDecorator.onError(error, span);
+        return span;
+    }
+
+    private Response response(int code) {
+        return new Response.Builder()
+                .request(request)
+                .protocol(Protocol.HTTP_1_1)
+                .code(code)
+                .message("")
+                .build();
+    }
+
+    /**
+     * Connection backed by a plain socket, enough for decorators reading peer information.
+     */
+    static class SocketConnection implements Connection {
+        private final Socket socket;
+
+        SocketConnection(Socket socket) {
+            this.socket = socket;
+        }
+
+        @Override
+        public Route route() {
+            return null;
+        }
+
+        @Override
+        public Socket socket() {
+            return socket;
+        }
+
+        @Override
+        public Handshake handshake() {
+            return null;
+        }
+
+        @Override
+        public Protocol protocol() {
+            return Protocol.HTTP_1_1;
+        }
+    }
+}
@@ -0,0 +1,181 @@
+package io.opentracing.contrib.okhttp3.benchmarks;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.Charset;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import okhttp3.HttpUrl;
+
+/**
+ * Minimal in-process HTTP/1.1 server used as a stand-in for a real backend.
+ *
+ * <p>Unlike {@code MockWebServer} it does not record requests, so it can serve millions of
+ * calls during a benchmark run without growing the heap. Connections are kept alive and
+ * served by one thread each.
+ *
+ * <p>Routes:
+ * <ul>
+ *     <li>{@code /redirect} responds {@code 302} with {@code Location: /ok}</li>
+ *     <li>anything else responds {@code 200} with a two byte body</li>
+ * </ul>
+ */
+public class StandInServer implements Closeable {
+
+    private static final Charset ASCII = Charset.forName("US-ASCII");
+
+    private static final byte[] OK = ("HTTP/1.1 200 OK\r\n"
+            + "Content-Length: 2\r\n"
+            + "Content-Type: text/plain\r\n"
+            + "\r\n"
+            + "ok").getBytes(ASCII);
+
+    private static final byte[] REDIRECT = ("HTTP/1.1 302 Found\r\n"
+            + "Location: /ok\r\n"
+            + "Content-Length: 0\r\n"
+            + "\r\n").getBytes(ASCII);
+
+    private final ServerSocket serverSocket;
+    private final Set<Socket> connections = Collections.newSetFromMap(new ConcurrentHashMap<Socket, Boolean>());
+    private volatile boolean closed;
+
+    public StandInServer() throws IOException {
+        this.serverSocket = new ServerSocket(0, 1024, InetAddress.getLoopbackAddress());
+        Thread acceptor = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                acceptConnections();
+            }
+        }, "stand-in-server-acceptor");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    public HttpUrl url(String path) {
+        return new HttpUrl.Builder()
+                .scheme("http")
+                .host(serverSocket.getInetAddress().getHostAddress())
+                .port(getPort())
+                .addPathSegments(path.startsWith("/") ? path.substring(1) : path)
+                .build();
+    }
+
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        serverSocket.close();
+        for (Socket socket: connections) {
+            socket.close();
+        }
+    }
+
+    private void acceptConnections() {
+        while (!closed) {
+            final Socket socket;
+            try {
+                socket = serverSocket.accept();
+                socket.setTcpNoDelay(true);
+            } catch (IOException ex) {
+                return;
+            }
+            connections.add(socket);
+            Thread worker = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        serve(socket);
+                    } catch (IOException ex) {
+                        // client went away
+                    } finally {
+                        connections.remove(socket);
+                        try {
+                            socket.close();
+                        } catch (IOException ex) {
+                        }
+                    }
+                }
+            }, "stand-in-server-" + socket.getPort());
+            worker.setDaemon(true);
+            worker.start();
+        }
+    }
+
+    private void serve(Socket socket) throws IOException {
+        InputStream in = new BufferedInputStream(socket.getInputStream());
+        OutputStream out = socket.getOutputStream();
+        StringBuilder line = new StringBuilder(128);
+
+        while (!closed) {
+            if (!readLine(in, line)) {
+                return;
+            }
+            String requestLine = line.toString();
+            long contentLength = 0;
+            while (readLine(in, line) && line.length() > 0) {
+                if (regionMatches(line, "content-length:")) {
+                    contentLength = Long.parseLong(line.substring("content-length:".length()).trim());
+                }
+            }
+            skip(in, contentLength);
+
+            int pathStart = requestLine.indexOf(' ') + 1;
+            int pathEnd = requestLine.indexOf(' ', pathStart);
+            String path = requestLine.substring(pathStart, pathEnd);
+            out.write(path.equals("/redirect") ? REDIRECT : OK);
+            out.flush();
+        }
+    }
+
+    private static boolean readLine(InputStream in, StringBuilder line) throws IOException {
+        line.setLength(0);
+        int c;
+        while ((c = in.read()) != -1) {
+            if (c == '\n') {
+                int length = line.length();
+                if (length > 0 && line.charAt(length - 1) == '\r') {
+                    line.setLength(length - 1);
+                }
+                return true;
+            }
+            line.append((char) c);
+        }
+        return false;
+    }
+
+    private static boolean regionMatches(StringBuilder line, String lowerCasePrefix) {
+        if (line.length() < lowerCasePrefix.length()) {
+            return false;
+        }
+        for (int i = 0; i < lowerCasePrefix.length(); i++) {
+            if (Character.toLowerCase(line.charAt(i)) != lowerCasePrefix.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void skip(InputStream in, long count) throws IOException {
+        while (count > 0) {
+            long skipped = in.skip(count);
+            if (skipped <= 0) {
+                if (in.read() == -1) {
+                    throw new IOException("unexpected end of stream");
+                }
+                skipped = 1;
+            }
+            count -= skipped;
+        }
+    }
+}
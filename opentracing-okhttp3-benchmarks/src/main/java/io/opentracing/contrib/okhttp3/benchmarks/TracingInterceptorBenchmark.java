@@ -0,0 +1,164 @@
+package io.opentracing.contrib.okhttp3.benchmarks;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import io.opentracing.NoopTracerFactory;
+import io.opentracing.Tracer;
+import io.opentracing.contrib.okhttp3.OperationThresholds;
+import io.opentracing.contrib.okhttp3.ProbabilisticSampler;
+import io.opentracing.contrib.okhttp3.SpanDecorator;
+import io.opentracing.contrib.okhttp3.TracingInterceptor;
+import io.opentracing.mock.MockTracer;
+import okhttp3.HttpUrl;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Per call cost of {@link TracingInterceptor} compared to a client without tracing.
+ *
+ * <p>Calls go to an in-process {@link StandInServer} over loopback, so the difference between
+ * {@code bare} and the traced variants is the cost of the interceptor, decorators and header injection.
+ * Run with {@code -prof gc} to get {@code gc.alloc.rate.norm} (bytes allocated per call).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TracingInterceptorBenchmark {
+
+    /**
+     * {@code bare} - client without interceptor, {@code noop} - no-op tracer,
+     * {@code mock} - {@link MockTracer} which keeps finished spans in memory,
+     * {@code unsampled} - {@link MockTracer} with a sampler rejecting all calls,
+     * {@code bodies} - {@link MockTracer} tracing request and response bodies,
+     * {@code deferred} - {@link MockTracer} with spans deferred, only the error path builds spans.
+     */
+    @Param({"bare", "noop", "mock", "unsampled", "bodies", "deferred"})
+    public String tracing;
+
+    private StandInServer server;
+    private MockTracer mockTracer;
+    private OkHttpClient client;
+
+    private HttpUrl okUrl;
+    private HttpUrl redirectUrl;
+    private HttpUrl unreachableUrl;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        server = new StandInServer();
+        okUrl = server.url("/ok");
+        redirectUrl = server.url("/redirect");
+        unreachableUrl = unreachableUrl();
+
+        OkHttpClient.Builder builder = new OkHttpClient.Builder();
+        if ("noop".equals(tracing)) {
+            addTracing(builder, NoopTracerFactory.create());
+        } else if ("mock".equals(tracing)) {
+            mockTracer = new MockTracer(MockTracer.Propagator.TEXT_MAP);
+            addTracing(builder, mockTracer);
+        } else if ("unsampled".equals(tracing)) {
+            mockTracer = new MockTracer(MockTracer.Propagator.TEXT_MAP);
+            TracingInterceptor.addTracing(builder, mockTracer,
+                    Collections.singletonList(SpanDecorator.STANDARD_TAGS), new ProbabilisticSampler(0));
+        } else if ("bodies".equals(tracing)) {
+            mockTracer = new MockTracer(MockTracer.Propagator.TEXT_MAP);
+            TracingInterceptor tracingInterceptor = new TracingInterceptor.Builder(mockTracer)
+                    .traceBodies(true)
+                    .build();
+            builder.addInterceptor(tracingInterceptor)
+                    .addNetworkInterceptor(tracingInterceptor);
+        } else if ("deferred".equals(tracing)) {
+            mockTracer = new MockTracer(MockTracer.Propagator.TEXT_MAP);
+            TracingInterceptor tracingInterceptor = new TracingInterceptor.Builder(mockTracer)
+                    .deferSpans(new OperationThresholds(1, TimeUnit.SECONDS))
+                    .build();
+            builder.addInterceptor(tracingInterceptor)
+                    .addNetworkInterceptor(tracingInterceptor);
+        } else if (!"bare".equals(tracing)) {
+            throw new IllegalArgumentException("Unknown tracing: " + tracing);
+        }
+        client = builder.build();
+    }
+
+    @Setup(Level.Iteration)
+    public void resetTracer() {
+        if (mockTracer != null) {
+            mockTracer.reset();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        client.dispatcher().executorService().shutdown();
+        client.connectionPool().evictAll();
+        server.close();
+    }
+
+    @Benchmark
+    public int success() throws IOException {
+        return execute(okUrl);
+    }
+
+    @Benchmark
+    public int redirect() throws IOException {
+        return execute(redirectUrl);
+    }
+
+    @Benchmark
+    public Object error() {
+        try {
+            return execute(unreachableUrl);
+        } catch (IOException ex) {
+            return ex;
+        }
+    }
+
+    int execute(HttpUrl url) throws IOException {
+        Response response = client.newCall(new Request.Builder()
+                .url(url)
+                .build())
+                .execute();
+        response.body().close();
+        return response.code();
+    }
+
+    static void addTracing(OkHttpClient.Builder builder, Tracer tracer) {
+        TracingInterceptor.addTracing(builder, tracer,
+                Collections.singletonList(SpanDecorator.STANDARD_TAGS));
+    }
+
+    /**
+     * @return URL on loopback where nothing listens, connection is refused immediately
+     */
+    static HttpUrl unreachableUrl() throws IOException {
+        ServerSocket socket = new ServerSocket(0, 1, InetAddress.getLoopbackAddress());
+        int port = socket.getLocalPort();
+        socket.close();
+        return new HttpUrl.Builder()
+                .scheme("http")
+                .host(socket.getInetAddress().getHostAddress())
+                .port(port)
+                .build();
+    }
+}
@@ -0,0 +1,130 @@
+package io.opentracing.contrib.okhttp3.benchmarks;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import io.opentracing.NoopTracerFactory;
+import io.opentracing.Tracer;
+import io.opentracing.mock.MockTracer;
+import okhttp3.OkHttpClient;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Fails when a traced client exceeds the overhead budget compared to a bare client under the same load.
+ *
+ * <p>Bare and traced clients are measured in alternating rounds and the best round of each is compared,
+ * so a noisy neighbour or a GC pause does not fail the build.
+ *
+ * <p>Run by {@code ./mvnw test -Pload}, load and budgets are set by system properties:
+ * <ul>
+ *     <li>{@code load.threads}, {@code load.rounds}, {@code load.warmup} and {@code load.duration} in seconds</li>
+ *     <li>{@code load.budget.throughput} - max relative throughput loss</li>
+ *     <li>{@code load.budget.p99} - max relative p99 latency increase</li>
+ *     <li>{@code load.budget.bytes} - max bytes allocated per call on top of the bare client</li>
+ * </ul>
+ */
+public class TracingOverheadLoadTest {
+
+    private static final LoadGenerator LOAD_GENERATOR = new LoadGenerator(
+            Integer.getInteger("load.threads", 8),
+            Integer.getInteger("load.warmup", 1),
+            Integer.getInteger("load.duration", 3),
+            TimeUnit.SECONDS);
+    private static final int ROUNDS = Integer.getInteger("load.rounds", 3);
+
+    private static final double THROUGHPUT_BUDGET = budget("load.budget.throughput", 0.3);
+    private static final double P99_BUDGET = budget("load.budget.p99", 0.5);
+    private static final long BYTES_BUDGET = Long.getLong("load.budget.bytes", 4096);
+
+    private static StandInServer server;
+
+    @BeforeClass
+    public static void beforeClass() throws Exception {
+        server = new StandInServer();
+        // compiles OkHttp and tracing code paths, so the first measured client is not penalized
+        OkHttpClient client = tracing(new MockTracer(MockTracer.Propagator.TEXT_MAP));
+        System.out.println("jit warmup: " + LOAD_GENERATOR.run(client, server.url("/ok")));
+        client.connectionPool().evictAll();
+    }
+
+    @AfterClass
+    public static void afterClass() throws IOException {
+        server.close();
+    }
+
+    @Test
+    public void testNoopTracer() throws Exception {
+        compare("noop", NoopTracerFactory.create());
+    }
+
+    @Test
+    public void testMockTracer() throws Exception {
+        compare("mock", new MockTracer(MockTracer.Propagator.TEXT_MAP));
+    }
+
+    private static void compare(String name, Tracer tracer) throws InterruptedException {
+        OkHttpClient bareClient = new OkHttpClient.Builder().build();
+        OkHttpClient tracedClient = tracing(tracer);
+        LoadGenerator.Result bare = null;
+        LoadGenerator.Result traced = null;
+        for (int round = 0; round < ROUNDS; round++) {
+            bare = best(bare, run("bare", bareClient));
+            if (tracer instanceof MockTracer) {
+                ((MockTracer) tracer).reset();
+            }
+            traced = best(traced, run(name, tracedClient));
+        }
+        bareClient.connectionPool().evictAll();
+        tracedClient.connectionPool().evictAll();
+
+        Assert.assertEquals(0, bare.errors());
+        Assert.assertEquals(0, traced.errors());
+
+        double throughputLoss = 1 - traced.throughput() / bare.throughput();
+        Assert.assertTrue(String.format("throughput loss %.2f over budget %.2f", throughputLoss, THROUGHPUT_BUDGET),
+                throughputLoss <= THROUGHPUT_BUDGET);
+
+        double p99Increase = (double) traced.latency().percentileMicros(0.99) / bare.latency().percentileMicros(0.99) - 1;
+        Assert.assertTrue(String.format("p99 increase %.2f over budget %.2f", p99Increase, P99_BUDGET),
+                p99Increase <= P99_BUDGET);
+
+        if (traced.bytesPerCall() >= 0) {
+            long bytes = traced.bytesPerCall() - bare.bytesPerCall();
+            Assert.assertTrue(String.format("%d bytes per call over budget %d", bytes, BYTES_BUDGET),
+                    bytes <= BYTES_BUDGET);
+        }
+    }
+
+    private static LoadGenerator.Result run(String name, OkHttpClient client) throws InterruptedException {
+        LoadGenerator.Result result = LOAD_GENERATOR.run(client, server.url("/ok"));
+        System.out.println(name + ": " + result);
+        return result;
+    }
+
+    /**
+     * @return result with higher throughput, errors are kept so they fail the comparison
+     */
+    private static LoadGenerator.Result best(LoadGenerator.Result best, LoadGenerator.Result result) {
+        if (best == null) {
+            return result;
+        }
+        if (best.errors() > 0) {
+            return best;
+        }
+        return result.errors() > 0 || result.throughput() > best.throughput() ? result : best;
+    }
+
+    private static OkHttpClient tracing(Tracer tracer) {
+        OkHttpClient.Builder builder = new OkHttpClient.Builder();
+        TracingInterceptorBenchmark.addTracing(builder, tracer);
+        return builder.build();
+    }
+
+    private static double budget(String property, double defaultBudget) {
+        String value = System.getProperty(property);
+        return value == null ? defaultBudget : Double.parseDouble(value);
+    }
+}
@@ -0,0 +1,52 @@
+package io.opentracing.contrib.okhttp3.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight recorder event of one traced HTTP call, from the start of the call until response headers are received.
+ */
+@Name(ClientCallEvent.NAME)
+@Label("HTTP Client Call")
+@Category({"OkHttp"})
+@Description("Call traced by TracingInterceptor")
+@StackTrace(false)
+public class ClientCallEvent extends jdk.jfr.Event {
+
+    public static final String NAME = "okhttp.ClientCall";
+
+    @Label("Method")
+    public String method;
+
+    @Label("Host")
+    public String host;
+
+    @Label("Path")
+    public String path;
+
+    @Label("Status Code")
+    @Description("Response status code, 0 if the call failed")
+    public int status;
+
+    @Label("Error")
+    @Description("Class of the exception the call failed with")
+    public String error;
+
+    @Label("Request Bytes")
+    @Description("Length of the request body, -1 if unknown")
+    @DataAmount
+    public long requestBytes;
+
+    @Label("Response Bytes")
+    @Description("Content length of the response body, -1 if unknown")
+    @DataAmount
+    public long responseBytes;
+
+    @Label("Span Context")
+    @Description("Span context of the call as injected by the tracer, e.g. trace and span id")
+    public String spanContext;
+}
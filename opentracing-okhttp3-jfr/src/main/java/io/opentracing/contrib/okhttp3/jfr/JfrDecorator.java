@@ -0,0 +1,138 @@
+package io.opentracing.contrib.okhttp3.jfr;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import io.opentracing.Span;
+import io.opentracing.Tracer;
+import io.opentracing.contrib.okhttp3.CallThreadDecorator;
+import io.opentracing.contrib.okhttp3.TracingInterceptor;
+import io.opentracing.propagation.Format;
+import io.opentracing.propagation.TextMap;
+import jdk.jfr.EventType;
+import okhttp3.Connection;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * Decorator emitting a {@link ClientCallEvent} for every call traced by {@link TracingInterceptor}, so HTTP latency
+ * can be correlated with GC pauses, safepoints and lock contention in one recording.
+ *
+ * <p>When the event is disabled in the recording settings the decorator only checks {@link EventType#isEnabled()}.
+ * Span context of the event is rendered by injecting the span context with {@link Format.Builtin#TEXT_MAP},
+ * only for events which are committed.
+ *
+ * <pre>{@code
+ * TracingInterceptor tracingInterceptor = new TracingInterceptor.Builder(tracer)
+ *     .decorators(Arrays.asList(SpanDecorator.STANDARD_TAGS, new JfrDecorator(tracer)))
+ *     .build();
+ * }</pre>
+ *
+ * <p>Events begin in {@link #onRequest(Request, Span)}, deferred spans replay it at the end of the call and
+ * their events have no duration. Events of calls whose {@link #onResponse(Response, Span)} was skipped by
+ * {@link TracingInterceptor.Builder#decoratorBudget} are kept until the decorator is garbage collected,
+ * the budget should not be used together with this decorator. With a
+ * {@link io.opentracing.contrib.okhttp3.SpanFinisher} the decorator is still invoked on the call thread.
+ */
+public class JfrDecorator implements CallThreadDecorator {
+
+    private static final EventType EVENT_TYPE = EventType.getEventType(ClientCallEvent.class);
+
+    private final Tracer tracer;
+    private final Map<Span, ClientCallEvent> events = new ConcurrentHashMap<>();
+
+    /**
+     * @param tracer tracer of spans, renders their span context
+     */
+    public JfrDecorator(Tracer tracer) {
+        this.tracer = tracer;
+    }
+
+    @Override
+    public void onRequest(Request request, Span span) {
+        if (!EVENT_TYPE.isEnabled()) {
+            return;
+        }
+        ClientCallEvent event = new ClientCallEvent();
+        event.begin();
+        event.method = request.method();
+        event.host = request.url().host();
+        event.path = request.url().encodedPath();
+        event.requestBytes = requestBytes(request);
+        events.put(span, event);
+    }
+
+    @Override
+    public void onResponse(Response response, Span span) {
+        ClientCallEvent event = end(span);
+        if (event != null) {
+            event.status = response.code();
+            event.responseBytes = response.body() != null ? response.body().contentLength() : -1;
+            commit(event, span);
+        }
+    }
+
+    @Override
+    public void onError(Throwable throwable, Span span) {
+        ClientCallEvent event = end(span);
+        if (event != null) {
+            event.error = throwable.getClass().getName();
+            event.responseBytes = -1;
+            commit(event, span);
+        }
+    }
+
+    @Override
+    public void onNetworkResponse(Connection connection, Response response, Span span) {
+    }
+
+    private ClientCallEvent end(Span span) {
+        if (events.isEmpty()) {
+            return null;
+        }
+        ClientCallEvent event = events.remove(span);
+        if (event != null) {
+            event.end();
+        }
+        return event;
+    }
+
+    private void commit(ClientCallEvent event, Span span) {
+        if (event.shouldCommit()) {
+            event.spanContext = spanContext(span);
+            event.commit();
+        }
+    }
+
+    private String spanContext(Span span) {
+        final StringBuilder spanContext = new StringBuilder();
+        tracer.inject(span.context(), Format.Builtin.TEXT_MAP, new TextMap() {
+            @Override
+            public Iterator<Map.Entry<String, String>> iterator() {
+                throw new UnsupportedOperationException("Should be used only with tracer#inject()");
+            }
+
+            @Override
+            public void put(String key, String value) {
+                if (spanContext.length() > 0) {
+                    spanContext.append(',');
+                }
+                spanContext.append(key).append('=').append(value);
+            }
+        });
+        return spanContext.toString();
+    }
+
+    private static long requestBytes(Request request) {
+        if (request.body() == null) {
+            return 0;
+        }
+        try {
+            return request.body().contentLength();
+        } catch (IOException ex) {
+            return -1;
+        }
+    }
+}
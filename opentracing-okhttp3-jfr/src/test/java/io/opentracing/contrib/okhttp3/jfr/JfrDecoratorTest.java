@@ -0,0 +1,124 @@
+package io.opentracing.contrib.okhttp3.jfr;
+
+import io.opentracing.contrib.okhttp3.SpanDecorator;
+import io.opentracing.contrib.okhttp3.TracingInterceptor;
+import io.opentracing.mock.MockSpan;
+import io.opentracing.mock.MockTracer;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class JfrDecoratorTest {
+
+    private MockTracer mockTracer = new MockTracer(MockTracer.Propagator.TEXT_MAP);
+    private MockWebServer mockWebServer = new MockWebServer();
+    private OkHttpClient client;
+
+    @Before
+    public void before() throws IOException {
+        mockWebServer.start();
+        TracingInterceptor tracingInterceptor = new TracingInterceptor.Builder(mockTracer)
+                .decorators(Arrays.asList(SpanDecorator.STANDARD_TAGS, new JfrDecorator(mockTracer)))
+                .build();
+        client = new OkHttpClient.Builder()
+                .addInterceptor(tracingInterceptor)
+                .addNetworkInterceptor(tracingInterceptor)
+                .build();
+    }
+
+    @After
+    public void after() throws IOException {
+        mockWebServer.close();
+    }
+
+    @Test
+    public void testEvents() throws Exception {
+        mockWebServer.enqueue(new MockResponse()
+                .setHeadersDelay(20, TimeUnit.MILLISECONDS)
+                .setResponseCode(201)
+                .setBody("created"));
+
+        List<RecordedEvent> events;
+        try (Recording recording = new Recording()) {
+            recording.enable(ClientCallEvent.class);
+            recording.start();
+
+            try (Response response = client.newCall(new Request.Builder()
+                    .url(mockWebServer.url("/foo"))
+                    .post(RequestBody.create(null, "request"))
+                    .build())
+                    .execute()) {
+                Assert.assertEquals(201, response.code());
+            }
+            mockWebServer.close();
+            try {
+                client.newCall(new Request.Builder()
+                        .url(mockWebServer.url("/bar"))
+                        .build())
+                        .execute();
+                Assert.fail();
+            } catch (IOException ex) {
+            }
+
+            recording.stop();
+            Path file = Files.createTempFile("okhttp", ".jfr");
+            try {
+                recording.dump(file);
+                events = RecordingFile.readAllEvents(file);
+            } finally {
+                Files.delete(file);
+            }
+        }
+
+        Assert.assertEquals(2, events.size());
+        RecordedEvent success = events.get(0);
+        MockSpan successSpan = mockTracer.finishedSpans().get(0);
+        Assert.assertEquals(ClientCallEvent.NAME, success.getEventType().getName());
+        Assert.assertEquals("POST", success.getString("method"));
+        Assert.assertEquals(mockWebServer.getHostName(), success.getString("host"));
+        Assert.assertEquals("/foo", success.getString("path"));
+        Assert.assertEquals(201, success.getInt("status"));
+        Assert.assertEquals(7, success.getLong("requestBytes"));
+        Assert.assertEquals(7, success.getLong("responseBytes"));
+        Assert.assertNull(success.getString("error"));
+        Assert.assertTrue(success.getDuration().toMillis() >= 20);
+        String spanContext = success.getString("spanContext");
+        Assert.assertTrue(spanContext.contains("traceid=" + successSpan.context().traceId()));
+        Assert.assertTrue(spanContext.contains("spanid=" + successSpan.context().spanId()));
+
+        RecordedEvent failure = events.get(1);
+        Assert.assertEquals("GET", failure.getString("method"));
+        Assert.assertEquals(0, failure.getInt("status"));
+        Assert.assertEquals(0, failure.getLong("requestBytes"));
+        Assert.assertNotNull(failure.getString("error"));
+    }
+
+    @Test
+    public void testDisabled() throws IOException {
+        mockWebServer.enqueue(new MockResponse());
+
+        client.newCall(new Request.Builder()
+                .url(mockWebServer.url("/foo"))
+                .build())
+                .execute()
+                .close();
+
+        Assert.assertEquals(1, mockTracer.finishedSpans().size());
+    }
+}
@@ -0,0 +1,165 @@
+package io.opentracing.contrib.okhttp3.virtualthreads.benchmarks;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.sun.net.httpserver.HttpServer;
+import io.opentracing.NoopTracerFactory;
+import io.opentracing.contrib.okhttp3.LatencyHistogram;
+import io.opentracing.contrib.okhttp3.SpanDecorator;
+import io.opentracing.contrib.okhttp3.TracingInterceptor;
+import io.opentracing.contrib.okhttp3.virtualthreads.VirtualThreadDispatchers;
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.HttpUrl;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Time to complete {@code concurrency} enqueued traced calls with a virtual thread dispatcher compared to
+ * the platform thread pool of OkHttp, both with the same request limits and connection pool.
+ *
+ * <p>Each operation enqueues all calls at once and waits for all callbacks. Calls per second are
+ * {@code concurrency} divided by the score, p99 of individual calls is printed after each iteration.
+ * Calls go to an in-process {@link HttpServer} over loopback.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgs = {"-Xmx2g"})
+public class DispatcherBenchmark {
+
+    @Param({"platform", "virtual"})
+    public String threads;
+
+    @Param({"1000", "10000", "50000"})
+    public int concurrency;
+
+    private HttpServer server;
+    private ExecutorService serverExecutor;
+    private OkHttpClient client;
+    private HttpUrl url;
+    private LatencyHistogram latency;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        // platform threads, so the server does not compete with virtual thread clients for carrier threads
+        serverExecutor = Executors.newCachedThreadPool();
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 4096);
+        server.setExecutor(serverExecutor);
+        server.createContext("/", exchange -> {
+            try (InputStream in = exchange.getRequestBody()) {
+                in.transferTo(OutputStream.nullOutputStream());
+            }
+            exchange.sendResponseHeaders(200, 2);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write('o');
+                out.write('k');
+            }
+        });
+        server.start();
+        url = new HttpUrl.Builder()
+                .scheme("http")
+                .host(server.getAddress().getAddress().getHostAddress())
+                .port(server.getAddress().getPort())
+                .build();
+
+        OkHttpClient.Builder builder;
+        if ("virtual".equals(threads)) {
+            builder = VirtualThreadDispatchers.newBuilder();
+        } else if ("platform".equals(threads)) {
+            Dispatcher dispatcher = new Dispatcher();
+            dispatcher.setMaxRequests(VirtualThreadDispatchers.DEFAULT_MAX_REQUESTS);
+            dispatcher.setMaxRequestsPerHost(VirtualThreadDispatchers.DEFAULT_MAX_REQUESTS_PER_HOST);
+            builder = new OkHttpClient.Builder()
+                    .dispatcher(dispatcher)
+                    .connectionPool(new ConnectionPool(VirtualThreadDispatchers.DEFAULT_MAX_REQUESTS_PER_HOST,
+                            5, TimeUnit.MINUTES));
+        } else {
+            throw new IllegalArgumentException("Unknown threads: " + threads);
+        }
+        // queueing of the largest bursts is measured, not failed by the default 10s timeout
+        client = TracingInterceptor.addTracing(builder, NoopTracerFactory.create(),
+                Collections.singletonList(SpanDecorator.STANDARD_TAGS))
+                .readTimeout(2, TimeUnit.MINUTES)
+                .build();
+    }
+
+    @Setup(Level.Iteration)
+    public void resetLatency() {
+        latency = new LatencyHistogram();
+    }
+
+    @TearDown(Level.Iteration)
+    public void printLatency() {
+        LatencyHistogram.Snapshot snapshot = latency.snapshot();
+        System.out.printf("calls: %d, p50: %d us, p99: %d us%n", snapshot.count(),
+                snapshot.percentileMicros(0.5), snapshot.percentileMicros(0.99));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        client.dispatcher().executorService().shutdown();
+        client.connectionPool().evictAll();
+        server.stop(0);
+        serverExecutor.shutdown();
+    }
+
+    @Benchmark
+    public int enqueue() throws InterruptedException {
+        final CountDownLatch completed = new CountDownLatch(concurrency);
+        final AtomicInteger failures = new AtomicInteger();
+        for (int i = 0; i < concurrency; i++) {
+            final long start = System.nanoTime();
+            client.newCall(new Request.Builder()
+                    .url(url)
+                    .build())
+                    .enqueue(new Callback() {
+                        @Override
+                        public void onFailure(Call call, IOException e) {
+                            failures.incrementAndGet();
+                            completed.countDown();
+                        }
+
+                        @Override
+                        public void onResponse(Call call, Response response) throws IOException {
+                            response.body().close();
+                            latency.recordNanos(System.nanoTime() - start);
+                            completed.countDown();
+                        }
+                    });
+        }
+        completed.await();
+        if (failures.get() > 0) {
+            throw new IllegalStateException(failures.get() + " calls failed");
+        }
+        return concurrency;
+    }
+}
@@ -0,0 +1,80 @@
+package io.opentracing.contrib.okhttp3.virtualthreads;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import io.opentracing.contrib.okhttp3.ActiveSpanContext;
+import io.opentracing.contrib.okhttp3.TracingCallFactory;
+import io.opentracing.contrib.okhttp3.TracingExecutorService;
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.OkHttpClient;
+
+/**
+ * Okhttp dispatcher running each enqueued call on its own virtual thread.
+ *
+ * <p>Virtual threads are cheap, so request limits only protect servers: defaults are
+ * {@value #DEFAULT_MAX_REQUESTS} calls in total and {@value #DEFAULT_MAX_REQUESTS_PER_HOST} per host instead of
+ * 64 and 5 of the platform thread pool. Connection pool keeps as many idle connections as there can be
+ * concurrent calls to a host, so bursts do not reconnect.
+ *
+ * <p>Tasks are wrapped by {@link TracingExecutorService}. Every call runs on a new thread, but queued calls
+ * are promoted from the thread of a finished call or of another enqueuing thread, so the
+ * {@link ActiveSpanContext} of their own caller is not known. Calls promoted after a call finished run without
+ * a context, calls promoted by an enqueuing thread get its context.
+ * Use {@link TracingCallFactory} for exact parents of queued calls:
+ * <pre>{@code
+ * OkHttpClient client = TracingInterceptor.addTracing(VirtualThreadDispatchers.newBuilder(), tracer, decorators)
+ *     .build();
+ * Call.Factory callFactory = new TracingCallFactory(client);
+ * }</pre>
+ */
+public final class VirtualThreadDispatchers {
+
+    public static final int DEFAULT_MAX_REQUESTS = 8192;
+    public static final int DEFAULT_MAX_REQUESTS_PER_HOST = 1024;
+
+    private static final long KEEP_ALIVE_MINUTES = 5;
+
+    private VirtualThreadDispatchers() {}
+
+    /**
+     * @return client builder with a virtual thread dispatcher and a connection pool sized for it
+     */
+    public static OkHttpClient.Builder newBuilder() {
+        return newBuilder(DEFAULT_MAX_REQUESTS, DEFAULT_MAX_REQUESTS_PER_HOST);
+    }
+
+    /**
+     * @param maxRequests maximum number of concurrent calls
+     * @param maxRequestsPerHost maximum number of concurrent calls to one host
+     * @return client builder with a virtual thread dispatcher and a connection pool sized for it
+     */
+    public static OkHttpClient.Builder newBuilder(int maxRequests, int maxRequestsPerHost) {
+        return new OkHttpClient.Builder()
+                .dispatcher(newDispatcher(maxRequests, maxRequestsPerHost))
+                .connectionPool(new ConnectionPool(maxRequestsPerHost, KEEP_ALIVE_MINUTES, TimeUnit.MINUTES));
+    }
+
+    /**
+     * @return dispatcher running each call on its own virtual thread
+     */
+    public static Dispatcher newDispatcher() {
+        return newDispatcher(DEFAULT_MAX_REQUESTS, DEFAULT_MAX_REQUESTS_PER_HOST);
+    }
+
+    /**
+     * @param maxRequests maximum number of concurrent calls
+     * @param maxRequestsPerHost maximum number of concurrent calls to one host
+     * @return dispatcher running each call on its own virtual thread
+     */
+    public static Dispatcher newDispatcher(int maxRequests, int maxRequestsPerHost) {
+        ExecutorService executorService = Executors.newThreadPerTaskExecutor(
+                Thread.ofVirtual().name("OkHttp Dispatcher-", 0).factory());
+        Dispatcher dispatcher = new Dispatcher(new TracingExecutorService(executorService));
+        dispatcher.setMaxRequests(maxRequests);
+        dispatcher.setMaxRequestsPerHost(maxRequestsPerHost);
+        return dispatcher;
+    }
+}
@@ -0,0 +1,113 @@
+package io.opentracing.contrib.okhttp3.virtualthreads;
+
+import io.opentracing.SpanContext;
+import io.opentracing.contrib.okhttp3.ActiveSpanContext;
+import io.opentracing.contrib.okhttp3.SpanDecorator;
+import io.opentracing.contrib.okhttp3.TracingCallFactory;
+import io.opentracing.contrib.okhttp3.TracingCallback;
+import io.opentracing.contrib.okhttp3.TracingInterceptor;
+import io.opentracing.mock.MockSpan;
+import io.opentracing.mock.MockTracer;
+import io.opentracing.tag.Tags;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class VirtualThreadDispatchersTest {
+
+    private MockTracer mockTracer = new MockTracer();
+    private MockWebServer mockWebServer = new MockWebServer();
+    private OkHttpClient okHttpClient = TracingInterceptor.addTracing(VirtualThreadDispatchers.newBuilder(64, 64),
+            mockTracer, Collections.singletonList(SpanDecorator.STANDARD_TAGS))
+            .build();
+
+    @Before
+    public void before() throws IOException {
+        mockWebServer.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                return new MockResponse().setResponseCode(200);
+            }
+        });
+        mockWebServer.start();
+    }
+
+    @After
+    public void after() throws IOException {
+        okHttpClient.dispatcher().executorService().shutdown();
+        mockWebServer.close();
+    }
+
+    @Test
+    public void testEnqueue() throws Exception {
+        int calls = 2000;
+        TracingCallFactory callFactory = new TracingCallFactory(okHttpClient);
+        MockSpan[] parents = new MockSpan[calls];
+        CountDownLatch completed = new CountDownLatch(calls);
+        AtomicInteger platformThreads = new AtomicInteger();
+        AtomicInteger leakedContexts = new AtomicInteger();
+
+        for (int i = 0; i < calls; i++) {
+            parents[i] = (MockSpan) mockTracer.buildSpan("parent").start();
+            SpanContext previous = ActiveSpanContext.activate(parents[i].context());
+            try {
+                callFactory.newCall(new Request.Builder()
+                        .url(mockWebServer.url(String.valueOf(i)))
+                        .build())
+                        .enqueue(new TracingCallback(new Callback() {
+                            @Override
+                            public void onFailure(Call call, IOException e) {
+                                completed.countDown();
+                            }
+
+                            @Override
+                            public void onResponse(Call call, Response response) {
+                                response.close();
+                                if (!Thread.currentThread().isVirtual()) {
+                                    platformThreads.incrementAndGet();
+                                }
+                                completed.countDown();
+                            }
+                        }));
+            } finally {
+                ActiveSpanContext.restore(previous);
+            }
+        }
+        Assert.assertTrue(completed.await(60, TimeUnit.SECONDS));
+        Assert.assertEquals(0, platformThreads.get());
+
+        // tasks without a context run on fresh virtual threads and see none
+        okHttpClient.dispatcher().executorService().submit(() -> {
+            if (ActiveSpanContext.current() != null) {
+                leakedContexts.incrementAndGet();
+            }
+        }).get();
+        Assert.assertEquals(0, leakedContexts.get());
+
+        int clientSpans = 0;
+        for (MockSpan mockSpan: mockTracer.finishedSpans()) {
+            if (Tags.SPAN_KIND_CLIENT.equals(mockSpan.tags().get(Tags.SPAN_KIND.getKey()))) {
+                String url = (String) mockSpan.tags().get(Tags.HTTP_URL.getKey());
+                int call = Integer.parseInt(url.substring(url.lastIndexOf('/') + 1));
+                Assert.assertEquals(parents[call].context().spanId(), mockSpan.parentId());
+                clientSpans++;
+            }
+        }
+        Assert.assertEquals(calls, clientSpans);
+    }
+}
@@ -0,0 +1,52 @@
+package io.opentracing.contrib.okhttp3;
+
+import io.opentracing.SpanContext;
+
+/**
+ * Span context active on the current thread. Spans of calls made on a thread with an active context
+ * are its children, unless a parent is set in {@link TagWrapper}.
+ *
+ * <p>Activation does not allocate, the previous context is returned and has to be restored:
+ * <pre>{@code
+ * SpanContext previous = ActiveSpanContext.activate(span.context());
+ * try {
+ *     client.newCall(request).execute();
+ * } finally {
+ *     ActiveSpanContext.restore(previous);
+ * }
+ * }</pre>
+ *
+ * @see TracingExecutorService
+ * @see TracingCallback
+ * @see TracingCallFactory
+ */
+public final class ActiveSpanContext {
+
+    private static final ThreadLocal<SpanContext> current = new ThreadLocal<>();
+
+    private ActiveSpanContext() {}
+
+    /**
+     * @return span context active on the current thread or null
+     */
+    public static SpanContext current() {
+        return current.get();
+    }
+
+    /**
+     * @param spanContext span context to activate on the current thread
+     * @return previously active span context, it has to be restored by {@link #restore(SpanContext)}
+     */
+    public static SpanContext activate(SpanContext spanContext) {
+        SpanContext previous = current.get();
+        current.set(spanContext);
+        return previous;
+    }
+
+    /**
+     * @param previous span context returned by {@link #activate(SpanContext)}
+     */
+    public static void restore(SpanContext previous) {
+        current.set(previous);
+    }
+}
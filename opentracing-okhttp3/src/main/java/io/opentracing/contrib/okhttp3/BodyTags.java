@@ -0,0 +1,38 @@
+package io.opentracing.contrib.okhttp3;
+
+import io.opentracing.Span;
+import io.opentracing.tag.BooleanTag;
+import io.opentracing.tag.IntTag;
+
+/**
+ * Tags of request and response body transfer, set when bodies are traced.
+ * Durations are in microseconds, throughput in bytes per second.
+ *
+ * @see TracingInterceptor.Builder#traceBodies(boolean)
+ */
+public final class BodyTags {
+
+    public static final String REQUEST_BYTES = "http.request_bytes";
+    public static final IntTag REQUEST_BODY_DURATION = new IntTag("http.request_body_us");
+    public static final String REQUEST_THROUGHPUT = "http.request_bytes_per_sec";
+
+    public static final String RESPONSE_BYTES = "http.response_bytes";
+    public static final IntTag RESPONSE_BODY_DURATION = new IntTag("http.response_body_us");
+    public static final String RESPONSE_THROUGHPUT = "http.response_bytes_per_sec";
+
+    /**
+     * Response body was not closed, span was finished after the body was garbage collected.
+     */
+    public static final BooleanTag ABANDONED = new BooleanTag("http.response_body_abandoned");
+
+    private BodyTags() {}
+
+    static void setTransfer(Span span, String bytesKey, IntTag durationTag, String throughputKey,
+                            long bytes, long durationNanos) {
+        span.setTag(bytesKey, bytes);
+        durationTag.set(span, (int) Math.min(durationNanos / 1000, Integer.MAX_VALUE));
+        if (durationNanos > 0) {
+            span.setTag(throughputKey, (long) (bytes * 1e9 / durationNanos));
+        }
+    }
+}
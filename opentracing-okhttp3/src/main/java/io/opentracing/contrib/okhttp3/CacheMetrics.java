@@ -0,0 +1,204 @@
+package io.opentracing.contrib.okhttp3;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.Response;
+
+/**
+ * Cache outcomes of client calls by host: hit ratio, bytes served from the cache and latency
+ * of conditional requests revalidating cached responses.
+ *
+ * <p>Recording is lock-free and does not allocate once a host has been seen, counters are striped
+ * so threads do not contend. Number of hosts is bounded, calls over the limit are recorded under
+ * {@link HttpMetrics#OTHER}. Values are cumulative since creation.
+ *
+ * @see MetricsInterceptor
+ * @see CacheTagsDecorator
+ */
+public class CacheMetrics {
+
+    private final int maxHosts;
+    private final ConcurrentMap<String, Host> hosts = new ConcurrentHashMap<>();
+
+    public CacheMetrics() {
+        this(HttpMetrics.DEFAULT_MAX_HOSTS);
+    }
+
+    /**
+     * @param maxHosts maximum number of hosts recorded separately
+     */
+    public CacheMetrics(int maxHosts) {
+        this.maxHosts = maxHosts;
+    }
+
+    /**
+     * Record the cache outcome of a completed call.
+     *
+     * @param host host
+     * @param response response returned to the application
+     */
+    public void record(String host, Response response) {
+        Host hostMetrics = host(host);
+        String outcome = CacheTagsDecorator.outcome(response);
+        if (CacheTagsDecorator.HIT.equals(outcome)) {
+            hostMetrics.hits.increment();
+            addBytes(hostMetrics, response);
+        } else if (CacheTagsDecorator.CONDITIONAL_HIT.equals(outcome)) {
+            hostMetrics.conditionalHits.increment();
+            addBytes(hostMetrics, response);
+            recordRevalidation(hostMetrics, response.networkResponse());
+        } else if (CacheTagsDecorator.CONDITIONAL_MISS.equals(outcome)) {
+            hostMetrics.conditionalMisses.increment();
+            recordRevalidation(hostMetrics, response.networkResponse());
+        } else {
+            hostMetrics.misses.increment();
+        }
+    }
+
+    /**
+     * @return snapshot of all hosts
+     */
+    public List<Snapshot> snapshot() {
+        List<Snapshot> snapshots = new ArrayList<>(hosts.size());
+        for (Map.Entry<String, Host> entry: hosts.entrySet()) {
+            Host host = entry.getValue();
+            snapshots.add(new Snapshot(entry.getKey(), host.hits.sum(), host.conditionalHits.sum(),
+                    host.conditionalMisses.sum(), host.misses.sum(), host.bytesFromCache.sum(),
+                    host.revalidation.snapshot()));
+        }
+        return snapshots;
+    }
+
+    private static void addBytes(Host host, Response response) {
+        long contentLength = response.body() != null ? response.body().contentLength() : -1;
+        if (contentLength > 0) {
+            host.bytesFromCache.add(contentLength);
+        }
+    }
+
+    private static void recordRevalidation(Host host, Response networkResponse) {
+        long millis = networkResponse.receivedResponseAtMillis() - networkResponse.sentRequestAtMillis();
+        if (millis >= 0) {
+            host.revalidation.record(millis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private Host host(String host) {
+        Host hostMetrics = hosts.get(host);
+        if (hostMetrics == null) {
+            if (hosts.size() >= maxHosts) {
+                host = HttpMetrics.OTHER;
+                hostMetrics = hosts.get(host);
+                if (hostMetrics != null) {
+                    return hostMetrics;
+                }
+            }
+            hostMetrics = new Host();
+            Host previous = hosts.putIfAbsent(host, hostMetrics);
+            if (previous != null) {
+                hostMetrics = previous;
+            }
+        }
+        return hostMetrics;
+    }
+
+    private static class Host {
+        final StripedCounter hits = new StripedCounter();
+        final StripedCounter conditionalHits = new StripedCounter();
+        final StripedCounter conditionalMisses = new StripedCounter();
+        final StripedCounter misses = new StripedCounter();
+        final StripedCounter bytesFromCache = new StripedCounter();
+        final LatencyHistogram revalidation = new LatencyHistogram();
+    }
+
+    /**
+     * Cache outcomes of one host.
+     */
+    public static final class Snapshot {
+        private final String host;
+        private final long hits;
+        private final long conditionalHits;
+        private final long conditionalMisses;
+        private final long misses;
+        private final long bytesFromCache;
+        private final LatencyHistogram.Snapshot revalidation;
+
+        Snapshot(String host, long hits, long conditionalHits, long conditionalMisses, long misses,
+                 long bytesFromCache, LatencyHistogram.Snapshot revalidation) {
+            this.host = host;
+            this.hits = hits;
+            this.conditionalHits = conditionalHits;
+            this.conditionalMisses = conditionalMisses;
+            this.misses = misses;
+            this.bytesFromCache = bytesFromCache;
+            this.revalidation = revalidation;
+        }
+
+        public String host() {
+            return host;
+        }
+
+        /**
+         * @return calls served from the cache without a network request
+         */
+        public long hits() {
+            return hits;
+        }
+
+        /**
+         * @return calls served from the cache after the server validated it
+         */
+        public long conditionalHits() {
+            return conditionalHits;
+        }
+
+        /**
+         * @return calls with a stale cached response replaced by the server's response
+         */
+        public long conditionalMisses() {
+            return conditionalMisses;
+        }
+
+        /**
+         * @return calls without a cached response
+         */
+        public long misses() {
+            return misses;
+        }
+
+        /**
+         * @return ratio of calls served from the cache including conditional hits, 0 if there were no calls
+         */
+        public double hitRatio() {
+            long calls = hits + conditionalHits + conditionalMisses + misses;
+            return calls == 0 ? 0 : (double) (hits + conditionalHits) / calls;
+        }
+
+        /**
+         * @return bytes of response bodies served from the cache, bodies of unknown length are not counted
+         */
+        public long bytesFromCache() {
+            return bytesFromCache;
+        }
+
+        /**
+         * @return latency of conditional requests, millisecond resolution
+         */
+        public LatencyHistogram.Snapshot revalidation() {
+            return revalidation;
+        }
+
+        @Override
+        public String toString() {
+            return host + " hits=" + hits + " conditionalHits=" + conditionalHits
+                    + " conditionalMisses=" + conditionalMisses + " misses=" + misses
+                    + " bytesFromCache=" + bytesFromCache
+                    + " revalidationP99=" + revalidation.percentileMicros(0.99) + "us";
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package io.opentracing.contrib.okhttp3;
+
+import io.opentracing.Span;
+import io.opentracing.tag.StringTag;
+import okhttp3.Cache;
+import okhttp3.Connection;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * Decorator which tags how the {@link Cache} of the client served the call, as {@code http.cache}:
+ *
+ * <ul>
+ *     <li>{@link #HIT} - served from the cache without a network request</li>
+ *     <li>{@link #CONDITIONAL_HIT} - cached response was validated by the server with {@code 304}</li>
+ *     <li>{@link #CONDITIONAL_MISS} - cached response was stale and replaced by the server's response</li>
+ *     <li>{@link #MISS} - not cached or not cacheable</li>
+ *     <li>{@link #UNSATISFIABLE} - {@code only-if-cached} request without a cached response, OkHttp responds
+ *     {@code 504}</li>
+ * </ul>
+ *
+ * <p>Outcome is known only at the application level, the decorator has to be applied by {@link TracingInterceptor}
+ * added by {@link okhttp3.OkHttpClient.Builder#addInterceptor}.
+ *
+ * @see CacheMetrics
+ */
+public class CacheTagsDecorator implements SpanDecorator {
+
+    public static final StringTag HTTP_CACHE = new StringTag("http.cache");
+
+    public static final String HIT = "hit";
+    public static final String CONDITIONAL_HIT = "conditional_hit";
+    public static final String CONDITIONAL_MISS = "conditional_miss";
+    public static final String MISS = "miss";
+    public static final String UNSATISFIABLE = "unsatisfiable";
+
+    @Override
+    public void onRequest(Request request, Span span) {
+    }
+
+    @Override
+    public void onResponse(Response response, Span span) {
+        HTTP_CACHE.set(span, outcome(response));
+    }
+
+    @Override
+    public void onError(Throwable throwable, Span span) {
+    }
+
+    @Override
+    public void onNetworkResponse(Connection connection, Response response, Span span) {
+    }
+
+    /**
+     * @param response response returned to the application
+     * @return cache outcome of the response
+     */
+    public static String outcome(Response response) {
+        Response cacheResponse = response.cacheResponse();
+        Response networkResponse = response.networkResponse();
+        if (cacheResponse == null) {
+            return networkResponse != null ? MISS : UNSATISFIABLE;
+        }
+        if (networkResponse == null) {
+            return HIT;
+        }
+        return networkResponse.code() == 304 ? CONDITIONAL_HIT : CONDITIONAL_MISS;
+    }
+}
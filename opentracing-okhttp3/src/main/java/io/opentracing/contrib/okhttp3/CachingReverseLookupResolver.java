@@ -0,0 +1,171 @@
+package io.opentracing.contrib.okhttp3;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import okhttp3.Connection;
+
+/**
+ * Resolves peer host names by reverse DNS lookups made in the background.
+ *
+ * <p>If {@link PeerHostnameResolver#NON_BLOCKING} finds no host name, the IP address is looked up
+ * asynchronously and the literal address is returned until the lookup completes. Resolved names are
+ * cached for given time to live; expired names are still returned while they are being refreshed.
+ * Number of cached addresses is bounded, addresses over the limit are not looked up. When the cache is full,
+ * expired and unresolved entries are evicted, at most once per time to live.
+ */
+public class CachingReverseLookupResolver implements PeerHostnameResolver {
+
+    private static final Logger log = Logger.getLogger(CachingReverseLookupResolver.class.getName());
+
+    private final long ttlNanos;
+    private final int maxEntries;
+    private final Executor executor;
+    private final ConcurrentMap<InetAddress, Entry> cache = new ConcurrentHashMap<>();
+    private final AtomicLong nextEvictionNanos = new AtomicLong(System.nanoTime());
+
+    /**
+     * Resolver with one background lookup thread and at most 64 pending lookups.
+     *
+     * @param ttl time to live of resolved names
+     * @param unit unit of ttl
+     * @param maxEntries maximum number of cached addresses
+     */
+    public CachingReverseLookupResolver(long ttl, TimeUnit unit, int maxEntries) {
+        this(ttl, unit, maxEntries, defaultExecutor(64));
+    }
+
+    /**
+     * @param ttl time to live of resolved names
+     * @param unit unit of ttl
+     * @param maxEntries maximum number of cached addresses
+     * @param executor executor running lookups, it should not run them on the calling thread. When it is saturated
+     *                 it should throw {@link RejectedExecutionException}, the address is looked up again later
+     */
+    public CachingReverseLookupResolver(long ttl, TimeUnit unit, int maxEntries, Executor executor) {
+        this.ttlNanos = unit.toNanos(ttl);
+        this.maxEntries = maxEntries;
+        this.executor = executor;
+    }
+
+    @Override
+    public String hostname(Connection connection) {
+        String hostname = TagValues.hostname(connection);
+        InetAddress address = connection.socket().getInetAddress();
+        if (!isIpLiteral(hostname, address)) {
+            return hostname;
+        }
+
+        long now = System.nanoTime();
+        Entry entry = cache.get(address);
+        if (entry == null) {
+            if (cache.size() >= maxEntries && !evictExpired(now)) {
+                return hostname;
+            }
+            entry = new Entry();
+            Entry previous = cache.putIfAbsent(address, entry);
+            if (previous != null) {
+                entry = previous;
+            }
+        }
+
+        if (now - entry.resolvedAtNanos >= ttlNanos || entry.hostname == null) {
+            lookup(address, entry);
+        }
+
+        String resolved = entry.hostname;
+        return resolved != null ? resolved : hostname;
+    }
+
+    private void lookup(final InetAddress address, final Entry entry) {
+        if (!entry.pending.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        // new instance without a host name, the connection's address is not mutated
+                        String hostname = InetAddress.getByAddress(address.getAddress()).getHostName();
+                        entry.resolvedAtNanos = System.nanoTime();
+                        entry.hostname = hostname;
+                    } catch (UnknownHostException ex) {
+                        log.log(Level.FINE, "Reverse lookup of " + address + " failed", ex);
+                    } finally {
+                        entry.pending.set(false);
+                    }
+                }
+            });
+        } catch (RejectedExecutionException ex) {
+            entry.pending.set(false);
+        }
+    }
+
+    /**
+     * @param hostname host name of the connection as returned by {@link TagValues#hostname(Connection)}
+     * @param address address of the connection
+     * @return true if the host name is the address, e.g. the URL contained an IP address
+     */
+    static boolean isIpLiteral(String hostname, InetAddress address) {
+        // IPv6 literals are canonical in URLs but expanded by getHostAddress, host names never contain colons
+        return hostname.indexOf(':') >= 0 || hostname.equals(address.getHostAddress());
+    }
+
+    /**
+     * Evict expired names and addresses whose lookup failed or was rejected, scans the cache at most once
+     * per time to live.
+     */
+    private boolean evictExpired(long now) {
+        long next = nextEvictionNanos.get();
+        if (now - next < 0 || !nextEvictionNanos.compareAndSet(next, now + ttlNanos)) {
+            return false;
+        }
+        boolean evicted = false;
+        for (Iterator<Map.Entry<InetAddress, Entry>> iterator = cache.entrySet().iterator(); iterator.hasNext();) {
+            Entry entry = iterator.next().getValue();
+            if (!entry.pending.get() && (entry.hostname == null || now - entry.resolvedAtNanos >= ttlNanos)) {
+                iterator.remove();
+                evicted = true;
+            }
+        }
+        return evicted;
+    }
+
+    /**
+     * Silently discarded lookups would stay pending forever, saturation is signaled by rejection.
+     */
+    static ThreadPoolExecutor defaultExecutor(int maxPending) {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<Runnable>(maxPending), new ThreadFactory() {
+                    @Override
+                    public Thread newThread(Runnable runnable) {
+                        Thread thread = new Thread(runnable, "okhttp-tracing-reverse-lookup");
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                }, new ThreadPoolExecutor.AbortPolicy());
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    private static class Entry {
+        final AtomicBoolean pending = new AtomicBoolean();
+        volatile String hostname;
+        volatile long resolvedAtNanos;
+    }
+}
@@ -0,0 +1,16 @@
+package io.opentracing.contrib.okhttp3;
+
+import io.opentracing.Span;
+import okhttp3.Response;
+
+/**
+ * Span decorator which has to be invoked on the thread of the call also when spans are finished
+ * by {@link SpanFinisher}, e.g. because it measures time until {@link #onResponse(Response, Span)}
+ * or keeps state between {@link #onRequest} and {@link #onResponse(Response, Span)}.
+ *
+ * <p>Other decorators may be invoked by the finisher's worker after the call returned, with the response
+ * without its body, or not at all if the finisher drops the span. {@link SpanDecorator#STANDARD_TAGS},
+ * {@link CacheTagsDecorator} and {@link ConnectionTagsDecorator} are safe to run there.
+ */
+public interface CallThreadDecorator extends SpanDecorator {
+}
@@ -0,0 +1,179 @@
+package io.opentracing.contrib.okhttp3;
+
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.OkHttpClient;
+
+/**
+ * Saturation of a client: running and queued calls of its {@link Dispatcher} and connections of its
+ * {@link ConnectionPool}.
+ *
+ * <p>Gauges change faster than they are exported, {@link #schedule(ScheduledExecutorService, long, TimeUnit)}
+ * samples them periodically and {@link #snapshot()} returns the current values together with the maximum
+ * sampled since the previous snapshot. Running calls close to {@link Dispatcher#getMaxRequests()} or
+ * queued calls above zero show the dispatcher limits calls, many idle connections show the pool
+ * is larger than needed.
+ */
+public class ClientGauges {
+
+    private final Dispatcher dispatcher;
+    private final ConnectionPool connectionPool;
+
+    // guarded by this
+    private int maxRunning;
+    private int maxQueued;
+    private int maxConnections;
+
+    /**
+     * @param client client
+     */
+    public ClientGauges(OkHttpClient client) {
+        this(client.dispatcher(), client.connectionPool());
+    }
+
+    /**
+     * @param dispatcher dispatcher
+     * @param connectionPool connection pool
+     */
+    public ClientGauges(Dispatcher dispatcher, ConnectionPool connectionPool) {
+        this.dispatcher = dispatcher;
+        this.connectionPool = connectionPool;
+    }
+
+    /**
+     * Sample the gauges periodically.
+     *
+     * @param scheduler scheduler
+     * @param period sampling period
+     * @param unit unit of the period
+     * @return future which cancels sampling
+     */
+    public ScheduledFuture<?> schedule(ScheduledExecutorService scheduler, long period, TimeUnit unit) {
+        return scheduler.scheduleAtFixedRate(new Runnable() {
+            @Override
+            public void run() {
+                sample();
+            }
+        }, period, period, unit);
+    }
+
+    /**
+     * Read the gauges and update maximums.
+     */
+    public void sample() {
+        int running = dispatcher.runningCallsCount();
+        int queued = dispatcher.queuedCallsCount();
+        int connections = connectionPool.connectionCount();
+        synchronized (this) {
+            maxRunning = Math.max(maxRunning, running);
+            maxQueued = Math.max(maxQueued, queued);
+            maxConnections = Math.max(maxConnections, connections);
+        }
+    }
+
+    /**
+     * @return current values and maximums since the previous snapshot, maximums are reset
+     */
+    public Snapshot snapshot() {
+        int running = dispatcher.runningCallsCount();
+        int queued = dispatcher.queuedCallsCount();
+        int connections = connectionPool.connectionCount();
+        int idleConnections = connectionPool.idleConnectionCount();
+        synchronized (this) {
+            Snapshot snapshot = new Snapshot(running, queued, connections, idleConnections,
+                    Math.max(maxRunning, running), Math.max(maxQueued, queued),
+                    Math.max(maxConnections, connections), dispatcher.getMaxRequests());
+            maxRunning = 0;
+            maxQueued = 0;
+            maxConnections = 0;
+            return snapshot;
+        }
+    }
+
+    /**
+     * Gauges of the client.
+     */
+    public static final class Snapshot {
+        private final int runningCalls;
+        private final int queuedCalls;
+        private final int connections;
+        private final int idleConnections;
+        private final int maxRunningCalls;
+        private final int maxQueuedCalls;
+        private final int maxConnections;
+        private final int maxRequests;
+
+        Snapshot(int runningCalls, int queuedCalls, int connections, int idleConnections,
+                 int maxRunningCalls, int maxQueuedCalls, int maxConnections, int maxRequests) {
+            this.runningCalls = runningCalls;
+            this.queuedCalls = queuedCalls;
+            this.connections = connections;
+            this.idleConnections = idleConnections;
+            this.maxRunningCalls = maxRunningCalls;
+            this.maxQueuedCalls = maxQueuedCalls;
+            this.maxConnections = maxConnections;
+            this.maxRequests = maxRequests;
+        }
+
+        /**
+         * @return calls running, synchronous and asynchronous
+         */
+        public int runningCalls() {
+            return runningCalls;
+        }
+
+        /**
+         * @return asynchronous calls waiting for the dispatcher
+         */
+        public int queuedCalls() {
+            return queuedCalls;
+        }
+
+        public int connections() {
+            return connections;
+        }
+
+        public int idleConnections() {
+            return idleConnections;
+        }
+
+        /**
+         * @return maximum of running calls since the previous snapshot
+         */
+        public int maxRunningCalls() {
+            return maxRunningCalls;
+        }
+
+        /**
+         * @return maximum of queued calls since the previous snapshot
+         */
+        public int maxQueuedCalls() {
+            return maxQueuedCalls;
+        }
+
+        /**
+         * @return maximum of connections since the previous snapshot
+         */
+        public int maxConnections() {
+            return maxConnections;
+        }
+
+        /**
+         * @return {@link Dispatcher#getMaxRequests()}
+         */
+        public int maxRequests() {
+            return maxRequests;
+        }
+
+        @Override
+        public String toString() {
+            return "running=" + runningCalls + " (max " + maxRunningCalls + " of " + maxRequests + ")"
+                    + " queued=" + queuedCalls + " (max " + maxQueuedCalls + ")"
+                    + " connections=" + connections + " (max " + maxConnections + ", idle " + idleConnections + ")";
+        }
+    }
+}
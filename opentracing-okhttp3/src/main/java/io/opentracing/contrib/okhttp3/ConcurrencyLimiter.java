@@ -0,0 +1,401 @@
+package io.opentracing.contrib.okhttp3;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import io.opentracing.tag.BooleanTag;
+import io.opentracing.tag.IntTag;
+
+/**
+ * Per host concurrency limit learned from round trip times of calls, by the TCP Vegas algorithm.
+ *
+ * <p>Minimum round trip time approximates the latency without queueing. While calls get slower than that,
+ * the host is queueing and the limit decreases, while they do not, the limit grows. Failed calls, {@code 429}
+ * and {@code 503} responses decrease the limit too, calls canceled by the caller, e.g. losing hedges, do not
+ * change it. Calls over the limit wait for up to {@code maxWait} and then fail with {@link LimitExceededException}.
+ *
+ * <p>The limit covers calls until their response headers are received, which is what round trip times
+ * measure. Response bodies being read are not counted, a host whose bodies are slow to transfer is
+ * not limited by the time spent reading them.
+ *
+ * <p>Calls are limited by {@link TracingInterceptor}, which measures each call once for the limiter and tags spans
+ * with {@link #LIMIT}, {@link #IN_FLIGHT} and {@link #REJECTED}:
+ * <pre>{@code
+ * ConcurrencyLimiter limiter = new ConcurrencyLimiter.Builder().build();
+ * TracingInterceptor tracingInterceptor = new TracingInterceptor.Builder(tracer)
+ *     .concurrencyLimiter(limiter)
+ *     .build();
+ * }</pre>
+ *
+ * <p>The number of hosts is bounded, hosts over the limit share one limit under {@link HttpMetrics#OTHER}.
+ */
+public class ConcurrencyLimiter {
+
+    /**
+     * Concurrency limit of the host when the call started.
+     */
+    public static final IntTag LIMIT = new IntTag("http.concurrency_limit");
+    /**
+     * Calls in flight to the host when the call started, including the call. Calls reading their response
+     * body are not in flight.
+     */
+    public static final IntTag IN_FLIGHT = new IntTag("http.in_flight");
+    /**
+     * Set to true on calls rejected by the limit.
+     */
+    public static final BooleanTag REJECTED = new BooleanTag("http.concurrency_rejected");
+
+    private final int initialLimit;
+    private final int minLimit;
+    private final int maxLimit;
+    private final long maxWaitNanos;
+    private final int maxHosts;
+
+    private final ConcurrentHashMap<String, HostLimit> hosts = new ConcurrentHashMap<>();
+
+    private ConcurrencyLimiter(Builder builder) {
+        this.initialLimit = builder.initialLimit;
+        this.minLimit = builder.minLimit;
+        this.maxLimit = builder.maxLimit;
+        this.maxWaitNanos = builder.maxWaitNanos;
+        this.maxHosts = builder.maxHosts;
+    }
+
+    /**
+     * Acquire a permit for a call, wait up to {@code maxWait} if the host is at its limit.
+     *
+     * @param host host of the call
+     * @return permit which has to be released when the call completes
+     * @throws LimitExceededException if the permit was not acquired in time
+     * @throws InterruptedIOException if the thread was interrupted while waiting
+     */
+    public Permit acquire(String host) throws IOException {
+        return hostLimit(host).acquire();
+    }
+
+    /**
+     * @return limits of all hosts
+     */
+    public List<Snapshot> snapshot() {
+        List<Snapshot> snapshots = new ArrayList<>(hosts.size());
+        for (Map.Entry<String, HostLimit> entry: hosts.entrySet()) {
+            HostLimit hostLimit = entry.getValue();
+            snapshots.add(new Snapshot(entry.getKey(), hostLimit.limit, hostLimit.inFlight.get(),
+                    hostLimit.rejections.get(), TimeUnit.NANOSECONDS.toMicros(hostLimit.rttNoLoadNanos)));
+        }
+        return snapshots;
+    }
+
+    private HostLimit hostLimit(String host) {
+        HostLimit hostLimit = hosts.get(host);
+        if (hostLimit == null) {
+            if (hosts.size() >= maxHosts) {
+                host = HttpMetrics.OTHER;
+                hostLimit = hosts.get(host);
+                if (hostLimit != null) {
+                    return hostLimit;
+                }
+            }
+            hostLimit = new HostLimit();
+            HostLimit previous = hosts.putIfAbsent(host, hostLimit);
+            if (previous != null) {
+                hostLimit = previous;
+            }
+        }
+        return hostLimit;
+    }
+
+    /**
+     * Permit of one call.
+     */
+    public static final class Permit {
+        private final HostLimit hostLimit;
+        private final int limit;
+        private final int inFlight;
+
+        Permit(HostLimit hostLimit, int limit, int inFlight) {
+            this.hostLimit = hostLimit;
+            this.limit = limit;
+            this.inFlight = inFlight;
+        }
+
+        /**
+         * @return limit of the host when the permit was acquired
+         */
+        public int limit() {
+            return limit;
+        }
+
+        /**
+         * @return calls in flight to the host when the permit was acquired, including this one
+         */
+        public int inFlight() {
+            return inFlight;
+        }
+
+        /**
+         * Release the permit and adjust the limit.
+         *
+         * @param rttNanos round trip time of the call, until response headers
+         * @param dropped true if the call failed or the host signalled overload
+         */
+        public void release(long rttNanos, boolean dropped) {
+            hostLimit.release(rttNanos, inFlight, dropped);
+        }
+
+        /**
+         * Release the permit without adjusting the limit, e.g. of a call canceled by the caller, which says
+         * nothing about the load of the host.
+         */
+        public void releaseUnmeasured() {
+            hostLimit.release();
+        }
+    }
+
+    /**
+     * Call rejected because its host is at the concurrency limit.
+     */
+    public static class LimitExceededException extends IOException {
+        public LimitExceededException(String message) {
+            super(message);
+        }
+    }
+
+    /**
+     * Limit of one host.
+     */
+    public static final class Snapshot {
+        private final String host;
+        private final int limit;
+        private final int inFlight;
+        private final long rejections;
+        private final long minRttMicros;
+
+        Snapshot(String host, int limit, int inFlight, long rejections, long minRttMicros) {
+            this.host = host;
+            this.limit = limit;
+            this.inFlight = inFlight;
+            this.rejections = rejections;
+            this.minRttMicros = minRttMicros;
+        }
+
+        public String host() {
+            return host;
+        }
+
+        public int limit() {
+            return limit;
+        }
+
+        public int inFlight() {
+            return inFlight;
+        }
+
+        /**
+         * @return calls rejected since the limiter was created
+         */
+        public long rejections() {
+            return rejections;
+        }
+
+        /**
+         * @return round trip time without queueing as estimated by the limiter
+         */
+        public long minRttMicros() {
+            return minRttMicros;
+        }
+
+        @Override
+        public String toString() {
+            return host + " limit=" + limit + " inFlight=" + inFlight + " rejections=" + rejections
+                    + " minRtt=" + minRttMicros + "us";
+        }
+    }
+
+    private final class HostLimit {
+        /**
+         * Samples after which the minimum round trip time is reset, multiplied by the limit,
+         * so the estimate follows a host which got permanently slower.
+         */
+        private static final int PROBE_MULTIPLIER = 30;
+
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private final AtomicLong rejections = new AtomicLong();
+        private volatile int limit = initialLimit;
+        private volatile int waiters;
+
+        // guarded by this
+        private double estimatedLimit = initialLimit;
+        private long rttNoLoadNanos;
+        private int samplesSinceProbe;
+
+        Permit acquire() throws IOException {
+            int current = tryAcquire();
+            if (current >= 0) {
+                return new Permit(this, limit, current);
+            }
+            if (maxWaitNanos <= 0) {
+                throw reject();
+            }
+
+            long deadline = System.nanoTime() + maxWaitNanos;
+            synchronized (this) {
+                waiters++;
+                try {
+                    while ((current = tryAcquire()) < 0) {
+                        long remainingNanos = deadline - System.nanoTime();
+                        if (remainingNanos <= 0) {
+                            throw reject();
+                        }
+                        TimeUnit.NANOSECONDS.timedWait(this, remainingNanos);
+                    }
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted while waiting for the concurrency limit");
+                } finally {
+                    waiters--;
+                }
+            }
+            return new Permit(this, limit, current);
+        }
+
+        /**
+         * @return calls in flight including the acquired one or -1 if the limit is reached
+         */
+        private int tryAcquire() {
+            while (true) {
+                int current = inFlight.get();
+                if (current >= limit) {
+                    return -1;
+                }
+                if (inFlight.compareAndSet(current, current + 1)) {
+                    return current + 1;
+                }
+            }
+        }
+
+        private LimitExceededException reject() {
+            rejections.incrementAndGet();
+            return new LimitExceededException("Concurrency limit " + limit + " reached");
+        }
+
+        void release(long rttNanos, int inFlightAtStart, boolean dropped) {
+            inFlight.decrementAndGet();
+            synchronized (this) {
+                update(rttNanos, inFlightAtStart, dropped);
+                if (waiters > 0) {
+                    notifyAll();
+                }
+            }
+        }
+
+        void release() {
+            inFlight.decrementAndGet();
+            if (waiters > 0) {
+                synchronized (this) {
+                    notifyAll();
+                }
+            }
+        }
+
+        private void update(long rttNanos, int inFlightAtStart, boolean dropped) {
+            double log10 = Math.max(1, Math.log10(estimatedLimit));
+            if (dropped) {
+                // round trip time of a failed call, e.g. refused connection, is not a latency sample
+                setLimit(estimatedLimit - log10);
+                return;
+            }
+            if (++samplesSinceProbe >= PROBE_MULTIPLIER * estimatedLimit) {
+                samplesSinceProbe = 0;
+                rttNoLoadNanos = rttNanos;
+                return;
+            }
+            if (rttNoLoadNanos == 0 || rttNanos < rttNoLoadNanos) {
+                rttNoLoadNanos = rttNanos;
+                return;
+            }
+
+            double newLimit;
+            if (inFlightAtStart * 2 < estimatedLimit) {
+                // not using the limit, nothing learned about it
+                return;
+            } else {
+                double queueSize = Math.ceil(estimatedLimit * (1 - (double) rttNoLoadNanos / rttNanos));
+                if (queueSize <= log10) {
+                    newLimit = estimatedLimit + 6 * log10;
+                } else if (queueSize < 3 * log10) {
+                    newLimit = estimatedLimit + log10;
+                } else if (queueSize > 6 * log10) {
+                    newLimit = estimatedLimit - log10;
+                } else {
+                    return;
+                }
+            }
+            setLimit(newLimit);
+        }
+
+        private void setLimit(double newLimit) {
+            estimatedLimit = Math.max(minLimit, Math.min(maxLimit, newLimit));
+            limit = (int) estimatedLimit;
+        }
+    }
+
+    /**
+     * Builder of {@link ConcurrencyLimiter}.
+     */
+    public static class Builder {
+        private int initialLimit = 20;
+        private int minLimit = 1;
+        private int maxLimit = 1000;
+        private long maxWaitNanos;
+        private int maxHosts = 128;
+
+        /**
+         * @param initialLimit limit of a host before any call completes, by default 20
+         * @param minLimit minimum limit, by default 1
+         * @param maxLimit maximum limit, by default 1000
+         * @return builder
+         */
+        public Builder limits(int initialLimit, int minLimit, int maxLimit) {
+            if (minLimit < 1 || initialLimit < minLimit || initialLimit > maxLimit) {
+                throw new IllegalArgumentException("Limits should satisfy 1 <= minLimit <= initialLimit <= maxLimit, were: "
+                        + minLimit + ", " + initialLimit + ", " + maxLimit);
+            }
+            this.initialLimit = initialLimit;
+            this.minLimit = minLimit;
+            this.maxLimit = maxLimit;
+            return this;
+        }
+
+        /**
+         * @param maxWait maximum time a call waits when its host is at the limit, by default 0 and calls
+         *                are rejected immediately
+         * @param unit unit of the time
+         * @return builder
+         */
+        public Builder maxWait(long maxWait, TimeUnit unit) {
+            this.maxWaitNanos = unit.toNanos(maxWait);
+            return this;
+        }
+
+        /**
+         * @param maxHosts maximum number of hosts with their own limit, by default 128
+         * @return builder
+         */
+        public Builder maxHosts(int maxHosts) {
+            this.maxHosts = maxHosts;
+            return this;
+        }
+
+        public ConcurrencyLimiter build() {
+            return new ConcurrencyLimiter(this);
+        }
+    }
+}
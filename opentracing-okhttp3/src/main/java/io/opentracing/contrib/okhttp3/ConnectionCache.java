@@ -0,0 +1,67 @@
+package io.opentracing.contrib.okhttp3;
+
+import java.lang.ref.WeakReference;
+
+import okhttp3.Connection;
+
+/**
+ * Values computed once per connection.
+ *
+ * <p>It is a direct-mapped table of weakly referenced connections: reads do not lock and
+ * connections dropped by the pool can be collected. Connections mapped to the same slot replace
+ * each other and their values are computed again. Values must not reference the connection.
+ *
+ * @param <V> cached value
+ */
+abstract class ConnectionCache<V> {
+
+    private static final int SIZE = 256;
+
+    private final Entry<V>[] table;
+
+    ConnectionCache() {
+        this(SIZE);
+    }
+
+    /**
+     * @param size number of slots, a power of two
+     */
+    @SuppressWarnings("unchecked")
+    ConnectionCache(int size) {
+        table = new Entry[size];
+    }
+
+    /**
+     * @param connection connection
+     * @return value for the connection, it is computed if the connection has not been seen before
+     */
+    V get(Connection connection) {
+        int hash = System.identityHashCode(connection);
+        int index = (hash ^ (hash >>> 16)) & (table.length - 1);
+
+        // racy read, an entry not yet visible to this thread only means the value is computed again
+        Entry<V> entry = table[index];
+        if (entry != null && entry.get() == connection) {
+            return entry.value;
+        }
+
+        V value = compute(connection);
+        table[index] = new Entry<>(connection, value);
+        return value;
+    }
+
+    /**
+     * @param connection connection
+     * @return value for the connection, not null
+     */
+    abstract V compute(Connection connection);
+
+    private static final class Entry<V> extends WeakReference<Connection> {
+        final V value;
+
+        Entry(Connection connection, V value) {
+            super(connection);
+            this.value = value;
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package io.opentracing.contrib.okhttp3;
+
+import io.opentracing.Span;
+import io.opentracing.tag.StringTag;
+import okhttp3.Connection;
+import okhttp3.Handshake;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * Decorator which adds protocol and TLS tags of the connection used by the call.
+ *
+ * <p>Tags are computed once per connection, pooled and HTTP/2 connections serving many calls
+ * only apply cached values.
+ *
+ * <ul>
+ *     <li>{@code http.protocol} - protocol negotiated by the connection e.g. {@code h2}</li>
+ *     <li>{@code tls.version} - TLS version e.g. {@code TLSv1.2}, only for TLS connections</li>
+ *     <li>{@code tls.cipher_suite} - cipher suite, only for TLS connections</li>
+ * </ul>
+ */
+public class ConnectionTagsDecorator implements SpanDecorator {
+
+    public static final StringTag HTTP_PROTOCOL = new StringTag("http.protocol");
+    public static final StringTag TLS_VERSION = new StringTag("tls.version");
+    public static final StringTag TLS_CIPHER_SUITE = new StringTag("tls.cipher_suite");
+
+    private final ConnectionCache<ConnectionTags> connectionTags = new ConnectionCache<ConnectionTags>() {
+        @Override
+        ConnectionTags compute(Connection connection) {
+            return new ConnectionTags(connection);
+        }
+    };
+
+    @Override
+    public void onRequest(Request request, Span span) {
+    }
+
+    @Override
+    public void onResponse(Response response, Span span) {
+    }
+
+    @Override
+    public void onError(Throwable throwable, Span span) {
+    }
+
+    @Override
+    public void onNetworkResponse(Connection connection, Response response, Span span) {
+        connectionTags.get(connection).apply(span);
+    }
+
+    private static class ConnectionTags {
+        final String protocol;
+        final String tlsVersion;
+        final String cipherSuite;
+
+        ConnectionTags(Connection connection) {
+            this.protocol = connection.protocol().toString();
+            Handshake handshake = connection.handshake();
+            this.tlsVersion = handshake != null ? handshake.tlsVersion().javaName() : null;
+            this.cipherSuite = handshake != null ? handshake.cipherSuite().javaName() : null;
+        }
+
+        void apply(Span span) {
+            HTTP_PROTOCOL.set(span, protocol);
+            if (tlsVersion != null) {
+                TLS_VERSION.set(span, tlsVersion);
+                TLS_CIPHER_SUITE.set(span, cipherSuite);
+            }
+        }
+    }
+}
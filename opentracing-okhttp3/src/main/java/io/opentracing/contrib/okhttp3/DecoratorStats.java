@@ -0,0 +1,115 @@
+package io.opentracing.contrib.okhttp3;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of span decorators: invocations, time spent in them, exceptions they threw and invocations skipped
+ * because the call exceeded its decoration budget. Counters are striped and cumulative since creation.
+ *
+ * @see TracingInterceptor.Builder#decoratorStats(DecoratorStats)
+ */
+public class DecoratorStats {
+
+    private final ConcurrentMap<SpanDecorator, Counters> decorators = new ConcurrentHashMap<>();
+
+    /**
+     * @return snapshot of all decorators which were invoked or skipped at least once
+     */
+    public List<Snapshot> snapshot() {
+        List<Snapshot> snapshots = new ArrayList<>(decorators.size());
+        for (Map.Entry<SpanDecorator, Counters> entry: decorators.entrySet()) {
+            Counters counters = entry.getValue();
+            long invocations = counters.invocations.sum();
+            long skipped = counters.skipped.sum();
+            if (invocations > 0 || skipped > 0) {
+                snapshots.add(new Snapshot(entry.getKey().getClass().getName(), invocations,
+                        TimeUnit.NANOSECONDS.toMicros(counters.nanos.sum()), counters.failures.sum(), skipped));
+            }
+        }
+        return snapshots;
+    }
+
+    Counters counters(SpanDecorator decorator) {
+        Counters counters = decorators.get(decorator);
+        if (counters == null) {
+            counters = new Counters();
+            Counters previous = decorators.putIfAbsent(decorator, counters);
+            if (previous != null) {
+                counters = previous;
+            }
+        }
+        return counters;
+    }
+
+    static final class Counters {
+        final StripedCounter invocations = new StripedCounter();
+        final StripedCounter nanos = new StripedCounter();
+        final StripedCounter failures = new StripedCounter();
+        final StripedCounter skipped = new StripedCounter();
+    }
+
+    /**
+     * Cost of one decorator.
+     */
+    public static final class Snapshot {
+        private final String decorator;
+        private final long invocations;
+        private final long micros;
+        private final long failures;
+        private final long skipped;
+
+        Snapshot(String decorator, long invocations, long micros, long failures, long skipped) {
+            this.decorator = decorator;
+            this.invocations = invocations;
+            this.micros = micros;
+            this.failures = failures;
+            this.skipped = skipped;
+        }
+
+        /**
+         * @return class name of the decorator
+         */
+        public String decorator() {
+            return decorator;
+        }
+
+        /**
+         * @return invocations of all decorator methods
+         */
+        public long invocations() {
+            return invocations;
+        }
+
+        /**
+         * @return time spent in the decorator
+         */
+        public long micros() {
+            return micros;
+        }
+
+        /**
+         * @return invocations which threw an exception
+         */
+        public long failures() {
+            return failures;
+        }
+
+        /**
+         * @return invocations skipped because the call exceeded its decoration budget
+         */
+        public long skipped() {
+            return skipped;
+        }
+
+        @Override
+        public String toString() {
+            return decorator + " invocations=" + invocations + " time=" + micros + "us"
+                    + " failures=" + failures + " skipped=" + skipped;
+        }
+    }
+}
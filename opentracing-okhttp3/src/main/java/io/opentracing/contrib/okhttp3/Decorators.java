@@ -0,0 +1,159 @@
+package io.opentracing.contrib.okhttp3;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import io.opentracing.Span;
+import okhttp3.Connection;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * Span decorators of {@link TracingInterceptor}. Exceptions, linkage errors and assertion errors thrown by decorators
+ * are logged, at most once a minute for each decorator, and do not fail calls. Other errors propagate.
+ * With {@link DecoratorStats} each invocation is timed, with a budget decorators are skipped once the time
+ * spent decorating a call exceeds it.
+ */
+final class Decorators {
+
+    private static final Logger log = Logger.getLogger(Decorators.class.getName());
+
+    private static final int ON_REQUEST = 0;
+    private static final int ON_RESPONSE = 1;
+    private static final int ON_ERROR = 2;
+    private static final int ON_NETWORK_RESPONSE = 3;
+
+    private final SpanDecorator[] decorators;
+    private final DecoratorStats.Counters[] counters;
+    private final long budgetNanos;
+    private final RateLimitedLogger[] failureLogs;
+
+    /**
+     * @param stats stats or null if decorators are not timed
+     * @param budgetNanos time budget of decorators per call, {@link Long#MAX_VALUE} for unlimited
+     */
+    Decorators(List<SpanDecorator> decorators, DecoratorStats stats, long budgetNanos) {
+        this.decorators = decorators.toArray(new SpanDecorator[decorators.size()]);
+        this.budgetNanos = budgetNanos;
+        this.failureLogs = new RateLimitedLogger[this.decorators.length];
+        for (int i = 0; i < failureLogs.length; i++) {
+            failureLogs[i] = new RateLimitedLogger(log, 1, TimeUnit.MINUTES);
+        }
+        if (stats == null && budgetNanos != Long.MAX_VALUE) {
+            stats = new DecoratorStats();
+        }
+        if (stats != null) {
+            this.counters = new DecoratorStats.Counters[this.decorators.length];
+            for (int i = 0; i < this.decorators.length; i++) {
+                counters[i] = stats.counters(this.decorators[i]);
+            }
+        } else {
+            this.counters = null;
+        }
+    }
+
+    private Decorators(SpanDecorator[] decorators, DecoratorStats.Counters[] counters, long budgetNanos,
+                       RateLimitedLogger[] failureLogs) {
+        this.decorators = decorators;
+        this.counters = counters;
+        this.budgetNanos = budgetNanos;
+        this.failureLogs = failureLogs;
+    }
+
+    /**
+     * @param callThread true to select {@link CallThreadDecorator}s, false for other decorators
+     * @return selected decorators in the same order, sharing stats, budget and failure logs with these
+     */
+    Decorators select(boolean callThread) {
+        int selected = 0;
+        for (SpanDecorator decorator: decorators) {
+            if (decorator instanceof CallThreadDecorator == callThread) {
+                selected++;
+            }
+        }
+        SpanDecorator[] selectedDecorators = new SpanDecorator[selected];
+        DecoratorStats.Counters[] selectedCounters = counters != null ? new DecoratorStats.Counters[selected] : null;
+        RateLimitedLogger[] selectedFailureLogs = new RateLimitedLogger[selected];
+        int j = 0;
+        for (int i = 0; i < decorators.length; i++) {
+            if (decorators[i] instanceof CallThreadDecorator == callThread) {
+                selectedDecorators[j] = decorators[i];
+                selectedFailureLogs[j] = failureLogs[i];
+                if (counters != null) {
+                    selectedCounters[j] = counters[i];
+                }
+                j++;
+            }
+        }
+        return new Decorators(selectedDecorators, selectedCounters, budgetNanos, selectedFailureLogs);
+    }
+
+    /**
+     * @param call wrapper of the call accounting the budget, null if the budget does not apply
+     */
+    void onRequest(Request request, Span span, TagWrapper call) {
+        invoke(ON_REQUEST, request, null, span, call);
+    }
+
+    void onResponse(Response response, Span span, TagWrapper call) {
+        invoke(ON_RESPONSE, response, null, span, call);
+    }
+
+    void onError(Throwable throwable, Span span, TagWrapper call) {
+        invoke(ON_ERROR, throwable, null, span, call);
+    }
+
+    void onNetworkResponse(Connection connection, Response response, Span span, TagWrapper call) {
+        invoke(ON_NETWORK_RESPONSE, response, connection, span, call);
+    }
+
+    private void invoke(int event, Object argument, Connection connection, Span span, TagWrapper call) {
+        for (int i = 0; i < decorators.length; i++) {
+            if (counters == null) {
+                invoke(i, event, argument, connection, span, null);
+                continue;
+            }
+            DecoratorStats.Counters decoratorCounters = counters[i];
+            if (call != null && call.decorationNanos >= budgetNanos) {
+                decoratorCounters.skipped.increment();
+                continue;
+            }
+            long startNanos = System.nanoTime();
+            invoke(i, event, argument, connection, span, decoratorCounters);
+            long nanos = System.nanoTime() - startNanos;
+            decoratorCounters.invocations.increment();
+            decoratorCounters.nanos.add(nanos);
+            if (call != null) {
+                call.decorationNanos += nanos;
+            }
+        }
+    }
+
+    private void invoke(int index, int event, Object argument, Connection connection, Span span,
+                        DecoratorStats.Counters decoratorCounters) {
+        SpanDecorator decorator = decorators[index];
+        try {
+            switch (event) {
+                case ON_REQUEST:
+                    decorator.onRequest((Request) argument, span);
+                    break;
+                case ON_RESPONSE:
+                    decorator.onResponse((Response) argument, span);
+                    break;
+                case ON_ERROR:
+                    decorator.onError((Throwable) argument, span);
+                    break;
+                default:
+                    decorator.onNetworkResponse(connection, (Response) argument, span);
+            }
+        } catch (Exception | LinkageError | AssertionError ex) {
+            // checked exceptions can be thrown sneakily, linkage errors by decorators built against other versions
+            if (decoratorCounters != null) {
+                decoratorCounters.failures.increment();
+            }
+            failureLogs[index].log(Level.WARNING, "Span decorator {0} failed", decorator.getClass().getName(), ex);
+        }
+    }
+}
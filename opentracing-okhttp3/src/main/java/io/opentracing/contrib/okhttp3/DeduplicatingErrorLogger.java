@@ -0,0 +1,193 @@
+package io.opentracing.contrib.okhttp3;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import io.opentracing.Span;
+import io.opentracing.tag.Tags;
+
+/**
+ * Error logger which renders the stack trace of the same failure only once per time window.
+ *
+ * <p>Exceptions are fingerprinted by type and top stack frames. The first occurrence of a fingerprint
+ * in a window is logged with the full stack, subsequent ones only with {@code error.fingerprint}
+ * which can be used to find the full stack in another span. Rendered stacks are kept in a bounded
+ * LRU cache, so a burst of identical failures e.g. {@link java.net.SocketTimeoutException} during an outage
+ * renders the stack at most once per window.
+ *
+ * <p>All logs contain event, error kind, message and fingerprint, same keys as {@link ErrorLogger#FULL_STACK}
+ * plus {@code error.fingerprint}.
+ */
+public class DeduplicatingErrorLogger implements ErrorLogger {
+
+    static final String FINGERPRINT = "error.fingerprint";
+
+    private final int fingerprintFrames;
+    private final int maxStackFrames;
+    private final long windowNanos;
+    private final Map<Fingerprint, RenderedStack> stacks;
+
+    /**
+     * Logs full stack once per minute for each fingerprint, fingerprints use top 5 frames,
+     * 256 stacks are cached and stack depth is unlimited.
+     */
+    public DeduplicatingErrorLogger() {
+        this(5, 0, 1, TimeUnit.MINUTES, 256);
+    }
+
+    /**
+     * @param fingerprintFrames number of top stack frames used to fingerprint an exception
+     * @param maxStackFrames maximum number of rendered frames of each exception in the cause chain,
+     *                       0 for unlimited
+     * @param window time window in which the full stack is logged once for each fingerprint
+     * @param unit unit of the window
+     * @param maxCachedStacks maximum number of cached rendered stacks
+     */
+    public DeduplicatingErrorLogger(int fingerprintFrames, int maxStackFrames, long window, TimeUnit unit,
+                                    final int maxCachedStacks) {
+        if (fingerprintFrames < 0 || maxStackFrames < 0 || window < 0 || maxCachedStacks < 1) {
+            throw new IllegalArgumentException("Invalid configuration");
+        }
+        this.fingerprintFrames = fingerprintFrames;
+        this.maxStackFrames = maxStackFrames;
+        this.windowNanos = unit.toNanos(window);
+        this.stacks = new LinkedHashMap<Fingerprint, RenderedStack>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Fingerprint, RenderedStack> eldest) {
+                return size() > maxCachedStacks;
+            }
+        };
+    }
+
+    @Override
+    public void log(Throwable throwable, Span span) {
+        Fingerprint fingerprint = new Fingerprint(throwable, fingerprintFrames);
+        long now = System.nanoTime();
+
+        RenderedStack renderedStack;
+        boolean logStack;
+        synchronized (stacks) {
+            renderedStack = stacks.get(fingerprint);
+            if (renderedStack == null) {
+                renderedStack = new RenderedStack(fingerprint.toHexString(), now);
+                stacks.put(fingerprint, renderedStack);
+                logStack = true;
+            } else {
+                logStack = now - renderedStack.loggedAtNanos >= windowNanos;
+                if (logStack) {
+                    renderedStack.loggedAtNanos = now;
+                }
+            }
+        }
+
+        // sized to hold 5 entries without rehashing
+        Map<String, String> errorLogs = new HashMap<>(8);
+        errorLogs.put("event", Tags.ERROR.getKey());
+        errorLogs.put("error.kind", throwable.getClass().getName());
+        errorLogs.put("message", throwable.getCause() != null ? throwable.getCause().getMessage() :
+                throwable.getMessage());
+        errorLogs.put(FINGERPRINT, renderedStack.fingerprint);
+        if (logStack) {
+            errorLogs.put("stack", renderedStack.stack(throwable));
+        }
+        span.log(errorLogs);
+    }
+
+    String render(Throwable throwable) {
+        StringWriter sw = new StringWriter();
+        if (maxStackFrames == 0) {
+            throwable.printStackTrace(new PrintWriter(sw));
+            return sw.toString();
+        }
+
+        PrintWriter writer = new PrintWriter(sw);
+        Set<Throwable> rendered = Collections.newSetFromMap(new IdentityHashMap<Throwable, Boolean>());
+        String prefix = "";
+        for (Throwable current = throwable; current != null && rendered.add(current); current = current.getCause()) {
+            writer.print(prefix);
+            writer.println(current);
+            StackTraceElement[] frames = current.getStackTrace();
+            int depth = Math.min(frames.length, maxStackFrames);
+            for (int i = 0; i < depth; i++) {
+                writer.print("\tat ");
+                writer.println(frames[i]);
+            }
+            if (depth < frames.length) {
+                writer.print("\t... ");
+                writer.print(frames.length - depth);
+                writer.println(" more");
+            }
+            prefix = "Caused by: ";
+        }
+        writer.flush();
+        return sw.toString();
+    }
+
+    /**
+     * Stack rendered lazily, at most once for the lifetime of the cache entry.
+     */
+    private class RenderedStack {
+        final String fingerprint;
+        long loggedAtNanos;
+        private volatile String stack;
+
+        RenderedStack(String fingerprint, long loggedAtNanos) {
+            this.fingerprint = fingerprint;
+            this.loggedAtNanos = loggedAtNanos;
+        }
+
+        String stack(Throwable throwable) {
+            String result = stack;
+            if (result == null) {
+                result = render(throwable);
+                stack = result;
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Exception type and top stack frames.
+     */
+    static final class Fingerprint {
+        private final Class<?> type;
+        private final StackTraceElement[] frames;
+        private final int hashCode;
+
+        Fingerprint(Throwable throwable, int maxFrames) {
+            this.type = throwable.getClass();
+            StackTraceElement[] stackTrace = throwable.getStackTrace();
+            this.frames = stackTrace.length > maxFrames ? Arrays.copyOf(stackTrace, maxFrames) : stackTrace;
+            this.hashCode = 31 * type.getName().hashCode() + Arrays.hashCode(frames);
+        }
+
+        String toHexString() {
+            return Integer.toHexString(hashCode);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Fingerprint)) {
+                return false;
+            }
+            Fingerprint that = (Fingerprint) o;
+            return hashCode == that.hashCode && type == that.type && Arrays.equals(frames, that.frames);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+}
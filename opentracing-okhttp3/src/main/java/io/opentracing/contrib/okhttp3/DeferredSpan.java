@@ -0,0 +1,86 @@
+package io.opentracing.contrib.okhttp3;
+
+import java.util.concurrent.TimeUnit;
+
+import io.opentracing.Span;
+import io.opentracing.SpanContext;
+import io.opentracing.Tracer;
+import io.opentracing.tag.Tags;
+import okhttp3.Connection;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * Start of a call and its network responses, from which the span is built once the call
+ * turns out to be slow or failed.
+ *
+ * <p>Used only by the thread executing the call, or by {@link SpanFinisher} after the call.
+ */
+final class DeferredSpan {
+
+    private final long startMicros = TimeUnit.MILLISECONDS.toMicros(System.currentTimeMillis());
+    private final long startNanos = System.nanoTime();
+
+    /**
+     * Time the call waited in the dispatcher queue, -1 if unknown.
+     */
+    long queueWaitNanos = -1;
+
+    private NetworkResponse firstNetworkResponse;
+    private NetworkResponse lastNetworkResponse;
+
+    long elapsedNanos() {
+        return System.nanoTime() - startNanos;
+    }
+
+    void addNetworkResponse(Connection connection, Response response) {
+        NetworkResponse networkResponse = new NetworkResponse(connection, response);
+        if (lastNetworkResponse == null) {
+            firstNetworkResponse = networkResponse;
+        } else {
+            lastNetworkResponse.next = networkResponse;
+        }
+        lastNetworkResponse = networkResponse;
+    }
+
+    /**
+     * Build and finish the span, decorators are replayed in the order they would be invoked during the call.
+     *
+     * @param response response or null if the call failed
+     * @param error exception or null
+     */
+    void finish(Tracer tracer, String operationName, SpanContext parentSpanContext, Decorators decorators,
+                TagWrapper call, Request request, Response response, Throwable error, long durationNanos) {
+        Tracer.SpanBuilder spanBuilder = tracer.buildSpan(operationName)
+                .withTag(Tags.SPAN_KIND.getKey(), Tags.SPAN_KIND_CLIENT)
+                .withStartTimestamp(startMicros);
+        if (parentSpanContext != null) {
+            spanBuilder.asChildOf(parentSpanContext);
+        }
+        Span span = spanBuilder.start();
+        TracingInterceptor.setQueueWait(span, queueWaitNanos);
+
+        decorators.onRequest(request, span, call);
+        for (NetworkResponse networkResponse = firstNetworkResponse; networkResponse != null;
+             networkResponse = networkResponse.next) {
+            decorators.onNetworkResponse(networkResponse.connection, networkResponse.response, span, call);
+        }
+        if (error != null) {
+            decorators.onError(error, span, call);
+        } else {
+            decorators.onResponse(response, span, call);
+        }
+        span.finish(startMicros + TimeUnit.NANOSECONDS.toMicros(durationNanos));
+    }
+
+    private static final class NetworkResponse {
+        private final Connection connection;
+        private final Response response;
+        private NetworkResponse next;
+
+        NetworkResponse(Connection connection, Response response) {
+            this.connection = connection;
+            this.response = response;
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package io.opentracing.contrib.okhttp3;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.HashMap;
+import java.util.Map;
+
+import io.opentracing.Span;
+import io.opentracing.tag.Tags;
+
+/**
+ * Adds a log entry representing an exception to the span.
+ *
+ * @see StandardTagsDecorator
+ */
+public interface ErrorLogger {
+
+    /**
+     * @param throwable exception
+     * @param span span
+     */
+    void log(Throwable throwable, Span span);
+
+    /**
+     * Logs event, error kind, message and full stack trace of every exception.
+     */
+    ErrorLogger FULL_STACK = new ErrorLogger() {
+        @Override
+        public void log(Throwable throwable, Span span) {
+            // sized to hold 4 entries without rehashing
+            Map<String, String> errorLogs = new HashMap<>(8);
+            errorLogs.put("event", Tags.ERROR.getKey());
+            errorLogs.put("error.kind", throwable.getClass().getName());
+            errorLogs.put("message", message(throwable));
+
+            StringWriter sw = new StringWriter();
+            throwable.printStackTrace(new PrintWriter(sw));
+            errorLogs.put("stack", sw.toString());
+
+            span.log(errorLogs);
+        }
+
+        private String message(Throwable throwable) {
+            return throwable.getCause() != null ? throwable.getCause().getMessage() : throwable.getMessage();
+        }
+    };
+}
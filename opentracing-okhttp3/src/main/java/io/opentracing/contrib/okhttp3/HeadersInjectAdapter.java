@@ -0,0 +1,76 @@
+package io.opentracing.contrib.okhttp3;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+
+import io.opentracing.propagation.TextMap;
+import okhttp3.Headers;
+import okhttp3.Request;
+
+/**
+ * Helper class to inject span context into request headers.
+ *
+ * <p>Unlike {@link RequestBuilderInjectAdapter} it first collects all propagation headers and then
+ * creates the request builder in one pass, replacing existing values. Requests which are retried or
+ * intercepted again never carry duplicate trace headers.
+ */
+public class HeadersInjectAdapter implements TextMap {
+
+    private String[] namesAndValues = new String[4];
+    private int size;
+
+    @Override
+    public Iterator<Map.Entry<String, String>> iterator() {
+        throw new UnsupportedOperationException("Should be used only with tracer#inject()");
+    }
+
+    @Override
+    public void put(String key, String value) {
+        if (size == namesAndValues.length) {
+            namesAndValues = Arrays.copyOf(namesAndValues, size * 2);
+        }
+        namesAndValues[size++] = key;
+        namesAndValues[size++] = value;
+    }
+
+    /**
+     * @return true if the tracer did not inject any header
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Create request builder with collected headers, existing headers with the same name are replaced.
+     *
+     * @param request request
+     * @return request builder with propagation headers
+     */
+    public Request.Builder newBuilder(Request request) {
+        Request.Builder requestBuilder = request.newBuilder();
+        if (containsAny(request.headers())) {
+            for (int i = 0; i < size; i += 2) {
+                requestBuilder.header(namesAndValues[i], namesAndValues[i + 1]);
+            }
+        } else {
+            // common case, adding is cheaper than replacing
+            for (int i = 0; i < size; i += 2) {
+                requestBuilder.addHeader(namesAndValues[i], namesAndValues[i + 1]);
+            }
+        }
+        return requestBuilder;
+    }
+
+    private boolean containsAny(Headers headers) {
+        for (int h = 0, count = headers.size(); h < count; h++) {
+            String name = headers.name(h);
+            for (int i = 0; i < size; i += 2) {
+                if (name.equalsIgnoreCase(namesAndValues[i])) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+}
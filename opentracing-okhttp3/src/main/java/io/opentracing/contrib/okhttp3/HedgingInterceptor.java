@@ -0,0 +1,579 @@
+package io.opentracing.contrib.okhttp3;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import io.opentracing.Span;
+import io.opentracing.tag.BooleanTag;
+import io.opentracing.tag.StringTag;
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.Connection;
+import okhttp3.Interceptor;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * Interceptor sending a backup call (hedge) when an idempotent call takes longer than a percentile of recent
+ * latencies of its host. The first response wins, a losing hedge is canceled and the connection of a losing
+ * original call is closed.
+ *
+ * <p>Latency percentiles are computed per host over rolling windows, a host is hedged only after a window
+ * with enough calls, windows with fewer calls are extended. Hedges are limited by a token bucket: each call
+ * adds {@code budget} tokens up to 10 hedges, each hedge takes one. Over any period
+ * hedges add at most the budgeted ratio of calls plus the burst, also when the host has been healthy for long.
+ *
+ * <p>Hedge is a clone of the original call ({@link Call#clone()}), it goes through all interceptors of the client
+ * and it is executed by the dispatcher. The interceptor has to be added as application and network interceptor,
+ * after {@link TracingInterceptor}, spans of hedged calls are then tagged with {@link #HEDGE_ROLE} and {@link #HEDGE_WINNER}:
+ * <pre>{@code
+ * HedgingInterceptor hedgingInterceptor = new HedgingInterceptor.Builder().build();
+ * okBuilder.addInterceptor(tracingInterceptor)
+ *     .addInterceptor(hedgingInterceptor)
+ *     .addNetworkInterceptor(tracingInterceptor)
+ *     .addNetworkInterceptor(hedgingInterceptor);
+ * }</pre>
+ * The span of the hedge is a sibling of the span of the original call.
+ *
+ * <p>When the hedge wins, the original call is not canceled, only its connection is closed. A stream of an HTTP/2
+ * connection cannot be closed alone, so calls on HTTP/2 connections are not hedged.
+ */
+public class HedgingInterceptor implements Interceptor {
+
+    /**
+     * {@link #PRIMARY} or {@link #HEDGE}, set only on spans of hedged calls.
+     */
+    public static final StringTag HEDGE_ROLE = new StringTag("http.hedge_role");
+    /**
+     * Whether the call's response was returned to the caller, set only on spans of hedged calls.
+     */
+    public static final BooleanTag HEDGE_WINNER = new BooleanTag("http.hedge_winner");
+
+    public static final String PRIMARY = "primary";
+    public static final String HEDGE = "hedge";
+
+    /**
+     * Hedges which can be sent in a row, when the bucket is full.
+     */
+    static final int MAX_HEDGE_BURST = 10;
+    // tokens are fixed point, one hedge is this many
+    private static final long HEDGE_TOKENS = 1000000;
+
+    private static final Set<String> IDEMPOTENT_METHODS = new HashSet<>(Arrays.asList(
+            "GET", "HEAD", "OPTIONS", "PUT", "DELETE"));
+
+    private final double percentile;
+    private final long tokensPerCall;
+    private final long windowNanos;
+    private final int minSamples;
+    private final int maxHosts;
+    private final ScheduledExecutorService scheduler;
+
+    private final ConcurrentHashMap<String, HostLatency> hosts = new ConcurrentHashMap<>();
+    /**
+     * Original calls which may be hedged and hedges.
+     */
+    private final ConcurrentHashMap<Call, HedgedCall> hedgedCalls = new ConcurrentHashMap<>();
+    private final AtomicLong tokens = new AtomicLong();
+    private final AtomicLong hedgeCount = new AtomicLong();
+
+    private HedgingInterceptor(Builder builder) {
+        this.percentile = builder.percentile;
+        this.tokensPerCall = (long) (builder.budget * HEDGE_TOKENS);
+        this.windowNanos = builder.windowNanos;
+        this.minSamples = builder.minSamples;
+        this.maxHosts = builder.maxHosts;
+        this.scheduler = builder.scheduler != null ? builder.scheduler : SharedScheduler.INSTANCE;
+    }
+
+    /**
+     * @return number of hedges sent
+     */
+    public long hedgeCount() {
+        return hedgeCount.get();
+    }
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        HedgedCall hedgedCall = hedgedCalls.get(chain.call());
+        // network interceptor?
+        if (chain.connection() != null) {
+            return hedgedCall != null && hedgedCall.primary == chain.call()
+                    ? interceptPrimaryAttempt(chain, hedgedCall) : chain.proceed(chain.request());
+        }
+        if (hedgedCall != null) {
+            return interceptHedge(chain, hedgedCall);
+        }
+
+        Request request = chain.request();
+        HostLatency hostLatency = hostLatency(request.url().host());
+        if (hostLatency == null) {
+            return chain.proceed(request);
+        }
+        depositTokens();
+        long thresholdMicros = IDEMPOTENT_METHODS.contains(request.method()) ? hostLatency.thresholdMicros() : -1;
+
+        long startNanos = System.nanoTime();
+        if (thresholdMicros < 0) {
+            Response response = chain.proceed(request);
+            hostLatency.record(System.nanoTime() - startNanos);
+            return response;
+        }
+
+        hedgedCall = new HedgedCall(chain.call());
+        hedgedCalls.put(chain.call(), hedgedCall);
+        ScheduledFuture<?> timer = scheduler.schedule(hedgedCall, thresholdMicros, TimeUnit.MICROSECONDS);
+        Span span = span(request);
+        Response response;
+        try {
+            response = chain.proceed(request);
+        } catch (IOException ex) {
+            timer.cancel(false);
+            hedgedCalls.remove(chain.call());
+            if (!hedgedCall.primaryFailed()) {
+                throw ex;
+            }
+            tagHedge(span, PRIMARY, false);
+            Response hedgeResponse = hedgedCall.awaitHedge();
+            if (hedgeResponse == null) {
+                throw ex;
+            }
+            return hedgeResponse;
+        }
+        timer.cancel(false);
+        hedgedCalls.remove(chain.call());
+        hostLatency.record(System.nanoTime() - startNanos);
+
+        if (hedgedCall.complete(PRIMARY)) {
+            if (hedgedCall.cancelHedge()) {
+                tagHedge(span, PRIMARY, true);
+            }
+            return response;
+        }
+        // hedge won while this response was on the way
+        response.close();
+        tagHedge(span, PRIMARY, false);
+        Response hedgeResponse = hedgedCall.awaitHedge();
+        if (hedgeResponse == null) {
+            throw new IOException("Hedge won but failed to deliver its response");
+        }
+        return hedgeResponse;
+    }
+
+    private Response interceptHedge(Chain chain, HedgedCall hedgedCall) throws IOException {
+        hedgedCall.hedgeStarted();
+        Span span = span(chain.request());
+        long startNanos = System.nanoTime();
+        try {
+            Response response = chain.proceed(chain.request());
+            HostLatency hostLatency = hosts.get(chain.request().url().host());
+            if (hostLatency != null) {
+                hostLatency.record(System.nanoTime() - startNanos);
+            }
+            boolean winner = hedgedCall.complete(HEDGE);
+            tagHedge(span, HEDGE, winner);
+            if (winner) {
+                hedgedCall.closePrimaryConnection();
+            }
+            return response;
+        } catch (IOException ex) {
+            tagHedge(span, HEDGE, false);
+            throw ex;
+        }
+    }
+
+    /**
+     * Network attempt of an original call, its connection is closed if the hedge wins.
+     */
+    private Response interceptPrimaryAttempt(Chain chain, HedgedCall hedgedCall) throws IOException {
+        hedgedCall.attemptStarted(chain.connection());
+        try {
+            return chain.proceed(chain.request());
+        } catch (IOException ex) {
+            if (hedgedCall.hedgeWon()) {
+                // not recoverable, the call is not retried
+                InterruptedIOException lost = new InterruptedIOException("Hedge won");
+                lost.initCause(ex);
+                throw lost;
+            }
+            throw ex;
+        } finally {
+            hedgedCall.attemptFinished();
+        }
+    }
+
+    private void depositTokens() {
+        long current;
+        do {
+            current = tokens.get();
+            if (current >= MAX_HEDGE_BURST * HEDGE_TOKENS || tokensPerCall == 0) {
+                // full bucket, the common case of a healthy host does not write
+                return;
+            }
+        } while (!tokens.compareAndSet(current,
+                Math.min(current + tokensPerCall, MAX_HEDGE_BURST * HEDGE_TOKENS)));
+    }
+
+    /**
+     * @return true if a hedge can be sent within the budget
+     */
+    boolean acquireHedge() {
+        long current;
+        do {
+            current = tokens.get();
+            if (current < HEDGE_TOKENS) {
+                return false;
+            }
+        } while (!tokens.compareAndSet(current, current - HEDGE_TOKENS));
+        hedgeCount.incrementAndGet();
+        return true;
+    }
+
+    private HostLatency hostLatency(String host) {
+        HostLatency hostLatency = hosts.get(host);
+        if (hostLatency == null) {
+            if (hosts.size() >= maxHosts) {
+                return null;
+            }
+            hostLatency = new HostLatency();
+            HostLatency previous = hosts.putIfAbsent(host, hostLatency);
+            if (previous != null) {
+                hostLatency = previous;
+            }
+        }
+        return hostLatency;
+    }
+
+    /**
+     * @return span created by {@link TracingInterceptor} for the request, or null
+     */
+    private static Span span(Request request) {
+        Object tag = request.tag();
+        return tag instanceof TagWrapper ? ((TagWrapper) tag).getSpan() : null;
+    }
+
+    private static void tagHedge(Span span, String role, boolean winner) {
+        if (span != null) {
+            HEDGE_ROLE.set(span, role);
+            HEDGE_WINNER.set(span, winner);
+        }
+    }
+
+    /**
+     * Latency percentile of a host computed from the last complete window with at least {@code minSamples} calls.
+     */
+    private final class HostLatency {
+        private volatile LatencyHistogram histogram = new LatencyHistogram();
+        private volatile long windowEndNanos = System.nanoTime() + windowNanos;
+        private volatile long thresholdMicros = -1;
+
+        void record(long durationNanos) {
+            rotate();
+            histogram.recordNanos(durationNanos);
+        }
+
+        /**
+         * @return latency percentile in microseconds or -1 if there were not enough calls yet
+         */
+        long thresholdMicros() {
+            rotate();
+            return thresholdMicros;
+        }
+
+        private void rotate() {
+            if (System.nanoTime() - windowEndNanos < 0) {
+                return;
+            }
+            synchronized (this) {
+                long now = System.nanoTime();
+                if (now - windowEndNanos < 0) {
+                    return;
+                }
+                LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+                if (snapshot.count() >= minSamples) {
+                    thresholdMicros = snapshot.percentileMicros(percentile);
+                    histogram = new LatencyHistogram();
+                }
+                // window with too few calls is extended
+                windowEndNanos = now + windowNanos;
+            }
+        }
+    }
+
+    /**
+     * Race of the original call and its hedge. The timer sends the hedge, the dispatcher delivers its result.
+     */
+    private final class HedgedCall implements Runnable, Callback {
+        private static final long AWAIT_POLL_NANOS = 100 * 1000 * 1000;
+
+        private final Call primary;
+        private Connection primaryConnection;
+        private Call hedge;
+        private boolean primaryDone;
+        private String winner;
+
+        // the timer fired before the original call's network attempt started
+        private boolean hedgeDue;
+        private boolean hedgeStarted;
+        private boolean hedgeDone;
+        private Response hedgeResponse;
+
+        HedgedCall(Call primary) {
+            this.primary = primary;
+        }
+
+        @Override
+        public void run() {
+            Call hedge;
+            synchronized (this) {
+                if (primaryConnection == null && !primaryDone) {
+                    // sent once the attempt has a connection
+                    hedgeDue = true;
+                    return;
+                }
+                hedge = newHedge();
+            }
+            if (hedge != null) {
+                hedge.enqueue(this);
+            }
+        }
+
+        /**
+         * @return hedge to enqueue or null if the call should not be hedged
+         */
+        private Call newHedge() {
+            if (primaryDone || hedge != null || primaryConnection == null
+                    || primaryConnection.protocol() == Protocol.HTTP_2 || primary.isCanceled() || !acquireHedge()) {
+                return null;
+            }
+            hedge = primary.clone();
+            hedgedCalls.put(hedge, this);
+            return hedge;
+        }
+
+        void attemptStarted(Connection connection) throws InterruptedIOException {
+            Call hedge = null;
+            synchronized (this) {
+                if (HEDGE.equals(winner)) {
+                    throw new InterruptedIOException("Hedge won");
+                }
+                primaryConnection = connection;
+                if (hedgeDue) {
+                    hedgeDue = false;
+                    hedge = newHedge();
+                }
+            }
+            if (hedge != null) {
+                hedge.enqueue(this);
+            }
+        }
+
+        synchronized void attemptFinished() {
+            primaryConnection = null;
+        }
+
+        synchronized void hedgeStarted() {
+            hedgeStarted = true;
+        }
+
+        synchronized boolean hedgeWon() {
+            return HEDGE.equals(winner);
+        }
+
+        /**
+         * Unblock the original call waiting for a response.
+         */
+        void closePrimaryConnection() {
+            Connection connection;
+            synchronized (this) {
+                connection = primaryConnection;
+            }
+            if (connection != null) {
+                try {
+                    connection.socket().close();
+                } catch (IOException ex) {
+                    // closed already
+                }
+            }
+        }
+
+        /**
+         * @return true if the role is the first to complete with a response
+         */
+        synchronized boolean complete(String role) {
+            primaryDone = true;
+            if (winner == null) {
+                winner = role;
+            }
+            return winner.equals(role);
+        }
+
+        /**
+         * @return true if the primary failed after the hedge was sent and the hedge may still deliver a response
+         */
+        boolean primaryFailed() {
+            Call hedge;
+            synchronized (this) {
+                primaryDone = true;
+                if (this.hedge == null) {
+                    return false;
+                }
+                if (primary.isCanceled()) {
+                    // canceled by the caller
+                    hedge = this.hedge;
+                } else {
+                    return true;
+                }
+            }
+            hedge.cancel();
+            return false;
+        }
+
+        /**
+         * @return true if a hedge was sent
+         */
+        boolean cancelHedge() {
+            Call hedge;
+            synchronized (this) {
+                hedge = this.hedge;
+            }
+            if (hedge != null) {
+                hedge.cancel();
+            }
+            return hedge != null;
+        }
+
+        /**
+         * Wait for a hedge which is already executing. A hedge still queued in the dispatcher is canceled,
+         * it may wait for the slot held by this call. The wait ends with the call timeout of the original call
+         * or when it is canceled.
+         *
+         * @return response of the winning hedge or null if the hedge failed, was canceled or timed out
+         */
+        synchronized Response awaitHedge() throws InterruptedIOException {
+            long timeoutNanos = primary.timeout().timeoutNanos();
+            long deadlineNanos = System.nanoTime() + timeoutNanos;
+            while (!hedgeDone) {
+                long remainingNanos = timeoutNanos == 0 ? AWAIT_POLL_NANOS : deadlineNanos - System.nanoTime();
+                if (!hedgeStarted || primary.isCanceled() || remainingNanos <= 0) {
+                    hedge.cancel();
+                    return null;
+                }
+                try {
+                    // cancellation of the original call does not notify, poll it
+                    TimeUnit.NANOSECONDS.timedWait(this, Math.min(remainingNanos, AWAIT_POLL_NANOS));
+                } catch (InterruptedException ex) {
+                    hedge.cancel();
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted while waiting for the hedge");
+                }
+            }
+            return hedgeResponse;
+        }
+
+        @Override
+        public void onFailure(Call call, IOException e) {
+            hedgedCalls.remove(call);
+            synchronized (this) {
+                hedgeDone = true;
+                notifyAll();
+            }
+        }
+
+        @Override
+        public void onResponse(Call call, Response response) {
+            hedgedCalls.remove(call);
+            synchronized (this) {
+                hedgeDone = true;
+                if (HEDGE.equals(winner)) {
+                    hedgeResponse = response;
+                    notifyAll();
+                    return;
+                }
+                notifyAll();
+            }
+            response.close();
+        }
+    }
+
+    /**
+     * Builder of {@link HedgingInterceptor}.
+     */
+    public static class Builder {
+        private double percentile = 0.95;
+        private double budget = 0.05;
+        private long windowNanos = TimeUnit.SECONDS.toNanos(10);
+        private int minSamples = 100;
+        private int maxHosts = 128;
+        private ScheduledExecutorService scheduler;
+
+        /**
+         * @param percentile latency percentile of the host after which a hedge is sent, by default 0.95
+         * @return builder
+         */
+        public Builder percentile(double percentile) {
+            if (percentile <= 0 || percentile >= 1) {
+                throw new IllegalArgumentException("Percentile should be between 0 and 1, was: " + percentile);
+            }
+            this.percentile = percentile;
+            return this;
+        }
+
+        /**
+         * @param budget maximum ratio of hedges to all calls, by default 0.05 (5% extra load),
+         *               at most 10 hedges are sent in a burst
+         * @return builder
+         */
+        public Builder budget(double budget) {
+            if (budget < 0 || budget > 1) {
+                throw new IllegalArgumentException("Budget should be between 0 and 1, was: " + budget);
+            }
+            this.budget = budget;
+            return this;
+        }
+
+        /**
+         * @param window duration of the rolling window of latencies, by default 10 seconds
+         * @param unit unit of the window
+         * @param minSamples minimum calls in a window to compute the percentile, by default 100
+         * @return builder
+         */
+        public Builder window(long window, TimeUnit unit, int minSamples) {
+            this.windowNanos = unit.toNanos(window);
+            this.minSamples = minSamples;
+            return this;
+        }
+
+        /**
+         * @param maxHosts maximum number of hosts with tracked latency, calls to other hosts are not hedged,
+         *                 by default 128
+         * @return builder
+         */
+        public Builder maxHosts(int maxHosts) {
+            this.maxHosts = maxHosts;
+            return this;
+        }
+
+        /**
+         * @param scheduler scheduler of hedges, by default a shared single daemon thread
+         * @return builder
+         */
+        public Builder scheduler(ScheduledExecutorService scheduler) {
+            this.scheduler = scheduler;
+            return this;
+        }
+
+        public HedgingInterceptor build() {
+            return new HedgingInterceptor(this);
+        }
+    }
+}
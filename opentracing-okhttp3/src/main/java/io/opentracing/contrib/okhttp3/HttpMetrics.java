@@ -0,0 +1,209 @@
+package io.opentracing.contrib.okhttp3;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Request rate, errors and latency distribution of client calls by host, HTTP method and status class.
+ *
+ * <p>Recording is lock-free and does not allocate once a host and method has been seen. Number of hosts
+ * and methods per host is bounded, calls over the limit are recorded under {@link #OTHER}.
+ * Values are cumulative since creation, an exporter calls {@link #snapshot()} periodically and computes
+ * rates from differences.
+ *
+ * @see MetricsInterceptor
+ */
+public class HttpMetrics {
+
+    /**
+     * Host or method of calls over the cardinality limit.
+     */
+    public static final String OTHER = "other";
+
+    /**
+     * Status class of calls which failed with an exception.
+     */
+    public static final String ERROR = "error";
+
+    private static final String[] STATUS_CLASSES = {ERROR, "1xx", "2xx", "3xx", "4xx", "5xx"};
+
+    static final int DEFAULT_MAX_HOSTS = 128;
+    static final int DEFAULT_MAX_METHODS = 16;
+
+    private final int maxHosts;
+    private final int maxMethodsPerHost;
+    private final ConcurrentMap<String, Host> hosts = new ConcurrentHashMap<>();
+
+    public HttpMetrics() {
+        this(DEFAULT_MAX_HOSTS, DEFAULT_MAX_METHODS);
+    }
+
+    /**
+     * @param maxHosts maximum number of hosts recorded separately
+     * @param maxMethodsPerHost maximum number of HTTP methods per host recorded separately
+     */
+    public HttpMetrics(int maxHosts, int maxMethodsPerHost) {
+        this.maxHosts = maxHosts;
+        this.maxMethodsPerHost = maxMethodsPerHost;
+    }
+
+    /**
+     * Record a completed call.
+     *
+     * @param host host
+     * @param method HTTP method
+     * @param statusCode response status code
+     * @param durationNanos duration of the call
+     */
+    public void record(String host, String method, int statusCode, long durationNanos) {
+        int statusClass = statusCode / 100;
+        series(host, method).latency(statusClass < 1 ? 1 : statusClass > 5 ? 5 : statusClass)
+                .recordNanos(durationNanos);
+    }
+
+    /**
+     * Record a call which failed with an exception.
+     *
+     * @param host host
+     * @param method HTTP method
+     * @param durationNanos duration of the call
+     */
+    public void recordError(String host, String method, long durationNanos) {
+        series(host, method).latency(0).recordNanos(durationNanos);
+    }
+
+    /**
+     * @return snapshot of all recorded series, one per host, method and status class with at least one call
+     */
+    public List<Snapshot> snapshot() {
+        List<Snapshot> snapshots = new ArrayList<>();
+        for (Map.Entry<String, Host> host: hosts.entrySet()) {
+            for (Map.Entry<String, Series> method: host.getValue().methods.entrySet()) {
+                Series series = method.getValue();
+                for (int i = 0; i < STATUS_CLASSES.length; i++) {
+                    LatencyHistogram histogram = series.histograms.get(i);
+                    if (histogram != null) {
+                        snapshots.add(new Snapshot(host.getKey(), method.getKey(), STATUS_CLASSES[i],
+                                histogram.snapshot()));
+                    }
+                }
+            }
+        }
+        return snapshots;
+    }
+
+    Series series(String host, String method) {
+        Host hostMetrics = hosts.get(host);
+        if (hostMetrics == null) {
+            if (hosts.size() >= maxHosts) {
+                host = OTHER;
+                hostMetrics = hosts.get(host);
+            }
+            if (hostMetrics == null) {
+                hostMetrics = new Host();
+                Host previous = hosts.putIfAbsent(host, hostMetrics);
+                if (previous != null) {
+                    hostMetrics = previous;
+                }
+            }
+        }
+
+        Series series = hostMetrics.methods.get(method);
+        if (series == null) {
+            if (hostMetrics.methods.size() >= maxMethodsPerHost) {
+                method = OTHER;
+                series = hostMetrics.methods.get(method);
+                if (series != null) {
+                    return series;
+                }
+            }
+            series = new Series();
+            Series previous = hostMetrics.methods.putIfAbsent(method, series);
+            if (previous != null) {
+                series = previous;
+            }
+        }
+        return series;
+    }
+
+    private static class Host {
+        final ConcurrentMap<String, Series> methods = new ConcurrentHashMap<>(8);
+    }
+
+    /**
+     * Histograms of one host and method, created lazily for each status class.
+     */
+    static class Series {
+        final AtomicReferenceArray<LatencyHistogram> histograms = new AtomicReferenceArray<>(STATUS_CLASSES.length);
+
+        LatencyHistogram latency(int statusClass) {
+            LatencyHistogram histogram = histograms.get(statusClass);
+            if (histogram == null) {
+                histograms.compareAndSet(statusClass, null, new LatencyHistogram());
+                histogram = histograms.get(statusClass);
+            }
+            return histogram;
+        }
+    }
+
+    /**
+     * Calls of one host, method and status class.
+     */
+    public static final class Snapshot {
+        private final String host;
+        private final String method;
+        private final String statusClass;
+        private final LatencyHistogram.Snapshot latency;
+
+        Snapshot(String host, String method, String statusClass, LatencyHistogram.Snapshot latency) {
+            this.host = host;
+            this.method = method;
+            this.statusClass = statusClass;
+            this.latency = latency;
+        }
+
+        public String host() {
+            return host;
+        }
+
+        public String method() {
+            return method;
+        }
+
+        /**
+         * @return status class e.g. {@code 2xx} or {@link #ERROR} for calls failed with an exception
+         */
+        public String statusClass() {
+            return statusClass;
+        }
+
+        /**
+         * @return true for 5xx responses and calls failed with an exception
+         */
+        public boolean isError() {
+            return ERROR.equals(statusClass) || "5xx".equals(statusClass);
+        }
+
+        /**
+         * @return number of calls
+         */
+        public long count() {
+            return latency.count();
+        }
+
+        public LatencyHistogram.Snapshot latency() {
+            return latency;
+        }
+
+        @Override
+        public String toString() {
+            return host + " " + method + " " + statusClass + " count=" + latency.count()
+                    + " p50=" + latency.percentileMicros(0.5) + "us"
+                    + " p99=" + latency.percentileMicros(0.99) + "us";
+        }
+    }
+}
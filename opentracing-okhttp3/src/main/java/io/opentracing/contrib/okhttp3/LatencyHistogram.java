@@ -0,0 +1,175 @@
+package io.opentracing.contrib.okhttp3;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free latency histogram with fixed log-linear buckets in microseconds.
+ *
+ * <p>Values below 16&micro;s have their own bucket, larger values are split into 8 buckets per power of two,
+ * so a recorded value is at most 12.5% away from its bucket's upper bound. Values over
+ * {@code 2^32}&micro;s (~71 minutes) are recorded in the last bucket. Recording is wait-free and striped
+ * per thread, it does not allocate.
+ */
+public final class LatencyHistogram {
+
+    private static final int LINEAR_BUCKETS = 16;
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int MAX_EXPONENT = 32;
+
+    /**
+     * Number of buckets.
+     */
+    public static final int BUCKETS = LINEAR_BUCKETS + (MAX_EXPONENT - 4) * SUB_BUCKETS;
+
+    /**
+     * Each stripe holds bucket counts followed by the sum, padded to a cache line.
+     */
+    private static final int STRIPE_LENGTH = BUCKETS + StripedCounter.PADDING;
+    private static final int SUM = BUCKETS;
+
+    private final AtomicLongArray cells;
+    private final int stripes;
+
+    public LatencyHistogram() {
+        this(Math.min(StripedCounter.STRIPES, 4));
+    }
+
+    /**
+     * @param stripes power of two, for histograms recorded by a few known threads
+     */
+    LatencyHistogram(int stripes) {
+        this.stripes = stripes;
+        this.cells = new AtomicLongArray(stripes * STRIPE_LENGTH);
+    }
+
+    /**
+     * @param duration duration
+     * @param unit unit of the duration
+     */
+    public void record(long duration, TimeUnit unit) {
+        recordMicros(unit.toMicros(duration));
+    }
+
+    public void recordNanos(long durationNanos) {
+        recordMicros(durationNanos / 1000);
+    }
+
+    public void recordMicros(long micros) {
+        if (micros < 0) {
+            micros = 0;
+        }
+        int offset = (StripedCounter.stripe() & (stripes - 1)) * STRIPE_LENGTH;
+        cells.getAndIncrement(offset + bucket(micros));
+        cells.getAndAdd(offset + SUM, micros);
+    }
+
+    public Snapshot snapshot() {
+        long[] counts = new long[BUCKETS];
+        long sum = 0;
+        for (int stripe = 0; stripe < stripes; stripe++) {
+            int offset = stripe * STRIPE_LENGTH;
+            for (int bucket = 0; bucket < BUCKETS; bucket++) {
+                counts[bucket] += cells.get(offset + bucket);
+            }
+            sum += cells.get(offset + SUM);
+        }
+        return new Snapshot(counts, sum);
+    }
+
+    static int bucket(long micros) {
+        if (micros < LINEAR_BUCKETS) {
+            return (int) micros;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(micros);
+        if (exponent >= MAX_EXPONENT) {
+            return BUCKETS - 1;
+        }
+        int subBucket = (int) (micros >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return LINEAR_BUCKETS + (exponent - 4) * SUB_BUCKETS + subBucket;
+    }
+
+    /**
+     * @param bucket bucket index
+     * @return largest value in microseconds recorded in the bucket
+     */
+    public static long upperBoundMicros(int bucket) {
+        if (bucket < LINEAR_BUCKETS) {
+            return bucket;
+        }
+        if (bucket >= BUCKETS - 1) {
+            return Long.MAX_VALUE;
+        }
+        int exponent = (bucket - LINEAR_BUCKETS) / SUB_BUCKETS + 4;
+        int subBucket = (bucket - LINEAR_BUCKETS) % SUB_BUCKETS;
+        long lowerBound = (1L << exponent) + ((long) subBucket << (exponent - SUB_BUCKET_BITS));
+        return lowerBound + (1L << (exponent - SUB_BUCKET_BITS)) - 1;
+    }
+
+    /**
+     * Immutable copy of histogram counts.
+     */
+    public static final class Snapshot {
+        private final long[] counts;
+        private final long count;
+        private final long sumMicros;
+
+        Snapshot(long[] counts, long sumMicros) {
+            this.counts = counts;
+            this.sumMicros = sumMicros;
+            long count = 0;
+            for (long bucketCount: counts) {
+                count += bucketCount;
+            }
+            this.count = count;
+        }
+
+        public long count() {
+            return count;
+        }
+
+        public long sumMicros() {
+            return sumMicros;
+        }
+
+        /**
+         * @param bucket bucket index, see {@link LatencyHistogram#upperBoundMicros(int)}
+         * @return number of values recorded in the bucket
+         */
+        public long bucketCount(int bucket) {
+            return counts[bucket];
+        }
+
+        /**
+         * @param previous earlier snapshot of the same histogram
+         * @return counts recorded between the previous snapshot and this one
+         */
+        public Snapshot minus(Snapshot previous) {
+            long[] delta = new long[counts.length];
+            for (int bucket = 0; bucket < counts.length; bucket++) {
+                delta[bucket] = counts[bucket] - previous.counts[bucket];
+            }
+            return new Snapshot(delta, sumMicros - previous.sumMicros);
+        }
+
+        /**
+         * @param quantile quantile between 0 and 1 e.g. 0.99
+         * @return upper bound of the bucket containing the quantile in microseconds, 0 if empty
+         */
+        public long percentileMicros(double quantile) {
+            if (count == 0) {
+                return 0;
+            }
+            long rank = (long) Math.ceil(quantile * count);
+            long cumulative = 0;
+            for (int bucket = 0; bucket < counts.length; bucket++) {
+                cumulative += counts[bucket];
+                if (cumulative >= rank && cumulative > 0) {
+                    return upperBoundMicros(bucket);
+                }
+            }
+            return upperBoundMicros(counts.length - 1);
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package io.opentracing.contrib.okhttp3;
+
+import java.io.IOException;
+
+import okhttp3.Interceptor;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * Okhttp interceptor recording rate, errors and latency of client calls into {@link HttpMetrics}.
+ *
+ * <p>It is independent of tracing, all calls are recorded including these rejected by {@link Sampler}.
+ * Duration is measured from the start of the call until response headers are received,
+ * follow-ups and retries are included. Cache outcomes are recorded into {@link CacheMetrics} if there is one.
+ */
+public class MetricsInterceptor implements Interceptor {
+
+    private final HttpMetrics metrics;
+    private final CacheMetrics cacheMetrics;
+
+    /**
+     * Create metrics interceptor. Interceptor has to be added to {@link OkHttpClient.Builder#addInterceptor(Interceptor)}.
+     *
+     * @param metrics metrics registry
+     */
+    public MetricsInterceptor(HttpMetrics metrics) {
+        this(metrics, null);
+    }
+
+    /**
+     * Create metrics interceptor. Interceptor has to be added to {@link OkHttpClient.Builder#addInterceptor(Interceptor)}.
+     *
+     * @param metrics metrics registry
+     * @param cacheMetrics cache metrics registry or null
+     */
+    public MetricsInterceptor(HttpMetrics metrics, CacheMetrics cacheMetrics) {
+        this.metrics = metrics;
+        this.cacheMetrics = cacheMetrics;
+    }
+
+    /**
+     * Add metrics interceptor to client builder.
+     *
+     * @param okBuilder client builder
+     * @param metrics metrics registry
+     * @return client builder with added metrics interceptor
+     */
+    public static OkHttpClient.Builder addMetrics(OkHttpClient.Builder okBuilder, HttpMetrics metrics) {
+        return okBuilder.addInterceptor(new MetricsInterceptor(metrics));
+    }
+
+    /**
+     * Add metrics interceptor to client builder.
+     *
+     * @param okBuilder client builder
+     * @param metrics metrics registry
+     * @param cacheMetrics cache metrics registry
+     * @return client builder with added metrics interceptor
+     */
+    public static OkHttpClient.Builder addMetrics(OkHttpClient.Builder okBuilder, HttpMetrics metrics,
+                                                  CacheMetrics cacheMetrics) {
+        return okBuilder.addInterceptor(new MetricsInterceptor(metrics, cacheMetrics));
+    }
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        Request request = chain.request();
+        long start = System.nanoTime();
+        Response response;
+        try {
+            response = chain.proceed(request);
+        } catch (Throwable ex) {
+            metrics.recordError(request.url().host(), request.method(), System.nanoTime() - start);
+            throw ex;
+        }
+        metrics.record(request.url().host(), request.method(), response.code(), System.nanoTime() - start);
+        if (cacheMetrics != null) {
+            cacheMetrics.record(request.url().host(), response);
+        }
+        return response;
+    }
+}
@@ -0,0 +1,28 @@
+package io.opentracing.contrib.okhttp3;
+
+import okhttp3.Request;
+
+/**
+ * Resolves operation name of the span created for a call.
+ *
+ * <p>It is invoked on every traced call before the span is built and has to be thread safe.
+ * Returned names should have low cardinality, e.g. they should not contain IDs from the URL.
+ */
+public interface OperationNameResolver {
+
+    /**
+     * @param request request which is about to be executed
+     * @return operation name
+     */
+    String operationName(Request request);
+
+    /**
+     * HTTP method of the request.
+     */
+    OperationNameResolver METHOD = new OperationNameResolver() {
+        @Override
+        public String operationName(Request request) {
+            return request.method();
+        }
+    };
+}
@@ -0,0 +1,46 @@
+package io.opentracing.contrib.okhttp3;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Slow call thresholds by operation name, with a default for other operations.
+ *
+ * <p>Together with {@link RouteTemplateResolver} it sets thresholds per route:
+ * <pre>{@code
+ * new OperationThresholds(500, TimeUnit.MILLISECONDS)
+ *     .threshold("GET /users/{id}", 50, TimeUnit.MILLISECONDS)
+ *     .threshold("POST /reports", 5, TimeUnit.SECONDS);
+ * }</pre>
+ */
+public class OperationThresholds implements SlowCallThreshold {
+
+    private final long defaultThresholdNanos;
+    private final Map<String, Long> thresholdsNanos = new ConcurrentHashMap<>();
+
+    /**
+     * @param defaultThreshold threshold of operations without their own threshold
+     * @param unit unit of the threshold
+     */
+    public OperationThresholds(long defaultThreshold, TimeUnit unit) {
+        this.defaultThresholdNanos = unit.toNanos(defaultThreshold);
+    }
+
+    /**
+     * @param operationName operation name
+     * @param threshold threshold of the operation
+     * @param unit unit of the threshold
+     * @return this
+     */
+    public OperationThresholds threshold(String operationName, long threshold, TimeUnit unit) {
+        thresholdsNanos.put(operationName, unit.toNanos(threshold));
+        return this;
+    }
+
+    @Override
+    public long thresholdNanos(String operationName) {
+        Long thresholdNanos = thresholdsNanos.get(operationName);
+        return thresholdNanos != null ? thresholdNanos : defaultThresholdNanos;
+    }
+}
@@ -0,0 +1,40 @@
+package io.opentracing.contrib.okhttp3;
+
+import okhttp3.Connection;
+
+/**
+ * Resolves value of {@link io.opentracing.tag.Tags#PEER_HOSTNAME} for a connection.
+ *
+ * <p>It is invoked on OkHttp's network interceptor chain, inside the traced call,
+ * so implementations should not block.
+ */
+public interface PeerHostnameResolver {
+
+    /**
+     * @param connection connection
+     * @return peer host name
+     */
+    String hostname(Connection connection);
+
+    /**
+     * Host name of the request URL for direct connections or host name of the proxy.
+     * If there is no known host name the literal IP address is returned, no DNS lookup is made.
+     */
+    PeerHostnameResolver NON_BLOCKING = new PeerHostnameResolver() {
+        @Override
+        public String hostname(Connection connection) {
+            return TagValues.hostname(connection);
+        }
+    };
+
+    /**
+     * Host name of the connected socket's address. If the connection was made to an IP address it
+     * performs a blocking reverse DNS lookup, consider {@link CachingReverseLookupResolver} instead.
+     */
+    PeerHostnameResolver REVERSE_LOOKUP = new PeerHostnameResolver() {
+        @Override
+        public String hostname(Connection connection) {
+            return connection.socket().getInetAddress().getHostName();
+        }
+    };
+}
@@ -0,0 +1,28 @@
+package io.opentracing.contrib.okhttp3;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+import okhttp3.Request;
+
+/**
+ * Samples given ratio of calls.
+ */
+public class ProbabilisticSampler implements Sampler {
+
+    private final double ratio;
+
+    /**
+     * @param ratio ratio of sampled calls, between 0 and 1
+     */
+    public ProbabilisticSampler(double ratio) {
+        if (ratio < 0 || ratio > 1) {
+            throw new IllegalArgumentException("Ratio should be between 0 and 1, was: " + ratio);
+        }
+        this.ratio = ratio;
+    }
+
+    @Override
+    public boolean sample(Request request) {
+        return ratio >= 1 || (ratio > 0 && ThreadLocalRandom.current().nextDouble() < ratio);
+    }
+}
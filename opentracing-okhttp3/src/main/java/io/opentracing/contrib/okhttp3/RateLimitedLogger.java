@@ -0,0 +1,66 @@
+package io.opentracing.contrib.okhttp3;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+
+/**
+ * Logs a repeating message at most once per interval, the next logged message reports how many were suppressed.
+ * Guards against log floods from the call path, e.g. a failing decorator logging on every call.
+ */
+final class RateLimitedLogger {
+
+    private final Logger logger;
+    private final long intervalNanos;
+    private final AtomicLong nextLogNanos = new AtomicLong(System.nanoTime());
+    private final AtomicLong suppressed = new AtomicLong();
+
+    RateLimitedLogger(Logger logger, long interval, TimeUnit unit) {
+        this.logger = logger;
+        this.intervalNanos = unit.toNanos(interval);
+    }
+
+    void log(Level level, String message, Throwable thrown) {
+        long suppressedCount = acquire(level);
+        if (suppressedCount >= 0) {
+            logger.log(level, withSuppressed(message, suppressedCount), thrown);
+        }
+    }
+
+    /**
+     * Log a message whose {@code {0}} placeholder is replaced by the parameter, the message is formatted
+     * only if it is logged.
+     */
+    void log(Level level, String format, Object parameter, Throwable thrown) {
+        long suppressedCount = acquire(level);
+        if (suppressedCount >= 0) {
+            LogRecord record = new LogRecord(level, withSuppressed(format, suppressedCount));
+            record.setLoggerName(logger.getName());
+            record.setParameters(new Object[] {parameter});
+            record.setThrown(thrown);
+            logger.log(record);
+        }
+    }
+
+    /**
+     * @return messages suppressed since the last logged one, or -1 if this one is suppressed
+     */
+    private long acquire(Level level) {
+        if (!logger.isLoggable(level)) {
+            return -1;
+        }
+        long now = System.nanoTime();
+        long next = nextLogNanos.get();
+        if (now - next < 0 || !nextLogNanos.compareAndSet(next, now + intervalNanos)) {
+            suppressed.incrementAndGet();
+            return -1;
+        }
+        return suppressed.getAndSet(0);
+    }
+
+    private static String withSuppressed(String message, long suppressedCount) {
+        return suppressedCount > 0 ? message + " (" + suppressedCount + " similar messages suppressed)" : message;
+    }
+}
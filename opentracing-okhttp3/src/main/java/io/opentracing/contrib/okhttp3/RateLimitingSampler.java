@@ -0,0 +1,100 @@
+package io.opentracing.contrib.okhttp3;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.Request;
+
+/**
+ * Samples at most given number of calls per second for each host and HTTP method.
+ *
+ * <p>Every host and method pair has its own token bucket. Number of tracked hosts is bounded,
+ * hosts over the limit share one bucket per method.
+ */
+public class RateLimitingSampler implements Sampler {
+
+    static final int DEFAULT_MAX_HOSTS = 1024;
+
+    private final double creditsPerSecond;
+    private final double maxBalance;
+    private final int maxHosts;
+
+    private final ConcurrentMap<String, ConcurrentMap<String, TokenBucket>> buckets = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, TokenBucket> overflowBuckets = new ConcurrentHashMap<>();
+
+    /**
+     * @param tracesPerSecond sampled calls per second for each host and method, bursts up to the same number
+     */
+    public RateLimitingSampler(double tracesPerSecond) {
+        this(tracesPerSecond, Math.max(tracesPerSecond, 1), DEFAULT_MAX_HOSTS);
+    }
+
+    /**
+     * @param tracesPerSecond sampled calls per second for each host and method
+     * @param maxBurst maximum number of calls sampled in a burst
+     * @param maxHosts maximum number of hosts with separate buckets
+     */
+    public RateLimitingSampler(double tracesPerSecond, double maxBurst, int maxHosts) {
+        if (tracesPerSecond < 0 || maxBurst < 0 || maxHosts < 0) {
+            throw new IllegalArgumentException("Arguments should not be negative");
+        }
+        this.creditsPerSecond = tracesPerSecond;
+        this.maxBalance = maxBurst;
+        this.maxHosts = maxHosts;
+    }
+
+    @Override
+    public boolean sample(Request request) {
+        return bucket(request.url().host(), request.method()).tryAcquire(System.nanoTime());
+    }
+
+    private TokenBucket bucket(String host, String method) {
+        ConcurrentMap<String, TokenBucket> methodBuckets = buckets.get(host);
+        if (methodBuckets == null) {
+            if (buckets.size() >= maxHosts) {
+                methodBuckets = overflowBuckets;
+            } else {
+                methodBuckets = new ConcurrentHashMap<>(4);
+                ConcurrentMap<String, TokenBucket> previous = buckets.putIfAbsent(host, methodBuckets);
+                if (previous != null) {
+                    methodBuckets = previous;
+                }
+            }
+        }
+
+        TokenBucket bucket = methodBuckets.get(method);
+        if (bucket == null) {
+            bucket = new TokenBucket(creditsPerSecond, maxBalance, System.nanoTime());
+            TokenBucket previous = methodBuckets.putIfAbsent(method, bucket);
+            if (previous != null) {
+                bucket = previous;
+            }
+        }
+        return bucket;
+    }
+
+    static class TokenBucket {
+        private final double creditsPerNanosecond;
+        private final double maxBalance;
+        private double balance;
+        private long lastTick;
+
+        TokenBucket(double creditsPerSecond, double maxBalance, long now) {
+            this.creditsPerNanosecond = creditsPerSecond / TimeUnit.SECONDS.toNanos(1);
+            this.maxBalance = maxBalance;
+            this.balance = maxBalance;
+            this.lastTick = now;
+        }
+
+        synchronized boolean tryAcquire(long now) {
+            balance = Math.min(maxBalance, balance + (now - lastTick) * creditsPerNanosecond);
+            lastTick = now;
+            if (balance >= 1) {
+                balance -= 1;
+                return true;
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package io.opentracing.contrib.okhttp3;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import okhttp3.Request;
+
+/**
+ * Operation name resolver which maps URL paths to route templates, e.g. {@code GET /users/{id}/orders}.
+ *
+ * <p>Templates consist of literal segments and variables in curly braces, e.g. {@code /users/{id}}.
+ * Variable matches exactly one path segment. Templates are compiled into a trie of path segments,
+ * resolution walks {@link okhttp3.HttpUrl#pathSegments()} without regular expressions and preferring
+ * literal segments over variables. Operation names are computed once for each template and method.
+ * Trailing slash is ignored.
+ *
+ * <p>Paths not matching any template are named by HTTP method only, so raw paths never become operation names.
+ */
+public class RouteTemplateResolver implements OperationNameResolver {
+
+    private static final int MAX_METHODS = 16;
+
+    private final Node root = new Node();
+
+    /**
+     * @param templates route templates
+     */
+    public RouteTemplateResolver(String... templates) {
+        this(Arrays.asList(templates));
+    }
+
+    /**
+     * @param templates route templates
+     */
+    public RouteTemplateResolver(List<String> templates) {
+        for (String template: templates) {
+            add(template);
+        }
+    }
+
+    @Override
+    public String operationName(Request request) {
+        List<String> segments = request.url().pathSegments();
+        int size = segments.size();
+        if (size > 0 && segments.get(size - 1).isEmpty()) {
+            size--;
+        }
+
+        Node match = match(root, segments, 0, size);
+        return match == null ? request.method() : match.operationName(request.method());
+    }
+
+    private void add(String template) {
+        template = template.startsWith("/") ? template : "/" + template;
+        Node node = root;
+        for (String segment: split(template)) {
+            if (segment.startsWith("{") && segment.endsWith("}")) {
+                if (node.variable == null) {
+                    node.variable = new Node();
+                }
+                node = node.variable;
+            } else {
+                Node child = node.literals.get(segment);
+                if (child == null) {
+                    child = new Node();
+                    node.literals.put(segment, child);
+                }
+                node = child;
+            }
+        }
+        if (node.template != null && !node.template.equals(template)) {
+            throw new IllegalArgumentException("Template " + template + " is ambiguous with " + node.template);
+        }
+        node.template = template;
+    }
+
+    private static Node match(Node node, List<String> segments, int index, int size) {
+        if (index == size) {
+            return node.template != null ? node : null;
+        }
+
+        Node literal = node.literals.get(segments.get(index));
+        if (literal != null) {
+            Node match = match(literal, segments, index + 1, size);
+            if (match != null) {
+                return match;
+            }
+        }
+        if (node.variable != null && !segments.get(index).isEmpty()) {
+            return match(node.variable, segments, index + 1, size);
+        }
+        return null;
+    }
+
+    private static String[] split(String path) {
+        int start = path.startsWith("/") ? 1 : 0;
+        int end = path.endsWith("/") ? path.length() - 1 : path.length();
+        return start >= end ? new String[0] : path.substring(start, end).split("/", -1);
+    }
+
+    /**
+     * Trie node, immutable after construction except for the operation names cache.
+     */
+    private static class Node {
+        final Map<String, Node> literals = new HashMap<>();
+        Node variable;
+        String template;
+
+        private final ConcurrentMap<String, String> operationNames = new ConcurrentHashMap<>(4);
+
+        String operationName(String method) {
+            String operationName = operationNames.get(method);
+            if (operationName == null) {
+                operationName = method + " " + template;
+                if (operationNames.size() < MAX_METHODS) {
+                    operationNames.putIfAbsent(method, operationName);
+                }
+            }
+            return operationName;
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package io.opentracing.contrib.okhttp3;
+
+import okhttp3.Request;
+
+/**
+ * Decides whether a call is traced, before any span is built.
+ *
+ * <p>Unsampled calls do not create a span, skip all {@link SpanDecorator}s and are proceeded
+ * without rebuilding the request. Only a parent {@link io.opentracing.SpanContext} from {@link TagWrapper}
+ * is propagated so downstream services stay in the caller's trace.
+ *
+ * <p>Implementations are invoked on every call and have to be thread safe.
+ */
+public interface Sampler {
+
+    /**
+     * @param request request which is about to be executed
+     * @return true if the call should be traced
+     */
+    boolean sample(Request request);
+
+    /**
+     * Samples all calls.
+     */
+    Sampler ALWAYS = new Sampler() {
+        @Override
+        public boolean sample(Request request) {
+            return true;
+        }
+    };
+}
@@ -0,0 +1,30 @@
+package io.opentracing.contrib.okhttp3;
+
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Single daemon thread running timers of the instrumentation, e.g. hedges and periodic flushes.
+ * Tasks have to be short.
+ */
+final class SharedScheduler {
+
+    static final ScheduledExecutorService INSTANCE = newScheduler();
+
+    private SharedScheduler() {}
+
+    private static ScheduledExecutorService newScheduler() {
+        ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "OkHttp Tracing Scheduler");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        // most timers, e.g. of calls completing before the hedge, are canceled, do not keep them queued
+        scheduler.setRemoveOnCancelPolicy(true);
+        return scheduler;
+    }
+}
@@ -0,0 +1,17 @@
+package io.opentracing.contrib.okhttp3;
+
+/**
+ * Latency above which a call with a deferred span is traced.
+ *
+ * <p>It is invoked at the end of every deferred call and has to be thread safe.
+ *
+ * @see TracingInterceptor.Builder#deferSpans(SlowCallThreshold)
+ */
+public interface SlowCallThreshold {
+
+    /**
+     * @param operationName operation name of the call, e.g. route template resolved by {@link RouteTemplateResolver}
+     * @return threshold in nanoseconds, slower calls are traced
+     */
+    long thresholdNanos(String operationName);
+}
@@ -0,0 +1,354 @@
+package io.opentracing.contrib.okhttp3;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.Buffer;
+
+/**
+ * Background stage finishing spans of {@link TracingInterceptor} off the call thread.
+ *
+ * <p>The call thread takes a snapshot of the response, the exception and the finish timestamp and puts it into
+ * a bounded lock-free queue, {@code onResponse} and {@code onError} decorators and {@link io.opentracing.Span#finish}
+ * run on a single worker thread, which drains the queue in batches. Decorators measuring the call or keeping
+ * state between {@code onRequest} and {@code onResponse} have to implement {@link CallThreadDecorator}, they
+ * are invoked on the call thread, also for dropped spans. The worker is woken up when a batch
+ * is ready or after {@link Builder#maxDelay(long, TimeUnit)}, so call threads rarely pay for waking it.
+ *
+ * <p>When the queue is full the {@link OverflowPolicy} applies. By default the span is dropped: it is never
+ * finished and therefore never reported, drops are counted by {@link #dropped()}. Queued spans are finished
+ * by {@link #shutdown(long, TimeUnit)}, which is also run by a JVM shutdown hook.
+ *
+ * <pre>{@code
+ * SpanFinisher spanFinisher = new SpanFinisher.Builder().build();
+ * TracingInterceptor tracingInterceptor = new TracingInterceptor.Builder(tracer)
+ *     .spanFinisher(spanFinisher)
+ *     .build();
+ * }</pre>
+ */
+public class SpanFinisher {
+
+    private static final Logger log = Logger.getLogger(SpanFinisher.class.getName());
+    private static final long SHUTDOWN_HOOK_TIMEOUT_SECONDS = 5;
+
+    /**
+     * What to do with a span when the queue is full.
+     */
+    public enum OverflowPolicy {
+        /**
+         * Drop the span without finishing it and count it.
+         */
+        DROP,
+        /**
+         * Decorate and finish the span on the call thread.
+         */
+        CALLER_RUNS
+    }
+
+    private final AtomicReferenceArray<Runnable> buffer;
+    private final int mask;
+    private final int batchSize;
+    private final long maxDelayNanos;
+    private final OverflowPolicy overflowPolicy;
+
+    // claimed by producers
+    private final AtomicLong producerIndex = new AtomicLong();
+    // advanced only by the worker, read by producers to find free slots
+    private final AtomicLong consumerIndex = new AtomicLong();
+
+    private final StripedCounter dropped = new StripedCounter();
+    private final AtomicLong finished = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private final RateLimitedLogger failureLog = new RateLimitedLogger(log, 1, TimeUnit.MINUTES);
+
+    private final Thread worker;
+    private final Thread shutdownHook;
+    private volatile boolean parked;
+    private volatile boolean shutdown;
+
+    private SpanFinisher(Builder builder) {
+        int capacity = Integer.highestOneBit(builder.capacity - 1) << 1;
+        this.buffer = new AtomicReferenceArray<>(capacity);
+        this.mask = capacity - 1;
+        this.batchSize = Math.min(builder.batchSize, capacity);
+        this.maxDelayNanos = builder.maxDelayNanos;
+        this.overflowPolicy = builder.overflowPolicy;
+
+        this.worker = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                work();
+            }
+        }, "OkHttp Span Finisher");
+        worker.setDaemon(true);
+        worker.start();
+
+        if (builder.shutdownHook) {
+            shutdownHook = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        shutdown(SHUTDOWN_HOOK_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+                    } catch (InterruptedException ex) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            }, "OkHttp Span Finisher Shutdown");
+            Runtime.getRuntime().addShutdownHook(shutdownHook);
+        } else {
+            shutdownHook = null;
+        }
+    }
+
+    /**
+     * @return response with an empty body of the same content type and length, the body may still be read
+     * by the caller
+     */
+    static Response snapshot(Response response) {
+        ResponseBody body = response.body();
+        return body == null ? response : response.newBuilder()
+                .body(ResponseBody.create(body.contentType(), body.contentLength(), new Buffer()))
+                .build();
+    }
+
+    /**
+     * Queue a task decorating and finishing a span. After shutdown tasks run on the calling thread.
+     */
+    void submit(Runnable task) {
+        if (shutdown) {
+            run(task);
+        } else if (!offer(task)) {
+            if (overflowPolicy == OverflowPolicy.CALLER_RUNS) {
+                run(task);
+            } else {
+                dropped.increment();
+            }
+        } else if (shutdown) {
+            // the worker may have stopped before the task was queued
+            drainAfterShutdown();
+        }
+    }
+
+    /**
+     * @return spans dropped because the queue was full
+     */
+    public long dropped() {
+        return dropped.sum();
+    }
+
+    /**
+     * @return spans finished by the worker, or by the caller when the queue was full or after shutdown
+     */
+    public long finished() {
+        return finished.get();
+    }
+
+    /**
+     * @return spans whose decorators or {@link io.opentracing.Span#finish} threw, they are logged at most
+     * once a minute
+     */
+    public long failures() {
+        return failures.get();
+    }
+
+    /**
+     * @return spans waiting in the queue
+     */
+    public int pending() {
+        return (int) (producerIndex.get() - consumerIndex.get());
+    }
+
+    /**
+     * Finish queued spans and stop the worker. Spans submitted afterwards are finished on the call thread.
+     *
+     * @param timeout maximum time to wait for queued spans
+     * @param unit unit of the timeout
+     * @return true if all queued spans were finished and the worker stopped
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public boolean shutdown(long timeout, TimeUnit unit) throws InterruptedException {
+        shutdown = true;
+        LockSupport.unpark(worker);
+        worker.join(Math.max(1, unit.toMillis(timeout)));
+        if (shutdownHook != null && Thread.currentThread() != shutdownHook) {
+            try {
+                Runtime.getRuntime().removeShutdownHook(shutdownHook);
+            } catch (IllegalStateException ex) {
+                // JVM is shutting down
+            }
+        }
+        return pending() == 0 && !worker.isAlive();
+    }
+
+    private boolean offer(Runnable task) {
+        long index;
+        long queued;
+        do {
+            index = producerIndex.get();
+            queued = index - consumerIndex.get();
+            if (queued >= buffer.length()) {
+                return false;
+            }
+        } while (!producerIndex.compareAndSet(index, index + 1));
+        // the worker stops at a claimed slot until it is published
+        buffer.lazySet((int) index & mask, task);
+
+        if (queued + 1 >= batchSize && parked) {
+            parked = false;
+            LockSupport.unpark(worker);
+        }
+        return true;
+    }
+
+    /**
+     * Run tasks left in the queue once the worker stopped, callers drain one at a time.
+     */
+    private void drainAfterShutdown() {
+        try {
+            worker.join();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        synchronized (this) {
+            while (pending() > 0) {
+                if (drain() == 0) {
+                    // claimed slot not published yet
+                    Thread.yield();
+                }
+            }
+        }
+    }
+
+    private void work() {
+        while (true) {
+            int drained = drain();
+            if (drained == batchSize) {
+                continue;
+            }
+            if (shutdown) {
+                // producers may still publish claimed slots
+                if (pending() == 0) {
+                    return;
+                }
+                Thread.yield();
+                continue;
+            }
+            parked = true;
+            if (pending() < batchSize) {
+                LockSupport.parkNanos(this, maxDelayNanos);
+            }
+            parked = false;
+        }
+    }
+
+    /**
+     * @return number of tasks run, at most one batch
+     */
+    private int drain() {
+        long index = consumerIndex.get();
+        int drained = 0;
+        while (drained < batchSize) {
+            int offset = (int) index & mask;
+            Runnable task = buffer.get(offset);
+            if (task == null) {
+                break;
+            }
+            buffer.lazySet(offset, null);
+            consumerIndex.lazySet(++index);
+            run(task);
+            drained++;
+        }
+        return drained;
+    }
+
+    /**
+     * Errors are caught too, the worker is the only consumer of the queue and must not die.
+     */
+    private void run(Runnable task) {
+        try {
+            task.run();
+            finished.incrementAndGet();
+        } catch (Throwable ex) {
+            failures.incrementAndGet();
+            failureLog.log(Level.WARNING, "Finishing span failed", ex);
+        }
+    }
+
+    /**
+     * Builder of {@link SpanFinisher}.
+     */
+    public static class Builder {
+        private int capacity = 8192;
+        private int batchSize = 128;
+        private long maxDelayNanos = TimeUnit.MILLISECONDS.toNanos(50);
+        private OverflowPolicy overflowPolicy = OverflowPolicy.DROP;
+        private boolean shutdownHook = true;
+
+        /**
+         * @param capacity maximum of queued spans, rounded up to a power of two, by default 8192
+         * @return builder
+         */
+        public Builder capacity(int capacity) {
+            if (capacity < 2) {
+                throw new IllegalArgumentException("Capacity has to be at least 2");
+            }
+            this.capacity = capacity;
+            return this;
+        }
+
+        /**
+         * @param batchSize queued spans which wake up the worker, by default 128
+         * @return builder
+         */
+        public Builder batchSize(int batchSize) {
+            if (batchSize < 1) {
+                throw new IllegalArgumentException("Batch size has to be positive");
+            }
+            this.batchSize = batchSize;
+            return this;
+        }
+
+        /**
+         * @param maxDelay maximum time a span waits for a batch to fill up, by default 50 milliseconds
+         * @param unit unit of the delay
+         * @return builder
+         */
+        public Builder maxDelay(long maxDelay, TimeUnit unit) {
+            if (maxDelay <= 0) {
+                throw new IllegalArgumentException("Maximum delay has to be positive");
+            }
+            this.maxDelayNanos = unit.toNanos(maxDelay);
+            return this;
+        }
+
+        /**
+         * @param overflowPolicy what to do with spans when the queue is full, by default {@link OverflowPolicy#DROP}
+         * @return builder
+         */
+        public Builder overflowPolicy(OverflowPolicy overflowPolicy) {
+            this.overflowPolicy = overflowPolicy;
+            return this;
+        }
+
+        /**
+         * @param shutdownHook true to finish queued spans when the JVM shuts down, waiting at most 5 seconds,
+         *                     by default true
+         * @return builder
+         */
+        public Builder shutdownHook(boolean shutdownHook) {
+            this.shutdownHook = shutdownHook;
+            return this;
+        }
+
+        public SpanFinisher build() {
+            return new SpanFinisher(this);
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package io.opentracing.contrib.okhttp3;
+
+import java.net.Inet4Address;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.util.HashMap;
+import java.util.Map;
+
+import io.opentracing.Span;
+import io.opentracing.tag.Tags;
+import okhttp3.Connection;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * Decorator which adds standard HTTP and peer tags to the span.
+ *
+ * <p> On error it adds {@link Tags#ERROR} with log created by {@link ErrorLogger} and
+ * on redirects adds log entries with peer tags. Peer tags are computed once per connection.
+ *
+ * @see SpanDecorator#STANDARD_TAGS
+ */
+public class StandardTagsDecorator implements SpanDecorator {
+
+    private final ErrorLogger errorLogger;
+    private final ConnectionCache<PeerTags> peerTags;
+
+    /**
+     * Decorator logging full stack trace of every error and resolving peer host names without DNS lookups.
+     */
+    public StandardTagsDecorator() {
+        this(ErrorLogger.FULL_STACK);
+    }
+
+    /**
+     * @param errorLogger creates error logs e.g. {@link DeduplicatingErrorLogger}
+     */
+    public StandardTagsDecorator(ErrorLogger errorLogger) {
+        this(errorLogger, PeerHostnameResolver.NON_BLOCKING);
+    }
+
+    /**
+     * @param errorLogger creates error logs e.g. {@link DeduplicatingErrorLogger}
+     * @param peerHostnameResolver resolves peer host names e.g. {@link CachingReverseLookupResolver}
+     */
+    public StandardTagsDecorator(ErrorLogger errorLogger, final PeerHostnameResolver peerHostnameResolver) {
+        this.errorLogger = errorLogger;
+        this.peerTags = new ConnectionCache<PeerTags>() {
+            @Override
+            PeerTags compute(Connection connection) {
+                return new PeerTags(connection, peerHostnameResolver);
+            }
+        };
+    }
+
+    @Override
+    public void onRequest(Request request, Span span) {
+        Tags.COMPONENT.set(span, "java-okhttp");
+        Tags.HTTP_METHOD.set(span, request.method());
+        // HttpUrl keeps its string form, no copy is made here
+        Tags.HTTP_URL.set(span, request.url().toString());
+    }
+
+    @Override
+    public void onResponse(Response response, Span span) {
+        Tags.HTTP_STATUS.set(span, TagValues.statusCode(response.code()));
+    }
+
+    @Override
+    public void onError(Throwable throwable, Span span) {
+        Tags.ERROR.set(span, Boolean.TRUE);
+        errorLogger.log(throwable, span);
+    }
+
+    @Override
+    public void onNetworkResponse(Connection connection, Response response, Span span) {
+        PeerTags peer = peerTags.get(connection);
+        if (response.isRedirect()) {
+            // sized to hold 4 entries without rehashing
+            Map<String, Object> redirectLogs = new HashMap<>(8);
+            redirectLogs.put("event", "redirect");
+            peer.log(connection, redirectLogs);
+            span.log(redirectLogs);
+        } else {
+            peer.apply(connection, span);
+        }
+    }
+
+    /**
+     * Peer tags of a connection, computed once per connection.
+     */
+    private static class PeerTags {
+        final PeerHostnameResolver peerHostnameResolver;
+        /**
+         * Null if the resolver returned the literal address, a name might be resolved later.
+         */
+        final String hostname;
+        final Integer port;
+        final Integer ipv4;
+        final String ipv6;
+
+        PeerTags(Connection connection, PeerHostnameResolver peerHostnameResolver) {
+            Socket socket = connection.socket();
+            InetAddress inetAddress = socket.getInetAddress();
+            String resolved = peerHostnameResolver.hostname(connection);
+            this.peerHostnameResolver = peerHostnameResolver;
+            this.hostname = resolved.equals(inetAddress.getHostAddress()) ? null : resolved;
+            this.port = socket.getPort();
+            if (inetAddress instanceof Inet4Address) {
+                this.ipv4 = TagValues.ipv4ToInt((Inet4Address) inetAddress);
+                this.ipv6 = null;
+            } else {
+                this.ipv4 = null;
+                this.ipv6 = inetAddress.getHostAddress();
+            }
+        }
+
+        String hostname(Connection connection) {
+            return hostname != null ? hostname : peerHostnameResolver.hostname(connection);
+        }
+
+        void apply(Connection connection, Span span) {
+            Tags.PEER_HOSTNAME.set(span, hostname(connection));
+            Tags.PEER_PORT.set(span, port);
+            if (ipv4 != null) {
+                Tags.PEER_HOST_IPV4.set(span, ipv4);
+            } else {
+                Tags.PEER_HOST_IPV6.set(span, ipv6);
+            }
+        }
+
+        void log(Connection connection, Map<String, Object> fields) {
+            fields.put(Tags.PEER_HOSTNAME.getKey(), hostname(connection));
+            fields.put(Tags.PEER_PORT.getKey(), port);
+            if (ipv4 != null) {
+                fields.put(Tags.PEER_HOST_IPV4.getKey(), ipv4);
+            } else {
+                fields.put(Tags.PEER_HOST_IPV6.getKey(), ipv6);
+            }
+        }
+    }
+}
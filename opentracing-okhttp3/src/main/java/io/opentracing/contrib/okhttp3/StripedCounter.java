@@ -0,0 +1,66 @@
+package io.opentracing.contrib.okhttp3;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counter spreading updates of different threads over separate cache lines.
+ * Java 7 counterpart of {@code LongAdder}: writes are cheap under contention, reads sum all stripes.
+ */
+final class StripedCounter {
+
+    /**
+     * Longs per 64 byte cache line, stripes are this far apart to avoid false sharing.
+     */
+    static final int PADDING = 8;
+    static final int STRIPES = stripes(Runtime.getRuntime().availableProcessors());
+
+    private final AtomicLongArray cells;
+    private final int stripes;
+
+    StripedCounter() {
+        this(STRIPES);
+    }
+
+    /**
+     * @param stripes power of two, for counters updated by a few known threads
+     */
+    StripedCounter(int stripes) {
+        this.stripes = stripes;
+        this.cells = new AtomicLongArray(stripes * PADDING);
+    }
+
+    void increment() {
+        add(1);
+    }
+
+    void add(long delta) {
+        cells.getAndAdd((stripe() & (stripes - 1)) * PADDING, delta);
+    }
+
+    long sum() {
+        long sum = 0;
+        for (int i = 0; i < stripes; i++) {
+            sum += cells.get(i * PADDING);
+        }
+        return sum;
+    }
+
+    /**
+     * @return stripe of the current thread
+     */
+    static int stripe() {
+        long id = Thread.currentThread().getId();
+        return (int) (id ^ (id >>> 32)) & (STRIPES - 1);
+    }
+
+    /**
+     * @return power of two, at least the number of processors but not more than 16
+     */
+    static int stripes(int processors) {
+        int stripes = 1;
+        while (stripes < processors && stripes < 16) {
+            stripes <<= 1;
+        }
+        return stripes;
+    }
+}
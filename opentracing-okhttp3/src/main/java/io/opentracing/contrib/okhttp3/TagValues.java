@@ -0,0 +1,71 @@
+package io.opentracing.contrib.okhttp3;
+
+import java.net.Inet4Address;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.net.Socket;
+import java.net.SocketAddress;
+
+import okhttp3.Connection;
+import okhttp3.Route;
+
+/**
+ * Conversions of call attributes to tag values, without blocking and with as few allocations as possible.
+ */
+final class TagValues {
+
+    private static final int MIN_STATUS_CODE = 100;
+    private static final Integer[] STATUS_CODES = new Integer[600 - MIN_STATUS_CODE];
+    static {
+        for (int i = 0; i < STATUS_CODES.length; i++) {
+            STATUS_CODES[i] = MIN_STATUS_CODE + i;
+        }
+    }
+
+    private TagValues() {}
+
+    /**
+     * @param code HTTP status code
+     * @return boxed status code, shared instance for codes between 100 and 599
+     */
+    static Integer statusCode(int code) {
+        int index = code - MIN_STATUS_CODE;
+        return index >= 0 && index < STATUS_CODES.length ? STATUS_CODES[index] : Integer.valueOf(code);
+    }
+
+    /**
+     * @param address IPv4 address
+     * @return address as a big-endian int, same as {@code ByteBuffer.wrap(address.getAddress()).getInt()}
+     */
+    static int ipv4ToInt(Inet4Address address) {
+        byte[] bytes = address.getAddress();
+        return (bytes[0] & 0xFF) << 24
+                | (bytes[1] & 0xFF) << 16
+                | (bytes[2] & 0xFF) << 8
+                | (bytes[3] & 0xFF);
+    }
+
+    /**
+     * Host name of the peer without DNS lookup.
+     *
+     * @param connection connection
+     * @return host name of the request URL for direct routes, otherwise known host name
+     * or literal IP address of the connected socket
+     */
+    static String hostname(Connection connection) {
+        Route route = connection.route();
+        if (route != null) {
+            if (route.proxy().type() == Proxy.Type.DIRECT) {
+                return route.address().url().host();
+            }
+            return route.socketAddress().getHostString();
+        }
+
+        Socket socket = connection.socket();
+        SocketAddress socketAddress = socket.getRemoteSocketAddress();
+        if (socketAddress instanceof InetSocketAddress) {
+            return ((InetSocketAddress) socketAddress).getHostString();
+        }
+        return socket.getInetAddress().getHostAddress();
+    }
+}
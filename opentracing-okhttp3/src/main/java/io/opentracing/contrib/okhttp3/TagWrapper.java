@@ -15,6 +15,33 @@ public class TagWrapper {
 
     private Object tag;
 
+    /**
+     * Network attempts of the call, updated only by the call's thread.
+     */
+    int attempts;
+
+    /**
+     * Time spent in span decorators of the call, updated by the call's thread or by {@link SpanFinisher} after it.
+     */
+    long decorationNanos;
+
+    /**
+     * Span of the call which is built only if the call is slow or fails, null if the span is not deferred.
+     */
+    DeferredSpan deferredSpan;
+
+    /**
+     * Set by {@link TracingEventListener} on the wrapper of a network attempt when it tagged the attempt's span
+     * with {@link TracingEventListener#CONNECTION_REUSED}.
+     */
+    boolean connectionReusedTagged;
+
+    /**
+     * {@link System#nanoTime()} when the call was enqueued or executed, set by {@link TracingCallFactory},
+     * 0 once the call started or if unknown.
+     */
+    volatile long enqueuedNanos;
+
     /**
      * @param tag user tag
      */
@@ -31,13 +58,14 @@ public class TagWrapper {
     }
 
     /**
-     * @param wrapper previous wrapper
+     * @param parentSpanContext parent span context or null
+     * @param tag user tag
      * @param span span
      */
-    TagWrapper(TagWrapper wrapper, Span span) {
-        this.parentSpanContext = wrapper.parentSpanContext;
+    TagWrapper(SpanContext parentSpanContext, Object tag, Span span) {
+        this.parentSpanContext = parentSpanContext;
+        this.tag = tag;
         this.span = span;
-        this.tag = wrapper.tag;
     }
 
     public void setTag(Object tag) {
@@ -0,0 +1,107 @@
+package io.opentracing.contrib.okhttp3;
+
+import java.io.IOException;
+
+import io.opentracing.SpanContext;
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okio.Timeout;
+
+/**
+ * Call factory which sets the {@link ActiveSpanContext} of the thread creating a call as the parent
+ * in {@link TagWrapper}. Parent is then exact also for enqueued calls which run on dispatcher threads.
+ * Parents already set in {@link TagWrapper} are kept.
+ *
+ * <p>Calls record when they were enqueued or executed, {@link TracingInterceptor} tags spans with the time
+ * the call waited in the {@link okhttp3.Dispatcher} queue as {@link TracingInterceptor#QUEUE_WAIT}.
+ *
+ * <p>Client has to be traced by {@link TracingInterceptor}.
+ */
+public class TracingCallFactory implements Call.Factory {
+
+    private final Call.Factory delegate;
+
+    /**
+     * @param delegate call factory, usually {@link OkHttpClient}
+     */
+    public TracingCallFactory(Call.Factory delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public Call newCall(Request request) {
+        Object tag = request.tag();
+        SpanContext spanContext = null;
+        if (tag instanceof TagWrapper) {
+            spanContext = ((TagWrapper) tag).getParentSpanContext();
+            tag = ((TagWrapper) tag).getTag();
+        }
+        if (spanContext == null) {
+            spanContext = ActiveSpanContext.current();
+        }
+        // user's wrapper can be shared by several requests, a new one is created for each call
+        TagWrapper tagWrapper = new TagWrapper(spanContext, tag, null);
+        return new QueueTimedCall(delegate.newCall(request.newBuilder()
+                .tag(tagWrapper)
+                .build()), tagWrapper);
+    }
+
+    /**
+     * Call recording the time it was enqueued or executed into its {@link TagWrapper}.
+     */
+    private static final class QueueTimedCall implements Call {
+        private final Call delegate;
+        private final TagWrapper tagWrapper;
+
+        QueueTimedCall(Call delegate, TagWrapper tagWrapper) {
+            this.delegate = delegate;
+            this.tagWrapper = tagWrapper;
+        }
+
+        @Override
+        public Request request() {
+            return delegate.request();
+        }
+
+        @Override
+        public Response execute() throws IOException {
+            tagWrapper.enqueuedNanos = System.nanoTime();
+            return delegate.execute();
+        }
+
+        @Override
+        public void enqueue(Callback responseCallback) {
+            tagWrapper.enqueuedNanos = System.nanoTime();
+            delegate.enqueue(responseCallback);
+        }
+
+        @Override
+        public void cancel() {
+            delegate.cancel();
+        }
+
+        @Override
+        public boolean isExecuted() {
+            return delegate.isExecuted();
+        }
+
+        @Override
+        public boolean isCanceled() {
+            return delegate.isCanceled();
+        }
+
+        @Override
+        public Timeout timeout() {
+            return delegate.timeout();
+        }
+
+        @Override
+        public Call clone() {
+            // the clone shares the request, enqueue time is recorded for whichever call starts next
+            return new QueueTimedCall(delegate.clone(), tagWrapper);
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package io.opentracing.contrib.okhttp3;
+
+import java.io.IOException;
+
+import io.opentracing.SpanContext;
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.Response;
+
+/**
+ * Callback which is invoked with the {@link ActiveSpanContext} of the thread which created it,
+ * so spans started and calls enqueued in the callback are children of the caller's span:
+ * <pre>{@code
+ * client.newCall(request).enqueue(new TracingCallback(callback));
+ * }</pre>
+ */
+public class TracingCallback implements Callback {
+
+    private final Callback delegate;
+    private final SpanContext spanContext;
+
+    /**
+     * @param delegate callback, it is invoked with the span context active at construction
+     */
+    public TracingCallback(Callback delegate) {
+        this(delegate, ActiveSpanContext.current());
+    }
+
+    /**
+     * @param delegate callback
+     * @param spanContext span context active during the callback or null
+     */
+    public TracingCallback(Callback delegate, SpanContext spanContext) {
+        this.delegate = delegate;
+        this.spanContext = spanContext;
+    }
+
+    @Override
+    public void onFailure(Call call, IOException e) {
+        SpanContext previousTask = TracingExecutorService.suspendTaskContext();
+        SpanContext previous = ActiveSpanContext.activate(spanContext);
+        try {
+            delegate.onFailure(call, e);
+        } finally {
+            ActiveSpanContext.restore(previous);
+            TracingExecutorService.restoreTaskContext(previousTask);
+        }
+    }
+
+    @Override
+    public void onResponse(Call call, Response response) throws IOException {
+        SpanContext previousTask = TracingExecutorService.suspendTaskContext();
+        SpanContext previous = ActiveSpanContext.activate(spanContext);
+        try {
+            delegate.onResponse(call, response);
+        } finally {
+            ActiveSpanContext.restore(previous);
+            TracingExecutorService.restoreTaskContext(previousTask);
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package io.opentracing.contrib.okhttp3;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.util.List;
+
+import io.opentracing.Span;
+import io.opentracing.tag.BooleanTag;
+import io.opentracing.tag.IntTag;
+import okhttp3.Call;
+import okhttp3.EventListener;
+import okhttp3.Handshake;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * Event listener which tags the span created by {@link TracingInterceptor} with durations of connection phases
+ * in microseconds: DNS lookup, TCP connect, TLS handshake, sending the request and time to first byte
+ * of the response. Span is found in {@link TagWrapper} of the network request, calls not traced
+ * (e.g. rejected by {@link Sampler}) are not tagged.
+ *
+ * <p>Phases are tagged when the request is sent, only phases of the connection used by the request are
+ * tagged, calls over a pooled connection are tagged with {@link #CONNECTION_REUSED} only.
+ * Timing is kept in primitive fields of the listener created for each call.
+ *
+ * <p>Initialization via {@link OkHttpClient.Builder#eventListenerFactory(EventListener.Factory)}
+ * with {@link #FACTORY}.
+ */
+public class TracingEventListener extends EventListener {
+
+    public static final IntTag DNS_DURATION = new IntTag("http.dns_us");
+    public static final IntTag CONNECT_DURATION = new IntTag("http.connect_us");
+    public static final IntTag TLS_DURATION = new IntTag("http.tls_us");
+    public static final IntTag REQUEST_DURATION = new IntTag("http.request_us");
+    /**
+     * Time from the end of the request until the response headers were read. OkHttp signals
+     * {@code responseHeadersStart} before it blocks reading them, so the end is taken instead.
+     */
+    public static final IntTag TIME_TO_FIRST_BYTE = new IntTag("http.ttfb_us");
+    /**
+     * True if the request was sent over a pooled connection, i.e. the attempt did not connect.
+     */
+    public static final BooleanTag CONNECTION_REUSED = new BooleanTag("http.connection_reused");
+
+    /**
+     * Creates a listener for each call.
+     */
+    public static final EventListener.Factory FACTORY = new EventListener.Factory() {
+        @Override
+        public EventListener create(Call call) {
+            return new TracingEventListener();
+        }
+    };
+
+    private static final long NONE = -1;
+
+    private long dnsStartNanos = NONE;
+    private long dnsNanos = NONE;
+    private long connectStartNanos = NONE;
+    private long connectNanos = NONE;
+    private long tlsStartNanos = NONE;
+    private long tlsNanos = NONE;
+    private long requestStartNanos = NONE;
+    private long requestEndNanos = NONE;
+    private boolean connected;
+
+    @Override
+    public void dnsStart(Call call, String domainName) {
+        dnsStartNanos = System.nanoTime();
+    }
+
+    @Override
+    public void dnsEnd(Call call, String domainName, List<InetAddress> inetAddressList) {
+        dnsNanos = elapsedSince(dnsStartNanos);
+    }
+
+    @Override
+    public void connectStart(Call call, InetSocketAddress inetSocketAddress, Proxy proxy) {
+        connectStartNanos = System.nanoTime();
+        tlsNanos = NONE;
+        connected = true;
+    }
+
+    @Override
+    public void secureConnectStart(Call call) {
+        tlsStartNanos = System.nanoTime();
+    }
+
+    @Override
+    public void secureConnectEnd(Call call, Handshake handshake) {
+        tlsNanos = elapsedSince(tlsStartNanos);
+    }
+
+    @Override
+    public void connectEnd(Call call, InetSocketAddress inetSocketAddress, Proxy proxy, Protocol protocol) {
+        connectNanos = elapsedSince(connectStartNanos);
+    }
+
+    @Override
+    public void requestHeadersStart(Call call) {
+        requestStartNanos = System.nanoTime();
+    }
+
+    @Override
+    public void requestHeadersEnd(Call call, Request request) {
+        requestEndNanos = System.nanoTime();
+
+        Span span = span(request);
+        if (span != null) {
+            CONNECTION_REUSED.set(span, !connected);
+            ((TagWrapper) request.tag()).connectionReusedTagged = true;
+            if (connected) {
+                setDuration(span, DNS_DURATION, dnsNanos);
+                setDuration(span, CONNECT_DURATION, connectNanos);
+                setDuration(span, TLS_DURATION, tlsNanos);
+            }
+        }
+
+        // next attempt e.g. a redirect is tagged only with its own phases
+        connected = false;
+        dnsNanos = NONE;
+        connectNanos = NONE;
+        tlsNanos = NONE;
+    }
+
+    @Override
+    public void requestBodyEnd(Call call, long byteCount) {
+        requestEndNanos = System.nanoTime();
+    }
+
+    @Override
+    public void responseHeadersEnd(Call call, Response response) {
+        long responseNanos = System.nanoTime();
+        Span span = span(response.request());
+        if (span != null) {
+            if (requestStartNanos != NONE && requestEndNanos != NONE) {
+                setDuration(span, REQUEST_DURATION, requestEndNanos - requestStartNanos);
+            }
+            if (requestEndNanos != NONE) {
+                setDuration(span, TIME_TO_FIRST_BYTE, responseNanos - requestEndNanos);
+            }
+        }
+        requestStartNanos = NONE;
+        requestEndNanos = NONE;
+    }
+
+    private static Span span(Request request) {
+        Object tag = request.tag();
+        return tag instanceof TagWrapper ? ((TagWrapper) tag).getSpan() : null;
+    }
+
+    private static long elapsedSince(long startNanos) {
+        return startNanos == NONE ? NONE : System.nanoTime() - startNanos;
+    }
+
+    private static void setDuration(Span span, IntTag tag, long nanos) {
+        if (nanos != NONE) {
+            tag.set(span, (int) Math.min(nanos / 1000, Integer.MAX_VALUE));
+        }
+    }
+}
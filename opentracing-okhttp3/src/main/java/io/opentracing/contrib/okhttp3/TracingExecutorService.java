@@ -0,0 +1,114 @@
+package io.opentracing.contrib.okhttp3;
+
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import io.opentracing.SpanContext;
+import okhttp3.Dispatcher;
+
+/**
+ * Executor service which runs tasks with the {@link ActiveSpanContext} of the thread which submitted them.
+ * Tasks submitted without an active context are not wrapped.
+ *
+ * <p>It is meant for {@link Dispatcher#Dispatcher(ExecutorService)}, calls enqueued while the dispatcher
+ * has capacity run with the context of the enqueuing thread. Calls which were queued are executed later
+ * by the thread of a call which finished or of another enqueued call. The context a task ran with is not
+ * propagated to calls the dispatcher promotes after the task's call finished, those calls run without
+ * a context. Calls promoted by another enqueuing thread get that thread's context. Use
+ * {@link TracingCallFactory} for exact parents of queued calls and {@link TracingCallback} for callbacks.
+ */
+public class TracingExecutorService extends AbstractExecutorService {
+
+    /**
+     * Context activated on the current thread by a task of this executor.
+     */
+    private static final ThreadLocal<SpanContext> taskContext = new ThreadLocal<>();
+
+    private final ExecutorService delegate;
+
+    /**
+     * @param delegate executor service running the tasks
+     */
+    public TracingExecutorService(ExecutorService delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        SpanContext spanContext = ActiveSpanContext.current();
+        if (spanContext != null && spanContext == taskContext.get()) {
+            // the dispatcher promotes queued calls from the thread of a finished call, the context is not theirs
+            spanContext = null;
+        }
+        delegate.execute(spanContext == null ? command : new ContextRunnable(spanContext, command));
+    }
+
+    @Override
+    public void shutdown() {
+        delegate.shutdown();
+    }
+
+    @Override
+    public List<Runnable> shutdownNow() {
+        return delegate.shutdownNow();
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return delegate.isShutdown();
+    }
+
+    @Override
+    public boolean isTerminated() {
+        return delegate.isTerminated();
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        return delegate.awaitTermination(timeout, unit);
+    }
+
+    /**
+     * Context is activated by the caller, calls enqueued by the caller get it also on a dispatcher thread.
+     *
+     * @return context of the current task, it has to be restored by {@link #restoreTaskContext(SpanContext)}
+     */
+    static SpanContext suspendTaskContext() {
+        SpanContext previous = taskContext.get();
+        if (previous != null) {
+            taskContext.remove();
+        }
+        return previous;
+    }
+
+    static void restoreTaskContext(SpanContext previous) {
+        if (previous != null) {
+            taskContext.set(previous);
+        }
+    }
+
+    private static final class ContextRunnable implements Runnable {
+        private final SpanContext spanContext;
+        private final Runnable delegate;
+
+        ContextRunnable(SpanContext spanContext, Runnable delegate) {
+            this.spanContext = spanContext;
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void run() {
+            SpanContext previousTask = taskContext.get();
+            taskContext.set(spanContext);
+            SpanContext previous = ActiveSpanContext.activate(spanContext);
+            try {
+                delegate.run();
+            } finally {
+                ActiveSpanContext.restore(previous);
+                taskContext.set(previousTask);
+            }
+        }
+    }
+}
@@ -1,14 +1,20 @@
 package io.opentracing.contrib.okhttp3;
 
 import java.io.IOException;
-import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import io.opentracing.Span;
+import io.opentracing.SpanContext;
 import io.opentracing.Tracer;
 import io.opentracing.propagation.Format;
+import io.opentracing.tag.IntTag;
 import io.opentracing.tag.Tags;
+import okhttp3.Connection;
 import okhttp3.Interceptor;
 import okhttp3.OkHttpClient;
 import okhttp3.Request;
@@ -16,7 +22,7 @@ import okhttp3.Response;
 
 /**
  * Okhttp interceptor to trace client requests. Interceptor adds span context into outgoing requests.
- * By default span operation name is set to HTTP method.
+ * By default span operation name is set to HTTP method, it can be changed by {@link OperationNameResolver}.
  *
  * <p>Initialization via {@link TracingInterceptor#addTracing(OkHttpClient.Builder, Tracer, List)}
  *
@@ -25,16 +31,54 @@ import okhttp3.Response;
  *
  * <p> Created span is by default in a new trace,
  * if you want to connect it with a parent span, then add parent {@link TagWrapper} with
- * parent {@link io.opentracing.SpanContext} to {@link Request.Builder#tag(Object)}.
+ * parent {@link io.opentracing.SpanContext} to {@link Request.Builder#tag(Object)}, or activate the parent
+ * by {@link ActiveSpanContext}.
+ *
+ * <p>Calls rejected by {@link Sampler} are not traced, only the parent span context is propagated.
+ * With {@link Builder#deferSpans(SlowCallThreshold)} spans are built only for slow and failed calls.
+ * With {@link Builder#concurrencyLimiter(ConcurrencyLimiter)} calls of all kinds are limited per host.
+ * With {@link Builder#spanFinisher(SpanFinisher)} spans are decorated and finished off the call thread.
+ *
+ * <p>Further options are configured by {@link TracingInterceptor.Builder}.
  *
  * @author Pavol Loffay
  */
 public class TracingInterceptor implements Interceptor {
 
     private static final Logger log = Logger.getLogger(TracingInterceptor.class.getName());
+    private static final RateLimitedLogger missingTagLog = new RateLimitedLogger(log, 1, TimeUnit.MINUTES);
+
+    /**
+     * Number of the network attempt within a call, starting at 1. Set on spans of network attempts.
+     *
+     * @see Builder#networkSpans(boolean)
+     */
+    public static final IntTag ATTEMPT = new IntTag("http.attempt");
+
+    /**
+     * Microseconds the call waited in the {@link okhttp3.Dispatcher} queue or between
+     * {@link okhttp3.Call#execute()} and the interceptor. Set on calls created by {@link TracingCallFactory}.
+     */
+    public static final IntTag QUEUE_WAIT = new IntTag("http.queue_wait_us");
 
     private Tracer tracer;
-    private List<SpanDecorator> decorators;
+    private Decorators decorators;
+    private Sampler sampler;
+    private OperationNameResolver operationNameResolver;
+    private boolean traceBodies;
+    private boolean networkSpans;
+    private SlowCallThreshold slowCallThreshold;
+    private ConcurrencyLimiter concurrencyLimiter;
+    private SpanFinisher spanFinisher;
+    // with a span finisher, decorators invoked on the call thread and by the finisher
+    private Decorators callThreadDecorators;
+    private Decorators deferredDecorators;
+    private final ConnectionCache<AtomicInteger> connectionUses = new ConnectionCache<AtomicInteger>() {
+        @Override
+        AtomicInteger compute(Connection connection) {
+            return new AtomicInteger();
+        }
+    };
 
     /**
      * Create tracing interceptor. Interceptor has to be added to {@link OkHttpClient.Builder#addInterceptor(Interceptor)}
@@ -44,8 +88,52 @@ public class TracingInterceptor implements Interceptor {
      * @param decorators decorators
      */
     public TracingInterceptor(Tracer tracer, List<SpanDecorator> decorators) {
-        this.tracer = tracer;
-        this.decorators = new ArrayList<>(decorators);
+        this(tracer, decorators, Sampler.ALWAYS);
+    }
+
+    /**
+     * Create tracing interceptor. Interceptor has to be added to {@link OkHttpClient.Builder#addInterceptor(Interceptor)}
+     * and {@link OkHttpClient.Builder#addNetworkInterceptor(Interceptor)}.
+     *
+     * @param tracer tracer
+     * @param decorators decorators
+     * @param sampler decides which calls are traced
+     */
+    public TracingInterceptor(Tracer tracer, List<SpanDecorator> decorators, Sampler sampler) {
+        this(tracer, decorators, sampler, OperationNameResolver.METHOD);
+    }
+
+    /**
+     * Create tracing interceptor. Interceptor has to be added to {@link OkHttpClient.Builder#addInterceptor(Interceptor)}
+     * and {@link OkHttpClient.Builder#addNetworkInterceptor(Interceptor)}.
+     *
+     * @param tracer tracer
+     * @param decorators decorators
+     * @param sampler decides which calls are traced
+     * @param operationNameResolver resolves operation names of spans
+     */
+    public TracingInterceptor(Tracer tracer, List<SpanDecorator> decorators, Sampler sampler,
+                              OperationNameResolver operationNameResolver) {
+        this(new Builder(tracer)
+                .decorators(decorators)
+                .sampler(sampler)
+                .operationNameResolver(operationNameResolver));
+    }
+
+    private TracingInterceptor(Builder builder) {
+        this.tracer = builder.tracer;
+        this.decorators = new Decorators(builder.decorators, builder.decoratorStats, builder.decoratorBudgetNanos);
+        this.sampler = builder.sampler;
+        this.operationNameResolver = builder.operationNameResolver;
+        this.traceBodies = builder.traceBodies;
+        this.networkSpans = builder.networkSpans;
+        this.slowCallThreshold = builder.slowCallThreshold;
+        this.concurrencyLimiter = builder.concurrencyLimiter;
+        this.spanFinisher = builder.spanFinisher;
+        if (spanFinisher != null) {
+            this.callThreadDecorators = decorators.select(true);
+            this.deferredDecorators = decorators.select(false);
+        }
     }
 
     /**
@@ -59,7 +147,22 @@ public class TracingInterceptor implements Interceptor {
     public static OkHttpClient.Builder addTracing(OkHttpClient.Builder okBuilder,
                                                   Tracer tracer, List<SpanDecorator> decorators) {
 
-        TracingInterceptor tracingInterceptor = new TracingInterceptor(tracer, decorators);
+        return addTracing(okBuilder, tracer, decorators, Sampler.ALWAYS);
+    }
+
+    /**
+     * Add tracing interceptors to client builder.
+     *
+     * @param okBuilder client builder
+     * @param tracer tracer
+     * @param decorators span decorators
+     * @param sampler decides which calls are traced
+     * @return client builder with added tracing interceptor
+     */
+    public static OkHttpClient.Builder addTracing(OkHttpClient.Builder okBuilder,
+                                                  Tracer tracer, List<SpanDecorator> decorators, Sampler sampler) {
+
+        TracingInterceptor tracingInterceptor = new TracingInterceptor(tracer, decorators, sampler);
         return okBuilder.addInterceptor(tracingInterceptor)
                     .addNetworkInterceptor(tracingInterceptor);
     }
@@ -70,59 +173,487 @@ public class TracingInterceptor implements Interceptor {
 
         // application interceptor?
         if (chain.connection() == null) {
-            Tracer.SpanBuilder spanBuilder = tracer.buildSpan(chain.request().method())
+            if (!sampler.sample(chain.request())) {
+                return proceed(chain, unsampledRequest(chain.request()), null);
+            }
+
+            if (slowCallThreshold != null) {
+                return interceptDeferred(chain);
+            }
+            if (traceBodies) {
+                TracingResponseBody.reapAbandoned();
+            }
+
+            Tracer.SpanBuilder spanBuilder = tracer.buildSpan(operationNameResolver.operationName(chain.request()))
                     .withTag(Tags.SPAN_KIND.getKey(), Tags.SPAN_KIND_CLIENT);
 
             Object tag = chain.request().tag();
-            TagWrapper tagWrapper;
+            SpanContext parentSpanContext = null;
             if (tag instanceof TagWrapper) {
-                tagWrapper = (TagWrapper) tag;
-                if (tagWrapper.getParentSpanContext() != null) {
-                    spanBuilder.asChildOf(tagWrapper.getParentSpanContext());
-                }
-            } else {
-                tagWrapper = new TagWrapper(tag);
+                TagWrapper tagWrapper = (TagWrapper) tag;
+                parentSpanContext = tagWrapper.getParentSpanContext();
+                tag = tagWrapper.getTag();
+            }
+            if (parentSpanContext == null) {
+                parentSpanContext = ActiveSpanContext.current();
+            }
+            if (parentSpanContext != null) {
+                spanBuilder.asChildOf(parentSpanContext);
+            }
+            long startMicros = 0;
+            long startNanos = 0;
+            if (spanFinisher != null) {
+                // finish timestamp is taken by this thread, both are on the same clock
+                startMicros = TimeUnit.MILLISECONDS.toMicros(System.currentTimeMillis());
+                startNanos = System.nanoTime();
+                spanBuilder.withStartTimestamp(startMicros);
             }
 
             Span span = spanBuilder.start();
+            tagQueueWait(chain.request().tag(), span);
 
-            for (SpanDecorator spanDecorator: decorators) {
-                spanDecorator.onRequest(chain.request(), span);
-            }
+            // user's wrapper can be shared by several requests, a new one is created for each call
+            TagWrapper tagWrapper = new TagWrapper(parentSpanContext, tag, span);
+            decorators.onRequest(chain.request(), span, tagWrapper);
 
-            Request.Builder requestBuilder = chain.request().newBuilder();
-            tracer.inject(span.context(), Format.Builtin.HTTP_HEADERS, new RequestBuilderInjectAdapter(requestBuilder));
+            HeadersInjectAdapter injectAdapter = new HeadersInjectAdapter();
+            tracer.inject(span.context(), Format.Builtin.HTTP_HEADERS, injectAdapter);
 
-            requestBuilder.tag(new TagWrapper(tagWrapper, span));
+            Request.Builder requestBuilder = injectAdapter.newBuilder(chain.request())
+                    .tag(tagWrapper);
+            if (traceBodies && chain.request().body() != null) {
+                requestBuilder.method(chain.request().method(),
+                        new TracingRequestBody(chain.request().body(), span));
+            }
+            Request request = requestBuilder.build();
 
+            boolean finishSpan = true;
             try {
-                response = chain.proceed(requestBuilder.build());
+                response = proceed(chain, request, span);
 
-                for (SpanDecorator spanDecorator: decorators) {
-                    spanDecorator.onResponse(response, span);
+                if (spanFinisher != null) {
+                    finishSpan = false;
+                    finishLater(span, tagWrapper, response, null, startMicros, startNanos);
+                } else {
+                    decorators.onResponse(response, span, tagWrapper);
+                }
+
+                if (traceBodies) {
+                    // from now on the span is finished by the response body
+                    finishSpan = false;
+                    response = response.newBuilder()
+                            .body(TracingResponseBody.wrap(response.body(), span))
+                            .build();
                 }
             } catch (Throwable ex) {
-                for (SpanDecorator spanDecorator: decorators) {
-                    spanDecorator.onError(ex, span);
+                if (finishSpan && spanFinisher != null) {
+                    finishSpan = false;
+                    finishLater(span, tagWrapper, null, ex, startMicros, startNanos);
+                } else {
+                    decorators.onError(ex, span, tagWrapper);
                 }
                 throw ex;
             } finally {
-                span.finish();
+                if (finishSpan) {
+                    span.finish();
+                }
             }
+        } else if (networkSpans && chain.request().tag() instanceof TagWrapper
+                && ((TagWrapper) chain.request().tag()).getSpan() != null) {
+            response = interceptAttempt(chain, (TagWrapper) chain.request().tag());
         } else {
             response = chain.proceed(chain.request());
             Object tag = response.request().tag();
-            if (tag instanceof TagWrapper) {
+            if (tag instanceof TagWrapper && ((TagWrapper) tag).getSpan() != null) {
                 TagWrapper tagWrapper = (TagWrapper) tag;
-                for (SpanDecorator spanDecorator: decorators) {
-                    spanDecorator.onNetworkResponse(chain.connection(), response, tagWrapper.getSpan());
+                decorators.onNetworkResponse(chain.connection(), response, tagWrapper.getSpan(), tagWrapper);
+            } else if (tag instanceof TagWrapper && ((TagWrapper) tag).deferredSpan != null) {
+                ((TagWrapper) tag).deferredSpan.addNetworkResponse(chain.connection(), response);
+            } else if (sampler == Sampler.ALWAYS) {
+                // unsampled calls do not carry a span, missing tag is expected only with a sampler
+                missingTagLog.log(Level.SEVERE,
+                        "tag is null or not an instance of TagWrapper, skipping decorator onNetworkResponse()", null);
+            }
+        }
+
+        return response;
+    }
+
+    /**
+     * Proceed without a span and build it afterwards only if the call is slow or fails.
+     * Parent span context is propagated as for unsampled calls.
+     */
+    private Response interceptDeferred(Chain chain) throws IOException {
+        Object tag = chain.request().tag();
+        SpanContext parentSpanContext = null;
+        DeferredSpan deferredSpan = new DeferredSpan();
+        if (tag instanceof TagWrapper) {
+            deferredSpan.queueWaitNanos = queueWaitNanos((TagWrapper) tag);
+            parentSpanContext = ((TagWrapper) tag).getParentSpanContext();
+            tag = ((TagWrapper) tag).getTag();
+        }
+        if (parentSpanContext == null) {
+            parentSpanContext = ActiveSpanContext.current();
+        }
+
+        HeadersInjectAdapter injectAdapter = new HeadersInjectAdapter();
+        if (parentSpanContext != null) {
+            tracer.inject(parentSpanContext, Format.Builtin.HTTP_HEADERS, injectAdapter);
+        }
+        TagWrapper tagWrapper = new TagWrapper(parentSpanContext, tag, null);
+        tagWrapper.deferredSpan = deferredSpan;
+        Request request = injectAdapter.newBuilder(chain.request())
+                .tag(tagWrapper)
+                .build();
+
+        Response response;
+        try {
+            response = proceed(chain, request, null);
+        } catch (Throwable ex) {
+            finishDeferred(deferredSpan, operationNameResolver.operationName(chain.request()), parentSpanContext,
+                    tagWrapper, chain.request(), null, ex, deferredSpan.elapsedNanos());
+            throw ex;
+        }
+
+        long durationNanos = deferredSpan.elapsedNanos();
+        String operationName = operationNameResolver.operationName(chain.request());
+        if (response.code() >= 500 || durationNanos > slowCallThreshold.thresholdNanos(operationName)) {
+            finishDeferred(deferredSpan, operationName, parentSpanContext, tagWrapper, chain.request(),
+                    response, null, durationNanos);
+        }
+        return response;
+    }
+
+    private void finishDeferred(final DeferredSpan deferredSpan, final String operationName,
+                                final SpanContext parentSpanContext, final TagWrapper tagWrapper, final Request request,
+                                Response response, final Throwable error, final long durationNanos) {
+        if (spanFinisher == null) {
+            deferredSpan.finish(tracer, operationName, parentSpanContext, decorators, tagWrapper, request,
+                    response, error, durationNanos);
+            return;
+        }
+        final Response snapshot = response != null ? SpanFinisher.snapshot(response) : null;
+        spanFinisher.submit(new Runnable() {
+            @Override
+            public void run() {
+                deferredSpan.finish(tracer, operationName, parentSpanContext, decorators, tagWrapper, request,
+                        snapshot, error, durationNanos);
+            }
+        });
+    }
+
+    /**
+     * Invoke {@link CallThreadDecorator}s and hand the span over to {@link SpanFinisher}, which runs
+     * {@code onResponse} or {@code onError} of other decorators with the response captured now, without its body,
+     * and finishes the span at the current time.
+     */
+    private void finishLater(final Span span, final TagWrapper tagWrapper, Response response, final Throwable error,
+                             long startMicros, long startNanos) {
+        final long finishMicros = startMicros + TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - startNanos);
+        if (error != null) {
+            callThreadDecorators.onError(error, span, tagWrapper);
+        } else {
+            callThreadDecorators.onResponse(response, span, tagWrapper);
+        }
+        final Response snapshot = response != null ? SpanFinisher.snapshot(response) : null;
+        spanFinisher.submit(new Runnable() {
+            @Override
+            public void run() {
+                if (error != null) {
+                    deferredDecorators.onError(error, span, tagWrapper);
+                } else {
+                    deferredDecorators.onResponse(snapshot, span, tagWrapper);
                 }
+                span.finish(finishMicros);
+            }
+        });
+    }
+
+    /**
+     * @return nanoseconds since the call was enqueued or executed, -1 if unknown
+     */
+    private static long queueWaitNanos(TagWrapper tagWrapper) {
+        long enqueuedNanos = tagWrapper.enqueuedNanos;
+        if (enqueuedNanos == 0) {
+            return -1;
+        }
+        // clones of the call share the wrapper, e.g. hedges, they did not wait in this queue
+        tagWrapper.enqueuedNanos = 0;
+        return System.nanoTime() - enqueuedNanos;
+    }
+
+    private static void tagQueueWait(Object tag, Span span) {
+        if (tag instanceof TagWrapper) {
+            setQueueWait(span, queueWaitNanos((TagWrapper) tag));
+        }
+    }
+
+    static void setQueueWait(Span span, long queueWaitNanos) {
+        if (queueWaitNanos >= 0) {
+            QUEUE_WAIT.set(span, (int) Math.min(queueWaitNanos / 1000, Integer.MAX_VALUE));
+        }
+    }
+
+    /**
+     * Proceed within the concurrency limit of the request's host, if there is a limiter.
+     * The call is timed here once for the limiter, the span is tagged with the limit. The permit is released
+     * when the response headers are received, the body is read outside of the limit.
+     */
+    private Response proceed(Chain chain, Request request, Span span) throws IOException {
+        if (concurrencyLimiter == null) {
+            return chain.proceed(request);
+        }
+
+        ConcurrencyLimiter.Permit permit;
+        try {
+            permit = concurrencyLimiter.acquire(request.url().host());
+        } catch (ConcurrencyLimiter.LimitExceededException ex) {
+            if (span != null) {
+                ConcurrencyLimiter.REJECTED.set(span, true);
+            }
+            throw ex;
+        }
+        if (span != null) {
+            ConcurrencyLimiter.LIMIT.set(span, permit.limit());
+            ConcurrencyLimiter.IN_FLIGHT.set(span, permit.inFlight());
+        }
+
+        long startNanos = System.nanoTime();
+        boolean dropped = true;
+        try {
+            Response response = chain.proceed(request);
+            // host signals overload
+            dropped = response.code() == 429 || response.code() == 503;
+            return response;
+        } finally {
+            if (chain.call().isCanceled()) {
+                // e.g. a losing hedge, not a sign of overload
+                permit.releaseUnmeasured();
             } else {
-                log.severe("tag is null or not an instance of TagWrapper, skipping decorator onNetworkResponse()");
+                permit.release(System.nanoTime() - startNanos, dropped);
             }
         }
+    }
 
-        return response;
+    /**
+     * Trace one network attempt in a child span of the call's span.
+     */
+    private Response interceptAttempt(Chain chain, TagWrapper callTagWrapper) throws IOException {
+        Span callSpan = callTagWrapper.getSpan();
+        Span span = tracer.buildSpan(operationNameResolver.operationName(chain.request()))
+                .asChildOf(callSpan)
+                .withTag(Tags.SPAN_KIND.getKey(), Tags.SPAN_KIND_CLIENT)
+                .withTag(ATTEMPT.getKey(), ++callTagWrapper.attempts)
+                .start();
+
+        decorators.onRequest(chain.request(), span, callTagWrapper);
+
+        HeadersInjectAdapter injectAdapter = new HeadersInjectAdapter();
+        tracer.inject(span.context(), Format.Builtin.HTTP_HEADERS, injectAdapter);
+        // event listener finds the attempt span in the network request
+        TagWrapper attemptTagWrapper = new TagWrapper(callSpan.context(), callTagWrapper.getTag(), span);
+        Request request = injectAdapter.newBuilder(chain.request())
+                .tag(attemptTagWrapper)
+                .build();
+
+        try {
+            Response response = chain.proceed(request);
+            decorators.onNetworkResponse(chain.connection(), response, span, callTagWrapper);
+            decorators.onResponse(response, span, callTagWrapper);
+            return response;
+        } catch (Throwable ex) {
+            decorators.onError(ex, span, callTagWrapper);
+            throw ex;
+        } finally {
+            if (!attemptTagWrapper.connectionReusedTagged) {
+                // without the event listener, best effort: connections evicted from the cache count as new
+                TracingEventListener.CONNECTION_REUSED.set(span,
+                        connectionUses.get(chain.connection()).incrementAndGet() > 1);
+            }
+            span.finish();
+        }
+    }
+
+    /**
+     * Request of an unsampled call. It is rebuilt only if there is a parent span context to propagate.
+     */
+    private Request unsampledRequest(Request request) {
+        Object tag = request.tag();
+        SpanContext parentSpanContext = tag instanceof TagWrapper ? ((TagWrapper) tag).getParentSpanContext() : null;
+        if (parentSpanContext == null) {
+            parentSpanContext = ActiveSpanContext.current();
+        }
+        if (parentSpanContext != null) {
+            HeadersInjectAdapter injectAdapter = new HeadersInjectAdapter();
+            tracer.inject(parentSpanContext, Format.Builtin.HTTP_HEADERS, injectAdapter);
+            if (!injectAdapter.isEmpty()) {
+                return injectAdapter.newBuilder(request).build();
+            }
+        }
+        return request;
     }
 
+    /**
+     * Builder of {@link TracingInterceptor}.
+     */
+    public static class Builder {
+        private final Tracer tracer;
+        private List<SpanDecorator> decorators = Collections.singletonList(SpanDecorator.STANDARD_TAGS);
+        private Sampler sampler = Sampler.ALWAYS;
+        private OperationNameResolver operationNameResolver = OperationNameResolver.METHOD;
+        private boolean traceBodies;
+        private boolean networkSpans;
+        private SlowCallThreshold slowCallThreshold;
+        private ConcurrencyLimiter concurrencyLimiter;
+        private DecoratorStats decoratorStats;
+        private long decoratorBudgetNanos = Long.MAX_VALUE;
+        private SpanFinisher spanFinisher;
+
+        /**
+         * @param tracer tracer
+         */
+        public Builder(Tracer tracer) {
+            this.tracer = tracer;
+        }
+
+        /**
+         * @param decorators span decorators, by default {@link SpanDecorator#STANDARD_TAGS}
+         * @return builder
+         */
+        public Builder decorators(List<SpanDecorator> decorators) {
+            this.decorators = decorators;
+            return this;
+        }
+
+        /**
+         * @param sampler decides which calls are traced, by default {@link Sampler#ALWAYS}
+         * @return builder
+         */
+        public Builder sampler(Sampler sampler) {
+            this.sampler = sampler;
+            return this;
+        }
+
+        /**
+         * @param operationNameResolver resolves operation names of spans, by default {@link OperationNameResolver#METHOD}
+         * @return builder
+         */
+        public Builder operationNameResolver(OperationNameResolver operationNameResolver) {
+            this.operationNameResolver = operationNameResolver;
+            return this;
+        }
+
+        /**
+         * Trace request and response bodies. Span is finished when the response body is exhausted or closed
+         * instead of when response headers are received, and it is tagged with {@link BodyTags}.
+         * Response bodies should be closed, spans of abandoned bodies are finished only after
+         * the bodies are garbage collected.
+         *
+         * @param traceBodies true to trace bodies, by default false
+         * @return builder
+         */
+        public Builder traceBodies(boolean traceBodies) {
+            this.traceBodies = traceBodies;
+            return this;
+        }
+
+        /**
+         * Create a child span of the call's span for each network attempt, e.g. retries, redirects
+         * and authentication challenges. Attempt spans are tagged with {@link #ATTEMPT} and
+         * {@link TracingEventListener#CONNECTION_REUSED}, decorators are applied to them, including
+         * {@link SpanDecorator#onNetworkResponse}, and their context is injected into each attempt's request.
+         *
+         * <p>Connection reuse is reported by {@link TracingEventListener} if it is installed. Otherwise it is
+         * estimated from a bounded cache of connections, a connection evicted by another one is reported as new.
+         *
+         * @param networkSpans true to create a span for each network attempt, by default false
+         * @return builder
+         */
+        public Builder networkSpans(boolean networkSpans) {
+            this.networkSpans = networkSpans;
+            return this;
+        }
+
+        /**
+         * Defer spans until the end of calls and build them only for calls slower than the threshold,
+         * calls failed with an exception and calls with 5xx status code. The span gets the call's start timestamp
+         * and decorators are invoked on it with the call's request, network responses and response or exception.
+         *
+         * <p>As there is no span during the call, only the parent span context is injected into requests,
+         * downstream spans are children of the parent instead of the client span. {@link TracingEventListener}
+         * does not tag deferred spans. It cannot be combined with {@link #traceBodies(boolean)}
+         * and {@link #networkSpans(boolean)}.
+         *
+         * @param slowCallThreshold threshold of slow calls, by default null and spans are not deferred
+         * @return builder
+         */
+        public Builder deferSpans(SlowCallThreshold slowCallThreshold) {
+            this.slowCallThreshold = slowCallThreshold;
+            return this;
+        }
+
+        /**
+         * Limit concurrent calls per host by a limit learned from their round trip times. Sampled, unsampled
+         * and deferred calls are limited alike, spans are tagged with {@link ConcurrencyLimiter#LIMIT},
+         * {@link ConcurrencyLimiter#IN_FLIGHT} and {@link ConcurrencyLimiter#REJECTED}. Calls are limited
+         * until their response headers are received, not while their bodies are read.
+         *
+         * @param concurrencyLimiter limiter, by default null and calls are not limited
+         * @return builder
+         */
+        public Builder concurrencyLimiter(ConcurrencyLimiter concurrencyLimiter) {
+            this.concurrencyLimiter = concurrencyLimiter;
+            return this;
+        }
+
+        /**
+         * Time each invocation of span decorators and count exceptions they throw. Exceptions thrown by decorators
+         * are always caught and logged at most once per minute, they never fail calls.
+         *
+         * @param decoratorStats stats of decorators, by default null and decorators are not timed
+         * @return builder
+         */
+        public Builder decoratorStats(DecoratorStats decoratorStats) {
+            this.decoratorStats = decoratorStats;
+            return this;
+        }
+
+        /**
+         * Skip remaining decorator invocations of a call once decorating it took longer than the budget.
+         * Skipped invocations are counted by {@link DecoratorStats}, a span may then miss tags or error logs.
+         *
+         * @param budget time budget of decorators per call, by default unlimited
+         * @param unit unit of the budget
+         * @return builder
+         */
+        public Builder decoratorBudget(long budget, TimeUnit unit) {
+            this.decoratorBudgetNanos = unit.toNanos(budget);
+            return this;
+        }
+
+        /**
+         * Run {@code onResponse} and {@code onError} decorators and finish spans on the background worker of
+         * the span finisher instead of before the response is returned. Decorators get the response without
+         * its body, only its content length is kept. {@link CallThreadDecorator}s are still invoked on the call
+         * thread, as are all decorators of network attempt spans. Spans of deferred calls are built by the worker.
+         * It cannot be combined with {@link #traceBodies(boolean)}.
+         *
+         * @param spanFinisher span finisher, by default null and spans are finished on the call thread
+         * @return builder
+         */
+        public Builder spanFinisher(SpanFinisher spanFinisher) {
+            this.spanFinisher = spanFinisher;
+            return this;
+        }
+
+        public TracingInterceptor build() {
+            if (slowCallThreshold != null && (traceBodies || networkSpans)) {
+                throw new IllegalStateException("Deferred spans cannot be combined with tracing bodies or network spans");
+            }
+            if (spanFinisher != null && traceBodies) {
+                throw new IllegalStateException("Span finisher cannot be combined with tracing bodies");
+            }
+            return new TracingInterceptor(this);
+        }
+    }
 }
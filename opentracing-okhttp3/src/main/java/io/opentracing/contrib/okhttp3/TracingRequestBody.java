@@ -0,0 +1,62 @@
+package io.opentracing.contrib.okhttp3;
+
+import java.io.IOException;
+
+import io.opentracing.Span;
+import okhttp3.MediaType;
+import okhttp3.RequestBody;
+import okio.Buffer;
+import okio.BufferedSink;
+import okio.ForwardingSink;
+import okio.Okio;
+
+/**
+ * Request body which tags the span with the number of written bytes and the duration of writing.
+ * If the body is written several times, e.g. on a retry, the last write is tagged.
+ */
+final class TracingRequestBody extends RequestBody {
+
+    private final RequestBody delegate;
+    private final Span span;
+
+    TracingRequestBody(RequestBody delegate, Span span) {
+        this.delegate = delegate;
+        this.span = span;
+    }
+
+    @Override
+    public MediaType contentType() {
+        return delegate.contentType();
+    }
+
+    @Override
+    public long contentLength() throws IOException {
+        return delegate.contentLength();
+    }
+
+    @Override
+    public void writeTo(BufferedSink sink) throws IOException {
+        CountingSink countingSink = new CountingSink(sink);
+        BufferedSink bufferedSink = Okio.buffer(countingSink);
+        long startNanos = System.nanoTime();
+        delegate.writeTo(bufferedSink);
+        // moves buffered segments to the sink without flushing it
+        bufferedSink.emit();
+        BodyTags.setTransfer(span, BodyTags.REQUEST_BYTES, BodyTags.REQUEST_BODY_DURATION,
+                BodyTags.REQUEST_THROUGHPUT, countingSink.bytes, System.nanoTime() - startNanos);
+    }
+
+    private static final class CountingSink extends ForwardingSink {
+        long bytes;
+
+        CountingSink(BufferedSink delegate) {
+            super(delegate);
+        }
+
+        @Override
+        public void write(Buffer source, long byteCount) throws IOException {
+            super.write(source, byteCount);
+            bytes += byteCount;
+        }
+    }
+}
@@ -0,0 +1,184 @@
+package io.opentracing.contrib.okhttp3;
+
+import java.io.IOException;
+import java.lang.ref.PhantomReference;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import io.opentracing.Span;
+import okhttp3.MediaType;
+import okhttp3.ResponseBody;
+import okio.Buffer;
+import okio.BufferedSource;
+import okio.ForwardingSource;
+import okio.Okio;
+
+/**
+ * Response body which finishes the span when the body is exhausted or closed.
+ *
+ * <p>Bytes are counted by a forwarding source, buffer segments are moved not copied. Bodies which are
+ * never closed are detected after they are garbage collected, their spans are finished with the time of
+ * the last read and tagged with {@link BodyTags#ABANDONED}. Abandoned bodies are reaped on subsequent traced calls.
+ */
+final class TracingResponseBody extends ResponseBody {
+
+    private static final ReferenceQueue<TracingResponseBody> abandoned = new ReferenceQueue<>();
+    /**
+     * Keeps references reachable until their bodies are closed or collected.
+     */
+    private static final Set<BodyReference> pending =
+            Collections.newSetFromMap(new ConcurrentHashMap<BodyReference, Boolean>());
+
+    private final ResponseBody delegate;
+    private final Progress progress;
+    private final BodyReference reference;
+    private BufferedSource source;
+
+    private TracingResponseBody(ResponseBody delegate, Span span) {
+        this.delegate = delegate;
+        this.progress = new Progress(span);
+        this.reference = new BodyReference(this, progress);
+        pending.add(reference);
+    }
+
+    /**
+     * @param body response body
+     * @param span span of the call, it is finished by the returned body
+     * @return body finishing the span, or null if there is no body to read and the span was finished
+     */
+    static ResponseBody wrap(ResponseBody body, Span span) {
+        if (body == null || body.contentLength() == 0) {
+            span.finish();
+            return body;
+        }
+        return new TracingResponseBody(body, span);
+    }
+
+    /**
+     * Finish spans of bodies which were collected without being closed.
+     */
+    static void reapAbandoned() {
+        Reference<? extends TracingResponseBody> reference;
+        while ((reference = abandoned.poll()) != null) {
+            BodyReference bodyReference = (BodyReference) reference;
+            pending.remove(bodyReference);
+            bodyReference.progress.finishAbandoned();
+        }
+    }
+
+    @Override
+    public MediaType contentType() {
+        return delegate.contentType();
+    }
+
+    @Override
+    public long contentLength() {
+        return delegate.contentLength();
+    }
+
+    @Override
+    public BufferedSource source() {
+        if (source == null) {
+            source = Okio.buffer(new CountingSource(delegate.source()));
+        }
+        return source;
+    }
+
+    @Override
+    public void close() {
+        try {
+            if (source != null) {
+                source.close();
+            } else {
+                delegate.close();
+            }
+        } catch (IOException ex) {
+            // same as ResponseBody.close()
+        } finally {
+            finish();
+        }
+    }
+
+    private void finish() {
+        if (progress.finish()) {
+            pending.remove(reference);
+            reference.clear();
+        }
+    }
+
+    /**
+     * Inner class, a source or stream obtained from the body keeps the body reachable.
+     */
+    private final class CountingSource extends ForwardingSource {
+        CountingSource(BufferedSource delegate) {
+            super(delegate);
+        }
+
+        @Override
+        public long read(Buffer sink, long byteCount) throws IOException {
+            long read = super.read(sink, byteCount);
+            if (read == -1) {
+                finish();
+            } else {
+                progress.bytes += read;
+                progress.lastReadNanos = System.nanoTime();
+            }
+            return read;
+        }
+    }
+
+    /**
+     * Read progress of a body, shared by the body and its phantom reference.
+     */
+    private static final class Progress {
+        final Span span;
+        final long startNanos = System.nanoTime();
+        final AtomicBoolean finished = new AtomicBoolean();
+        volatile long bytes;
+        volatile long lastReadNanos = startNanos;
+
+        Progress(Span span) {
+            this.span = span;
+        }
+
+        boolean finish() {
+            if (!finished.compareAndSet(false, true)) {
+                return false;
+            }
+            tag();
+            span.finish();
+            return true;
+        }
+
+        void finishAbandoned() {
+            if (!finished.compareAndSet(false, true)) {
+                return;
+            }
+            tag();
+            BodyTags.ABANDONED.set(span, true);
+            long sinceLastReadMicros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - lastReadNanos);
+            span.finish(TimeUnit.MILLISECONDS.toMicros(System.currentTimeMillis()) - sinceLastReadMicros);
+        }
+
+        private void tag() {
+            long bytes = this.bytes;
+            long durationNanos = lastReadNanos - startNanos;
+            BodyTags.setTransfer(span, BodyTags.RESPONSE_BYTES, BodyTags.RESPONSE_BODY_DURATION,
+                    BodyTags.RESPONSE_THROUGHPUT, bytes, durationNanos);
+        }
+    }
+
+    private static final class BodyReference extends PhantomReference<TracingResponseBody> {
+        final Progress progress;
+
+        BodyReference(TracingResponseBody body, Progress progress) {
+            super(body, abandoned);
+            this.progress = progress;
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package io.opentracing.contrib.okhttp3;
+
+import okhttp3.Request;
+import okhttp3.WebSocket;
+import okio.ByteString;
+import okio.Utf8;
+
+/**
+ * Web socket counting sent messages into its {@link TracingWebSocketListener}.
+ */
+final class TracingWebSocket implements WebSocket {
+
+    private final TracingWebSocketListener listener;
+    private volatile WebSocket delegate;
+
+    TracingWebSocket(TracingWebSocketListener listener) {
+        this.listener = listener;
+    }
+
+    void attach(WebSocket delegate) {
+        if (this.delegate == null) {
+            this.delegate = delegate;
+        }
+    }
+
+    @Override
+    public Request request() {
+        return delegate.request();
+    }
+
+    @Override
+    public long queueSize() {
+        return delegate.queueSize();
+    }
+
+    @Override
+    public boolean send(String text) {
+        long startNanos = System.nanoTime();
+        boolean enqueued = delegate.send(text);
+        sent(enqueued, Utf8.size(text), startNanos);
+        return enqueued;
+    }
+
+    @Override
+    public boolean send(ByteString bytes) {
+        long startNanos = System.nanoTime();
+        boolean enqueued = delegate.send(bytes);
+        sent(enqueued, bytes.size(), startNanos);
+        return enqueued;
+    }
+
+    @Override
+    public boolean close(int code, String reason) {
+        return delegate.close(code, reason);
+    }
+
+    @Override
+    public void cancel() {
+        delegate.cancel();
+    }
+
+    private void sent(boolean enqueued, long bytes, long startNanos) {
+        listener.sendLatency.recordNanos(System.nanoTime() - startNanos);
+        if (enqueued) {
+            listener.messagesSent.increment();
+            listener.bytesSent.add(bytes);
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package io.opentracing.contrib.okhttp3;
+
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import io.opentracing.Span;
+import io.opentracing.SpanContext;
+import io.opentracing.Tracer;
+import io.opentracing.propagation.Format;
+import io.opentracing.tag.IntTag;
+import io.opentracing.tag.StringTag;
+import io.opentracing.tag.Tags;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.WebSocket;
+import okhttp3.WebSocketListener;
+
+/**
+ * WebSocket factory which traces each web socket in a span covering the connection lifetime,
+ * from {@link #newWebSocket(Request, WebSocketListener)} until the socket is closed or fails.
+ *
+ * <p>Messages are not logged one by one. Message and byte counts, time spent in {@link WebSocket#send}
+ * and in the listener's {@code onMessage} are kept in counters and histograms of a few kilobytes per socket,
+ * striped only for senders. Changes are flushed periodically into a {@link #STATS_EVENT} span log and totals
+ * are tagged when the socket ends.
+ * Close code and reason, or the failure, are recorded on the span.
+ *
+ * <p>Parent span context is taken from {@link TagWrapper} of the request or from {@link ActiveSpanContext}.
+ * The span context is injected into the upgrade request, if the client is traced by {@link TracingInterceptor}
+ * the span of the upgrade call is a child of the web socket span.
+ *
+ * <pre>{@code
+ * WebSocket.Factory webSocketFactory = new TracingWebSocketFactory.Builder(client, tracer).build();
+ * WebSocket webSocket = webSocketFactory.newWebSocket(request, listener);
+ * }</pre>
+ */
+public class TracingWebSocketFactory implements WebSocket.Factory {
+
+    public static final String OPERATION_NAME = "WebSocket";
+
+    /**
+     * Event of periodic span logs with counts and percentiles since the previous log.
+     */
+    public static final String STATS_EVENT = "websocket.stats";
+
+    public static final String MESSAGES_SENT = "websocket.messages_sent";
+    public static final String MESSAGES_RECEIVED = "websocket.messages_received";
+    public static final String BYTES_SENT = "websocket.bytes_sent";
+    public static final String BYTES_RECEIVED = "websocket.bytes_received";
+    /**
+     * 99th percentile of time spent in {@link WebSocket#send}, which enqueues the message, in microseconds,
+     * of messages sent since the previous {@link #STATS_EVENT}.
+     */
+    public static final String SEND_P99 = "websocket.send_p99_us";
+    /**
+     * 99th percentile of time spent in the listener's {@code onMessage} in microseconds, of messages received
+     * since the previous {@link #STATS_EVENT}.
+     */
+    public static final String RECEIVE_P99 = "websocket.receive_p99_us";
+
+    public static final IntTag CLOSE_CODE = new IntTag("websocket.close_code");
+    public static final StringTag CLOSE_REASON = new StringTag("websocket.close_reason");
+
+    private final WebSocket.Factory delegate;
+    private final Tracer tracer;
+    private final long flushIntervalNanos;
+    private final ScheduledExecutorService scheduler;
+
+    private TracingWebSocketFactory(Builder builder) {
+        this.delegate = builder.delegate;
+        this.tracer = builder.tracer;
+        this.flushIntervalNanos = builder.flushIntervalNanos;
+        this.scheduler = builder.scheduler != null ? builder.scheduler : SharedScheduler.INSTANCE;
+    }
+
+    @Override
+    public WebSocket newWebSocket(Request request, WebSocketListener listener) {
+        Object tag = request.tag();
+        SpanContext parentSpanContext = null;
+        if (tag instanceof TagWrapper) {
+            parentSpanContext = ((TagWrapper) tag).getParentSpanContext();
+            tag = ((TagWrapper) tag).getTag();
+        }
+        if (parentSpanContext == null) {
+            parentSpanContext = ActiveSpanContext.current();
+        }
+
+        Tracer.SpanBuilder spanBuilder = tracer.buildSpan(OPERATION_NAME)
+                .withTag(Tags.SPAN_KIND.getKey(), Tags.SPAN_KIND_CLIENT)
+                .withTag(Tags.COMPONENT.getKey(), "java-okhttp")
+                .withTag(Tags.HTTP_METHOD.getKey(), request.method())
+                .withTag(Tags.HTTP_URL.getKey(), request.url().toString());
+        if (parentSpanContext != null) {
+            spanBuilder.asChildOf(parentSpanContext);
+        }
+        Span span = spanBuilder.start();
+
+        HeadersInjectAdapter injectAdapter = new HeadersInjectAdapter();
+        tracer.inject(span.context(), Format.Builtin.HTTP_HEADERS, injectAdapter);
+        Request tracedRequest = injectAdapter.newBuilder(request)
+                .tag(new TagWrapper(span.context(), tag, null))
+                .build();
+
+        TracingWebSocketListener tracingListener = new TracingWebSocketListener(listener, span);
+        tracingListener.scheduleFlush(scheduler, flushIntervalNanos);
+        return tracingListener.attach(delegate.newWebSocket(tracedRequest, tracingListener));
+    }
+
+    /**
+     * Builder of {@link TracingWebSocketFactory}.
+     */
+    public static class Builder {
+        private final WebSocket.Factory delegate;
+        private final Tracer tracer;
+        private long flushIntervalNanos = TimeUnit.SECONDS.toNanos(10);
+        private ScheduledExecutorService scheduler;
+
+        /**
+         * @param delegate web socket factory, usually {@link OkHttpClient}
+         * @param tracer tracer
+         */
+        public Builder(WebSocket.Factory delegate, Tracer tracer) {
+            this.delegate = delegate;
+            this.tracer = tracer;
+        }
+
+        /**
+         * @param flushInterval interval of {@link #STATS_EVENT} span logs, by default 10 seconds,
+         *                      0 to tag totals only
+         * @param unit unit of the interval
+         * @return builder
+         */
+        public Builder flushInterval(long flushInterval, TimeUnit unit) {
+            this.flushIntervalNanos = unit.toNanos(flushInterval);
+            return this;
+        }
+
+        /**
+         * @param scheduler scheduler of flushes, by default a shared single daemon thread
+         * @return builder
+         */
+        public Builder scheduler(ScheduledExecutorService scheduler) {
+            this.scheduler = scheduler;
+            return this;
+        }
+
+        public TracingWebSocketFactory build() {
+            return new TracingWebSocketFactory(this);
+        }
+    }
+}
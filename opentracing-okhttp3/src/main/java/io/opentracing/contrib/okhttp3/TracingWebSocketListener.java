@@ -0,0 +1,209 @@
+package io.opentracing.contrib.okhttp3;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import io.opentracing.Span;
+import io.opentracing.tag.Tags;
+import okhttp3.Response;
+import okhttp3.WebSocket;
+import okhttp3.WebSocketListener;
+import okio.ByteString;
+import okio.Utf8;
+
+/**
+ * Listener of a traced web socket, it owns the span and counters of the socket.
+ * Callbacks of the wrapped listener get the {@link TracingWebSocket}, so messages sent from them are counted.
+ */
+final class TracingWebSocketListener extends WebSocketListener implements Runnable {
+
+    private static final LatencyHistogram.Snapshot EMPTY = new LatencyHistogram(1).snapshot();
+    /**
+     * Messages of one socket are usually sent by one or two threads, more stripes only cost memory
+     * of every socket.
+     */
+    private static final int SEND_STRIPES = Math.min(StripedCounter.STRIPES, 2);
+
+    private final WebSocketListener delegate;
+    private final Span span;
+    private final TracingWebSocket webSocket;
+    private final AtomicBoolean finished = new AtomicBoolean();
+
+    final StripedCounter messagesSent = new StripedCounter(SEND_STRIPES);
+    final StripedCounter bytesSent = new StripedCounter(SEND_STRIPES);
+    final LatencyHistogram sendLatency = new LatencyHistogram(SEND_STRIPES);
+    // written only by the socket's reader thread
+    private volatile long messagesReceived;
+    private volatile long bytesReceived;
+    private final LatencyHistogram receiveLatency = new LatencyHistogram(1);
+
+    // guarded by this, values of the previous flush
+    private long flushedMessagesSent;
+    private long flushedMessagesReceived;
+    private long flushedBytesSent;
+    private long flushedBytesReceived;
+    private LatencyHistogram.Snapshot flushedSendLatency = EMPTY;
+    private LatencyHistogram.Snapshot flushedReceiveLatency = EMPTY;
+
+    private volatile ScheduledFuture<?> flush;
+    private volatile int closeCode;
+    private volatile String closeReason;
+
+    TracingWebSocketListener(WebSocketListener delegate, Span span) {
+        this.delegate = delegate;
+        this.span = span;
+        this.webSocket = new TracingWebSocket(this);
+    }
+
+    /**
+     * @return traced web socket of the delegate
+     */
+    WebSocket attach(WebSocket delegateWebSocket) {
+        webSocket.attach(delegateWebSocket);
+        return webSocket;
+    }
+
+    void scheduleFlush(ScheduledExecutorService scheduler, long intervalNanos) {
+        if (intervalNanos > 0) {
+            flush = scheduler.scheduleAtFixedRate(this, intervalNanos, intervalNanos, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    @Override
+    public void onOpen(WebSocket webSocket, Response response) {
+        Tags.HTTP_STATUS.set(span, response.code());
+        delegate.onOpen(tracedWebSocket(webSocket), response);
+    }
+
+    @Override
+    public void onMessage(WebSocket webSocket, String text) {
+        long startNanos = System.nanoTime();
+        delegate.onMessage(tracedWebSocket(webSocket), text);
+        received(Utf8.size(text), startNanos);
+    }
+
+    @Override
+    public void onMessage(WebSocket webSocket, ByteString bytes) {
+        long startNanos = System.nanoTime();
+        delegate.onMessage(tracedWebSocket(webSocket), bytes);
+        received(bytes.size(), startNanos);
+    }
+
+    @Override
+    public void onClosing(WebSocket webSocket, int code, String reason) {
+        closeCode = code;
+        closeReason = reason;
+        delegate.onClosing(tracedWebSocket(webSocket), code, reason);
+    }
+
+    @Override
+    public void onClosed(WebSocket webSocket, int code, String reason) {
+        try {
+            delegate.onClosed(tracedWebSocket(webSocket), code, reason);
+        } finally {
+            closeCode = code;
+            closeReason = reason;
+            finish(null);
+        }
+    }
+
+    @Override
+    public void onFailure(WebSocket webSocket, Throwable t, Response response) {
+        try {
+            delegate.onFailure(tracedWebSocket(webSocket), t, response);
+        } finally {
+            if (response != null) {
+                Tags.HTTP_STATUS.set(span, response.code());
+            }
+            finish(t);
+        }
+    }
+
+    /**
+     * Periodic flush of counters into a span log.
+     */
+    @Override
+    public void run() {
+        flush(false);
+    }
+
+    private void received(long bytes, long startNanos) {
+        receiveLatency.recordNanos(System.nanoTime() - startNanos);
+        messagesReceived++;
+        bytesReceived += bytes;
+    }
+
+    private WebSocket tracedWebSocket(WebSocket delegateWebSocket) {
+        // callbacks can run before newWebSocket returned and attached the socket
+        webSocket.attach(delegateWebSocket);
+        return webSocket;
+    }
+
+    private void finish(Throwable error) {
+        if (!finished.compareAndSet(false, true)) {
+            return;
+        }
+        ScheduledFuture<?> flush = this.flush;
+        if (flush != null) {
+            flush.cancel(false);
+        }
+        flush(true);
+        if (closeCode != 0) {
+            TracingWebSocketFactory.CLOSE_CODE.set(span, closeCode);
+            if (closeReason != null && !closeReason.isEmpty()) {
+                TracingWebSocketFactory.CLOSE_REASON.set(span, closeReason);
+            }
+        }
+        if (error != null) {
+            Tags.ERROR.set(span, Boolean.TRUE);
+            Map<String, Object> errorLogs = new HashMap<>(2);
+            errorLogs.put("event", Tags.ERROR.getKey());
+            errorLogs.put("error.object", error);
+            span.log(errorLogs);
+        }
+        span.finish();
+    }
+
+    /**
+     * Log counts and percentiles since the previous flush, on the final flush tag total counts.
+     */
+    private synchronized void flush(boolean last) {
+        long messagesSent = this.messagesSent.sum();
+        long messagesReceived = this.messagesReceived;
+        long bytesSent = this.bytesSent.sum();
+        long bytesReceived = this.bytesReceived;
+
+        if (messagesSent != flushedMessagesSent || messagesReceived != flushedMessagesReceived) {
+            Map<String, Object> fields = new HashMap<>(12);
+            fields.put("event", TracingWebSocketFactory.STATS_EVENT);
+            fields.put(TracingWebSocketFactory.MESSAGES_SENT, messagesSent - flushedMessagesSent);
+            fields.put(TracingWebSocketFactory.MESSAGES_RECEIVED, messagesReceived - flushedMessagesReceived);
+            fields.put(TracingWebSocketFactory.BYTES_SENT, bytesSent - flushedBytesSent);
+            fields.put(TracingWebSocketFactory.BYTES_RECEIVED, bytesReceived - flushedBytesReceived);
+            LatencyHistogram.Snapshot sendLatency = this.sendLatency.snapshot();
+            LatencyHistogram.Snapshot receiveLatency = this.receiveLatency.snapshot();
+            fields.put(TracingWebSocketFactory.SEND_P99,
+                    sendLatency.minus(flushedSendLatency).percentileMicros(0.99));
+            fields.put(TracingWebSocketFactory.RECEIVE_P99,
+                    receiveLatency.minus(flushedReceiveLatency).percentileMicros(0.99));
+            span.log(fields);
+            flushedSendLatency = sendLatency;
+            flushedReceiveLatency = receiveLatency;
+            flushedMessagesSent = messagesSent;
+            flushedMessagesReceived = messagesReceived;
+            flushedBytesSent = bytesSent;
+            flushedBytesReceived = bytesReceived;
+        }
+
+        if (last) {
+            span.setTag(TracingWebSocketFactory.MESSAGES_SENT, messagesSent);
+            span.setTag(TracingWebSocketFactory.MESSAGES_RECEIVED, messagesReceived);
+            span.setTag(TracingWebSocketFactory.BYTES_SENT, bytesSent);
+            span.setTag(TracingWebSocketFactory.BYTES_RECEIVED, bytesReceived);
+        }
+    }
+}
@@ -0,0 +1,223 @@
+package io.opentracing.contrib.okhttp3;
+
+import io.opentracing.Span;
+import io.opentracing.SpanContext;
+import io.opentracing.mock.MockSpan;
+import io.opentracing.mock.MockTracer;
+import io.opentracing.tag.Tags;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.Dispatcher;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ActiveSpanContextTest {
+
+    private MockTracer mockTracer = new MockTracer();
+    private MockWebServer mockWebServer = new MockWebServer();
+    private ExecutorService dispatcherExecutor = Executors.newCachedThreadPool();
+    private OkHttpClient okHttpClient = TracingInterceptor.addTracing(new OkHttpClient.Builder(), mockTracer,
+            Collections.singletonList(SpanDecorator.STANDARD_TAGS))
+            .dispatcher(new Dispatcher(new TracingExecutorService(dispatcherExecutor)))
+            .build();
+
+    @Before
+    public void before() throws IOException {
+        mockWebServer.setDispatcher(new okhttp3.mockwebserver.Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                if (request.getPath().equals("/slow")) {
+                    return new MockResponse().setHeadersDelay(200, TimeUnit.MILLISECONDS);
+                }
+                return new MockResponse().setResponseCode(200);
+            }
+        });
+        mockWebServer.start();
+    }
+
+    @After
+    public void after() throws IOException {
+        dispatcherExecutor.shutdown();
+        mockWebServer.close();
+    }
+
+    @Test
+    public void testExecute() throws IOException {
+        Span parent = mockTracer.buildSpan("parent").start();
+        SpanContext previous = ActiveSpanContext.activate(parent.context());
+        try {
+            okHttpClient.newCall(new Request.Builder()
+                    .url(mockWebServer.url("foo"))
+                    .build())
+                    .execute()
+                    .close();
+        } finally {
+            ActiveSpanContext.restore(previous);
+        }
+        parent.finish();
+        Assert.assertNull(ActiveSpanContext.current());
+
+        List<MockSpan> mockSpans = mockTracer.finishedSpans();
+        Assert.assertEquals(2, mockSpans.size());
+        Assert.assertEquals(mockSpans.get(1).context().spanId(), mockSpans.get(0).parentId());
+    }
+
+    @Test
+    public void testEnqueueStress() throws Exception {
+        final int threads = 8;
+        final int callsPerThread = 500;
+        final TracingCallFactory callFactory = new TracingCallFactory(okHttpClient);
+        final MockSpan[] parents = new MockSpan[threads * callsPerThread];
+        final CountDownLatch completed = new CountDownLatch(parents.length);
+        final AtomicInteger failures = new AtomicInteger();
+
+        ExecutorService callers = Executors.newFixedThreadPool(threads);
+        for (int thread = 0; thread < threads; thread++) {
+            final int firstCall = thread * callsPerThread;
+            callers.execute(new Runnable() {
+                @Override
+                public void run() {
+                    for (int i = firstCall; i < firstCall + callsPerThread; i++) {
+                        parents[i] = (MockSpan) mockTracer.buildSpan("parent").start();
+                        SpanContext previous = ActiveSpanContext.activate(parents[i].context());
+                        try {
+                            callFactory.newCall(new Request.Builder()
+                                    .url(mockWebServer.url(String.valueOf(i)))
+                                    .build())
+                                    .enqueue(new TracingCallback(new ChildSpanCallback(i, completed, failures)));
+                        } finally {
+                            ActiveSpanContext.restore(previous);
+                        }
+                    }
+                }
+            });
+        }
+        Assert.assertTrue(completed.await(60, TimeUnit.SECONDS));
+        callers.shutdown();
+        Assert.assertEquals(0, failures.get());
+
+        int clientSpans = 0;
+        int callbackSpans = 0;
+        for (MockSpan mockSpan: mockTracer.finishedSpans()) {
+            if (Tags.SPAN_KIND_CLIENT.equals(mockSpan.tags().get(Tags.SPAN_KIND.getKey()))) {
+                String url = (String) mockSpan.tags().get(Tags.HTTP_URL.getKey());
+                int call = Integer.parseInt(url.substring(url.lastIndexOf('/') + 1));
+                Assert.assertEquals(parents[call].context().spanId(), mockSpan.parentId());
+                clientSpans++;
+            } else if ("callback".equals(mockSpan.operationName())) {
+                int call = (Integer) mockSpan.tags().get("call");
+                Assert.assertEquals(parents[call].context().spanId(), mockSpan.parentId());
+                callbackSpans++;
+            }
+        }
+        Assert.assertEquals(parents.length, clientSpans);
+        Assert.assertEquals(parents.length, callbackSpans);
+    }
+
+    @Test
+    public void testPromotedCall() throws Exception {
+        OkHttpClient client = limitedClient();
+        MockSpan[] parents = enqueueFromTwoCallers(client);
+
+        MockSpan first = clientSpan("/slow");
+        MockSpan promoted = clientSpan("/promoted");
+        Assert.assertEquals(parents[0].context().spanId(), first.parentId());
+        // promoted by the thread of the first call, which does not pass its context on
+        Assert.assertEquals(0, promoted.parentId());
+    }
+
+    @Test
+    public void testPromotedCallWithCallFactory() throws Exception {
+        MockSpan[] parents = enqueueFromTwoCallers(new TracingCallFactory(limitedClient()));
+
+        Assert.assertEquals(parents[0].context().spanId(), clientSpan("/slow").parentId());
+        Assert.assertEquals(parents[1].context().spanId(), clientSpan("/promoted").parentId());
+    }
+
+    private OkHttpClient limitedClient() {
+        Dispatcher dispatcher = new Dispatcher(new TracingExecutorService(dispatcherExecutor));
+        dispatcher.setMaxRequests(1);
+        return okHttpClient.newBuilder()
+                .dispatcher(dispatcher)
+                .build();
+    }
+
+    /**
+     * The second call is queued while the first one runs, with a different active context.
+     */
+    private MockSpan[] enqueueFromTwoCallers(Call.Factory callFactory) throws InterruptedException {
+        MockSpan[] parents = new MockSpan[2];
+        CountDownLatch completed = new CountDownLatch(2);
+        AtomicInteger failures = new AtomicInteger();
+        String[] paths = {"slow", "promoted"};
+        for (int i = 0; i < 2; i++) {
+            parents[i] = (MockSpan) mockTracer.buildSpan("parent").start();
+            SpanContext previous = ActiveSpanContext.activate(parents[i].context());
+            try {
+                callFactory.newCall(new Request.Builder()
+                        .url(mockWebServer.url(paths[i]))
+                        .build())
+                        .enqueue(new ChildSpanCallback(i, completed, failures));
+            } finally {
+                ActiveSpanContext.restore(previous);
+            }
+        }
+        Assert.assertTrue(completed.await(10, TimeUnit.SECONDS));
+        Assert.assertEquals(0, failures.get());
+        return parents;
+    }
+
+    private MockSpan clientSpan(String path) {
+        for (MockSpan mockSpan: mockTracer.finishedSpans()) {
+            if (mockWebServer.url(path).toString().equals(mockSpan.tags().get(Tags.HTTP_URL.getKey()))) {
+                return mockSpan;
+            }
+        }
+        throw new AssertionError("No span of " + path);
+    }
+
+    private class ChildSpanCallback implements Callback {
+        private final int call;
+        private final CountDownLatch completed;
+        private final AtomicInteger failures;
+
+        ChildSpanCallback(int call, CountDownLatch completed, AtomicInteger failures) {
+            this.call = call;
+            this.completed = completed;
+            this.failures = failures;
+        }
+
+        @Override
+        public void onFailure(Call call, IOException e) {
+            failures.incrementAndGet();
+            completed.countDown();
+        }
+
+        @Override
+        public void onResponse(Call call, Response response) throws IOException {
+            response.close();
+            mockTracer.buildSpan("callback")
+                    .asChildOf(ActiveSpanContext.current())
+                    .withTag("call", this.call)
+                    .start()
+                    .finish();
+            completed.countDown();
+        }
+    }
+}
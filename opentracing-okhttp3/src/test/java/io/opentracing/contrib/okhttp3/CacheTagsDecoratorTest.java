@@ -0,0 +1,124 @@
+package io.opentracing.contrib.okhttp3;
+
+import io.opentracing.mock.MockSpan;
+import io.opentracing.mock.MockTracer;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import okhttp3.Cache;
+import okhttp3.CacheControl;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class CacheTagsDecoratorTest {
+
+    @Rule
+    public TemporaryFolder cacheFolder = new TemporaryFolder();
+
+    private MockTracer mockTracer = new MockTracer();
+    private MockWebServer mockWebServer = new MockWebServer();
+    private CacheMetrics cacheMetrics = new CacheMetrics();
+    private OkHttpClient client;
+
+    @Before
+    public void before() throws IOException {
+        mockWebServer.start();
+        OkHttpClient.Builder builder = new OkHttpClient.Builder()
+                .cache(new Cache(cacheFolder.getRoot(), 1024 * 1024));
+        TracingInterceptor.addTracing(builder, mockTracer,
+                Arrays.asList(SpanDecorator.STANDARD_TAGS, new CacheTagsDecorator()));
+        client = MetricsInterceptor.addMetrics(builder, new HttpMetrics(), cacheMetrics).build();
+    }
+
+    @After
+    public void after() throws IOException {
+        client.cache().close();
+        mockWebServer.close();
+    }
+
+    @Test
+    public void testHit() throws IOException {
+        mockWebServer.enqueue(new MockResponse()
+                .setHeader("Cache-Control", "max-age=60")
+                .setBody("cached"));
+
+        Assert.assertEquals("cached", call("foo"));
+        Assert.assertEquals("cached", call("foo"));
+
+        assertOutcomes(CacheTagsDecorator.MISS, CacheTagsDecorator.HIT);
+        CacheMetrics.Snapshot snapshot = cacheMetrics.snapshot().get(0);
+        Assert.assertEquals(mockWebServer.getHostName(), snapshot.host());
+        Assert.assertEquals(1, snapshot.hits());
+        Assert.assertEquals(1, snapshot.misses());
+        Assert.assertEquals(0.5, snapshot.hitRatio(), 0);
+        Assert.assertEquals(6, snapshot.bytesFromCache());
+        Assert.assertEquals(0, snapshot.revalidation().count());
+    }
+
+    @Test
+    public void testConditional() throws IOException {
+        mockWebServer.enqueue(new MockResponse()
+                .setHeader("Cache-Control", "no-cache")
+                .setHeader("ETag", "\"v1\"")
+                .setBody("v1"));
+        mockWebServer.enqueue(new MockResponse()
+                .setResponseCode(304));
+        mockWebServer.enqueue(new MockResponse()
+                .setHeader("Cache-Control", "no-cache")
+                .setHeader("ETag", "\"v2\"")
+                .setBody("v2"));
+
+        Assert.assertEquals("v1", call("foo"));
+        Assert.assertEquals("v1", call("foo"));
+        Assert.assertEquals("v2", call("foo"));
+
+        assertOutcomes(CacheTagsDecorator.MISS, CacheTagsDecorator.CONDITIONAL_HIT,
+                CacheTagsDecorator.CONDITIONAL_MISS);
+        CacheMetrics.Snapshot snapshot = cacheMetrics.snapshot().get(0);
+        Assert.assertEquals(1, snapshot.conditionalHits());
+        Assert.assertEquals(1, snapshot.conditionalMisses());
+        Assert.assertEquals(1, snapshot.misses());
+        Assert.assertEquals(2, snapshot.revalidation().count());
+        Assert.assertEquals(2, snapshot.bytesFromCache());
+    }
+
+    @Test
+    public void testUnsatisfiable() throws IOException {
+        Response response = client.newCall(new Request.Builder()
+                .url(mockWebServer.url("foo"))
+                .cacheControl(CacheControl.FORCE_CACHE)
+                .build())
+                .execute();
+        response.close();
+
+        Assert.assertEquals(504, response.code());
+        assertOutcomes(CacheTagsDecorator.UNSATISFIABLE);
+        Assert.assertEquals(0, mockWebServer.getRequestCount());
+    }
+
+    private String call(String path) throws IOException {
+        try (Response response = client.newCall(new Request.Builder()
+                .url(mockWebServer.url(path))
+                .build())
+                .execute()) {
+            return response.body().string();
+        }
+    }
+
+    private void assertOutcomes(String... outcomes) {
+        List<MockSpan> mockSpans = mockTracer.finishedSpans();
+        Assert.assertEquals(outcomes.length, mockSpans.size());
+        for (int i = 0; i < outcomes.length; i++) {
+            Assert.assertEquals(outcomes[i], mockSpans.get(i).tags().get(CacheTagsDecorator.HTTP_CACHE.getKey()));
+        }
+    }
+}
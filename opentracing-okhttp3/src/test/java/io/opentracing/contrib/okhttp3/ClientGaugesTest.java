@@ -0,0 +1,117 @@
+package io.opentracing.contrib.okhttp3;
+
+import io.opentracing.mock.MockSpan;
+import io.opentracing.mock.MockTracer;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.Dispatcher;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ClientGaugesTest {
+
+    private MockTracer mockTracer = new MockTracer();
+    private MockWebServer mockWebServer = new MockWebServer();
+    private OkHttpClient client;
+
+    @Before
+    public void before() throws IOException {
+        mockWebServer.start();
+        Dispatcher dispatcher = new Dispatcher();
+        dispatcher.setMaxRequests(1);
+        client = TracingInterceptor.addTracing(new OkHttpClient.Builder(), mockTracer,
+                Collections.singletonList(SpanDecorator.STANDARD_TAGS))
+                .dispatcher(dispatcher)
+                .build();
+    }
+
+    @After
+    public void after() throws IOException {
+        mockWebServer.close();
+    }
+
+    @Test
+    public void testGauges() throws Exception {
+        ClientGauges gauges = new ClientGauges(client);
+        for (int i = 0; i < 3; i++) {
+            mockWebServer.enqueue(new MockResponse()
+                    .setHeadersDelay(100, TimeUnit.MILLISECONDS));
+        }
+
+        CountDownLatch completed = enqueue(new TracingCallFactory(client), 3);
+        mockWebServer.takeRequest();
+        gauges.sample();
+        Assert.assertTrue(completed.await(10, TimeUnit.SECONDS));
+
+        ClientGauges.Snapshot snapshot = gauges.snapshot();
+        Assert.assertEquals(0, snapshot.queuedCalls());
+        Assert.assertEquals(1, snapshot.maxRunningCalls());
+        Assert.assertEquals(2, snapshot.maxQueuedCalls());
+        Assert.assertEquals(1, snapshot.maxConnections());
+        Assert.assertEquals(1, snapshot.maxRequests());
+
+        // maximums are reset by the snapshot
+        Assert.assertEquals(0, gauges.snapshot().maxQueuedCalls());
+    }
+
+    @Test
+    public void testQueueWait() throws Exception {
+        for (int i = 0; i < 2; i++) {
+            mockWebServer.enqueue(new MockResponse()
+                    .setHeadersDelay(200, TimeUnit.MILLISECONDS));
+        }
+
+        Assert.assertTrue(enqueue(new TracingCallFactory(client), 2).await(10, TimeUnit.SECONDS));
+
+        List<MockSpan> mockSpans = mockTracer.finishedSpans();
+        Assert.assertEquals(2, mockSpans.size());
+        int firstWait = (Integer) mockSpans.get(0).tags().get(TracingInterceptor.QUEUE_WAIT.getKey());
+        int secondWait = (Integer) mockSpans.get(1).tags().get(TracingInterceptor.QUEUE_WAIT.getKey());
+        Assert.assertTrue(firstWait < TimeUnit.MILLISECONDS.toMicros(200));
+        // the second call waits for the first one
+        Assert.assertTrue(secondWait >= TimeUnit.MILLISECONDS.toMicros(200));
+    }
+
+    @Test
+    public void testQueueWaitWithoutCallFactory() throws Exception {
+        mockWebServer.enqueue(new MockResponse());
+
+        Assert.assertTrue(enqueue(client, 1).await(10, TimeUnit.SECONDS));
+
+        Assert.assertNull(mockTracer.finishedSpans().get(0).tags().get(TracingInterceptor.QUEUE_WAIT.getKey()));
+    }
+
+    private CountDownLatch enqueue(Call.Factory callFactory, int calls) {
+        final CountDownLatch completed = new CountDownLatch(calls);
+        for (int i = 0; i < calls; i++) {
+            callFactory.newCall(new Request.Builder()
+                    .url(mockWebServer.url("foo"))
+                    .build())
+                    .enqueue(new Callback() {
+                        @Override
+                        public void onFailure(Call call, IOException e) {
+                            completed.countDown();
+                        }
+
+                        @Override
+                        public void onResponse(Call call, Response response) {
+                            response.close();
+                            completed.countDown();
+                        }
+                    });
+        }
+        return completed;
+    }
+}
@@ -0,0 +1,235 @@
+package io.opentracing.contrib.okhttp3;
+
+import io.opentracing.mock.MockSpan;
+import io.opentracing.mock.MockTracer;
+import io.opentracing.tag.Tags;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ConcurrencyLimiterTest {
+
+    private static final long RTT_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+    private MockTracer mockTracer = new MockTracer();
+    private MockWebServer mockWebServer = new MockWebServer();
+
+    @Before
+    public void before() throws IOException {
+        mockWebServer.start();
+    }
+
+    @After
+    public void after() throws IOException {
+        mockWebServer.close();
+    }
+
+    @Test
+    public void testReject() throws Exception {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter.Builder()
+                .limits(1, 1, 1)
+                .build();
+        OkHttpClient client = client(limiter);
+        mockWebServer.enqueue(new MockResponse()
+                .setHeadersDelay(500, TimeUnit.MILLISECONDS));
+
+        client.newCall(new Request.Builder()
+                .url(mockWebServer.url("slow"))
+                .build())
+                .enqueue(new ClosingCallback());
+        mockWebServer.takeRequest();
+
+        try {
+            client.newCall(new Request.Builder()
+                    .url(mockWebServer.url("rejected"))
+                    .build())
+                    .execute();
+            Assert.fail();
+        } catch (ConcurrencyLimiter.LimitExceededException ex) {
+        }
+
+        MockSpan rejected = mockTracer.finishedSpans().get(0);
+        Assert.assertEquals(true, rejected.tags().get(ConcurrencyLimiter.REJECTED.getKey()));
+        Assert.assertEquals(true, rejected.tags().get(Tags.ERROR.getKey()));
+        Assert.assertEquals(1, mockWebServer.getRequestCount());
+
+        ConcurrencyLimiter.Snapshot snapshot = limiter.snapshot().get(0);
+        Assert.assertEquals(mockWebServer.getHostName(), snapshot.host());
+        Assert.assertEquals(1, snapshot.limit());
+        Assert.assertEquals(1, snapshot.inFlight());
+        Assert.assertEquals(1, snapshot.rejections());
+    }
+
+    @Test
+    public void testWait() throws Exception {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter.Builder()
+                .limits(1, 1, 1)
+                .maxWait(5, TimeUnit.SECONDS)
+                .build();
+        OkHttpClient client = client(limiter);
+        mockWebServer.enqueue(new MockResponse()
+                .setHeadersDelay(200, TimeUnit.MILLISECONDS));
+        mockWebServer.enqueue(new MockResponse()
+                .setResponseCode(202));
+
+        client.newCall(new Request.Builder()
+                .url(mockWebServer.url("slow"))
+                .build())
+                .enqueue(new ClosingCallback());
+        mockWebServer.takeRequest();
+
+        Response response = client.newCall(new Request.Builder()
+                .url(mockWebServer.url("waiting"))
+                .build())
+                .execute();
+        response.close();
+        Assert.assertEquals(202, response.code());
+
+        MockSpan waiting = mockTracer.finishedSpans().get(mockTracer.finishedSpans().size() - 1);
+        Assert.assertEquals(1, waiting.tags().get(ConcurrencyLimiter.LIMIT.getKey()));
+        Assert.assertEquals(1, waiting.tags().get(ConcurrencyLimiter.IN_FLIGHT.getKey()));
+        Assert.assertNull(waiting.tags().get(ConcurrencyLimiter.REJECTED.getKey()));
+        Assert.assertEquals(0, limiter.snapshot().get(0).rejections());
+    }
+
+    @Test
+    public void testLimitGrowsWithoutQueueing() throws IOException {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter.Builder()
+                .limits(10, 1, 100)
+                .build();
+        int limit = 10;
+        for (int i = 0; i < 5; i++) {
+            completeRound(limiter, RTT_NANOS, false);
+            int newLimit = limiter.snapshot().get(0).limit();
+            Assert.assertTrue(newLimit >= limit);
+            limit = newLimit;
+        }
+        Assert.assertTrue(limit > 10);
+        Assert.assertEquals(TimeUnit.NANOSECONDS.toMicros(RTT_NANOS), limiter.snapshot().get(0).minRttMicros());
+    }
+
+    @Test
+    public void testLimitDecreasesWhenQueueing() throws IOException {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter.Builder()
+                .limits(20, 1, 100)
+                .build();
+        completeRound(limiter, RTT_NANOS, false);
+        int limit = limiter.snapshot().get(0).limit();
+        // round trip times doubled, half of the limit is queueing
+        completeRound(limiter, 2 * RTT_NANOS, false);
+        Assert.assertTrue(limiter.snapshot().get(0).limit() < limit);
+    }
+
+    @Test
+    public void testLimitDecreasesOnDrop() throws IOException {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter.Builder()
+                .limits(20, 1, 100)
+                .build();
+        completeRound(limiter, RTT_NANOS, false);
+        int limit = limiter.snapshot().get(0).limit();
+        completeRound(limiter, RTT_NANOS, true);
+        Assert.assertTrue(limiter.snapshot().get(0).limit() < limit);
+    }
+
+    @Test
+    public void testFastDropDecreasesLimit() throws IOException {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter.Builder()
+                .limits(20, 1, 100)
+                .build();
+        completeRound(limiter, RTT_NANOS, false);
+        int limit = limiter.snapshot().get(0).limit();
+        // refused connections fail faster than any response
+        completeRound(limiter, RTT_NANOS / 10, true);
+        Assert.assertTrue(limiter.snapshot().get(0).limit() < limit);
+        Assert.assertEquals(TimeUnit.NANOSECONDS.toMicros(RTT_NANOS), limiter.snapshot().get(0).minRttMicros());
+    }
+
+    @Test
+    public void testCanceledCallKeepsLimit() throws Exception {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter.Builder()
+                .limits(20, 1, 100)
+                .build();
+        OkHttpClient client = client(limiter);
+        mockWebServer.enqueue(new MockResponse()
+                .setHeadersDelay(2, TimeUnit.SECONDS));
+
+        final CountDownLatch failed = new CountDownLatch(1);
+        Call call = client.newCall(new Request.Builder()
+                .url(mockWebServer.url("canceled"))
+                .build());
+        call.enqueue(new ClosingCallback() {
+            @Override
+            public void onFailure(Call call, IOException e) {
+                failed.countDown();
+            }
+        });
+        mockWebServer.takeRequest();
+        call.cancel();
+        Assert.assertTrue(failed.await(5, TimeUnit.SECONDS));
+
+        ConcurrencyLimiter.Snapshot snapshot = limiter.snapshot().get(0);
+        Assert.assertEquals(20, snapshot.limit());
+        Assert.assertEquals(0, snapshot.inFlight());
+        Assert.assertEquals(0, snapshot.minRttMicros());
+    }
+
+    @Test
+    public void testMaxHosts() throws IOException {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter.Builder()
+                .maxHosts(1)
+                .build();
+        limiter.acquire("a").release(RTT_NANOS, false);
+        limiter.acquire("b").release(RTT_NANOS, false);
+        limiter.acquire("c").release(RTT_NANOS, false);
+        Assert.assertEquals(2, limiter.snapshot().size());
+    }
+
+    /**
+     * Acquire the whole limit and release it with the same round trip time.
+     * The first round of a host completes a single call to record the round trip time without load.
+     */
+    private static void completeRound(ConcurrencyLimiter limiter, long rttNanos, boolean dropped) throws IOException {
+        int limit = limiter.snapshot().isEmpty() ? 1 : limiter.snapshot().get(0).limit();
+        List<ConcurrencyLimiter.Permit> permits = new ArrayList<>();
+        for (int i = 0; i < limit; i++) {
+            permits.add(limiter.acquire("host"));
+        }
+        for (ConcurrencyLimiter.Permit permit: permits) {
+            permit.release(rttNanos, dropped);
+        }
+    }
+
+    private OkHttpClient client(ConcurrencyLimiter limiter) {
+        TracingInterceptor tracingInterceptor = new TracingInterceptor.Builder(mockTracer)
+                .concurrencyLimiter(limiter)
+                .build();
+        return new OkHttpClient.Builder()
+                .addInterceptor(tracingInterceptor)
+                .addNetworkInterceptor(tracingInterceptor)
+                .build();
+    }
+
+    private static class ClosingCallback implements Callback {
+        @Override
+        public void onFailure(Call call, IOException e) {
+        }
+
+        @Override
+        public void onResponse(Call call, Response response) {
+            response.close();
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package io.opentracing.contrib.okhttp3;
+
+import io.opentracing.mock.MockSpan;
+import io.opentracing.mock.MockTracer;
+import java.net.Socket;
+import java.security.cert.Certificate;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import okhttp3.CipherSuite;
+import okhttp3.Connection;
+import okhttp3.Handshake;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.Route;
+import okhttp3.TlsVersion;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ConnectionTagsDecoratorTest {
+
+    private MockTracer mockTracer = new MockTracer();
+
+    @Test
+    public void testTlsConnectionTags() {
+        final Handshake handshake = Handshake.get(TlsVersion.TLS_1_2,
+                CipherSuite.TLS_ECDHE_RSA_WITH_AES_128_GCM_SHA256,
+                Collections.<Certificate>emptyList(), Collections.<Certificate>emptyList());
+        Connection connection = new PeerHostnameResolverTest.SocketConnection(new Socket()) {
+            @Override
+            public Handshake handshake() {
+                return handshake;
+            }
+
+            @Override
+            public Protocol protocol() {
+                return Protocol.HTTP_2;
+            }
+        };
+
+        MockSpan span = mockTracer.buildSpan("foo").start();
+        new ConnectionTagsDecorator().onNetworkResponse(connection, null, span);
+
+        Assert.assertEquals("h2", span.tags().get(ConnectionTagsDecorator.HTTP_PROTOCOL.getKey()));
+        Assert.assertEquals("TLSv1.2", span.tags().get(ConnectionTagsDecorator.TLS_VERSION.getKey()));
+        Assert.assertEquals("TLS_ECDHE_RSA_WITH_AES_128_GCM_SHA256",
+                span.tags().get(ConnectionTagsDecorator.TLS_CIPHER_SUITE.getKey()));
+    }
+
+    @Test
+    public void testComputedOncePerConnection() {
+        final int[] computed = {0};
+        ConnectionCache<Object> cache = new ConnectionCache<Object>() {
+            @Override
+            Object compute(Connection connection) {
+                computed[0]++;
+                return new Object();
+            }
+        };
+        Connection first = new PeerHostnameResolverTest.SocketConnection(new Socket());
+        Connection second = new PeerHostnameResolverTest.SocketConnection(new Socket());
+
+        Assert.assertSame(cache.get(first), cache.get(first));
+        Assert.assertNotSame(cache.get(first), cache.get(second));
+        Assert.assertEquals(2, computed[0]);
+    }
+
+    @Test
+    public void testPlainConnection() throws Exception {
+        MockWebServer mockWebServer = new MockWebServer();
+        mockWebServer.enqueue(new MockResponse().setResponseCode(200));
+        mockWebServer.enqueue(new MockResponse().setResponseCode(200));
+        OkHttpClient client = TracingInterceptor.addTracing(new OkHttpClient.Builder(), mockTracer,
+                Arrays.asList(SpanDecorator.STANDARD_TAGS, new ConnectionTagsDecorator()))
+                .build();
+
+        for (int i = 0; i < 2; i++) {
+            Response response = client.newCall(new Request.Builder()
+                    .url(mockWebServer.url("foo"))
+                    .build())
+                    .execute();
+            response.body().close();
+        }
+        mockWebServer.shutdown();
+
+        List<MockSpan> mockSpans = mockTracer.finishedSpans();
+        Assert.assertEquals(2, mockSpans.size());
+        TracingInterceptorTest.assertOnErrors(mockSpans);
+        for (MockSpan mockSpan: mockSpans) {
+            Assert.assertEquals(9, mockSpan.tags().size());
+            Assert.assertEquals("http/1.1", mockSpan.tags().get(ConnectionTagsDecorator.HTTP_PROTOCOL.getKey()));
+            Assert.assertEquals(mockWebServer.getPort(), mockSpan.tags().get("peer.port"));
+            Assert.assertEquals("localhost", mockSpan.tags().get("peer.hostname"));
+            Assert.assertNull(mockSpan.tags().get(ConnectionTagsDecorator.TLS_VERSION.getKey()));
+        }
+    }
+}
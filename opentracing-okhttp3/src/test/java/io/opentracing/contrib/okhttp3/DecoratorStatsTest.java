@@ -0,0 +1,231 @@
+package io.opentracing.contrib.okhttp3;
+
+import io.opentracing.Span;
+import io.opentracing.mock.MockSpan;
+import io.opentracing.mock.MockTracer;
+import io.opentracing.tag.Tags;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Handler;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+import okhttp3.Connection;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class DecoratorStatsTest {
+
+    private MockTracer mockTracer = new MockTracer();
+    private MockWebServer mockWebServer = new MockWebServer();
+    private DecoratorStats stats = new DecoratorStats();
+
+    @Before
+    public void before() throws IOException {
+        mockWebServer.start();
+    }
+
+    @After
+    public void after() throws IOException {
+        mockWebServer.close();
+    }
+
+    @Test
+    public void testFailingDecorator() throws IOException {
+        mockWebServer.enqueue(new MockResponse().setResponseCode(202));
+        OkHttpClient client = client(new TracingInterceptor.Builder(mockTracer)
+                .decorators(Arrays.asList(new FailingDecorator(), SpanDecorator.STANDARD_TAGS))
+                .decoratorStats(stats));
+
+        Assert.assertEquals(202, execute(client));
+
+        MockSpan mockSpan = mockTracer.finishedSpans().get(0);
+        Assert.assertEquals(202, mockSpan.tags().get(Tags.HTTP_STATUS.getKey()));
+        Assert.assertNull(mockSpan.tags().get(Tags.ERROR.getKey()));
+
+        Map<String, DecoratorStats.Snapshot> snapshots = snapshots();
+        DecoratorStats.Snapshot failing = snapshots.get(FailingDecorator.class.getName());
+        Assert.assertEquals(3, failing.invocations());
+        Assert.assertEquals(3, failing.failures());
+        DecoratorStats.Snapshot standard = snapshots.get(StandardTagsDecorator.class.getName());
+        Assert.assertEquals(3, standard.invocations());
+        Assert.assertEquals(0, standard.failures());
+        Assert.assertEquals(0, standard.skipped());
+    }
+
+    @Test
+    public void testFailingDecoratorWithoutStats() throws IOException {
+        mockWebServer.enqueue(new MockResponse().setResponseCode(202));
+        OkHttpClient client = client(new TracingInterceptor.Builder(mockTracer)
+                .decorators(Arrays.asList(new FailingDecorator(), SpanDecorator.STANDARD_TAGS)));
+
+        Assert.assertEquals(202, execute(client));
+        Assert.assertEquals(202, mockTracer.finishedSpans().get(0).tags().get(Tags.HTTP_STATUS.getKey()));
+    }
+
+    @Test
+    public void testErrorsLoggedPerDecorator() throws IOException {
+        final List<LogRecord> records = new ArrayList<>();
+        Handler handler = new Handler() {
+            @Override
+            public void publish(LogRecord record) {
+                records.add(record);
+            }
+
+            @Override
+            public void flush() {
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+        Logger logger = Logger.getLogger(Decorators.class.getName());
+        logger.addHandler(handler);
+        try {
+            mockWebServer.enqueue(new MockResponse().setResponseCode(202));
+            OkHttpClient client = client(new TracingInterceptor.Builder(mockTracer)
+                    .decorators(Arrays.asList(new ErrorDecorator(new AssertionError()),
+                            new ErrorDecorator(new NoSuchMethodError()), SpanDecorator.STANDARD_TAGS))
+                    .decoratorStats(stats));
+
+            Assert.assertEquals(202, execute(client));
+        } finally {
+            logger.removeHandler(handler);
+        }
+
+        // each decorator logs its first failure, further failures are suppressed
+        Assert.assertEquals(2, records.size());
+        Assert.assertTrue(records.get(0).getThrown() instanceof AssertionError);
+        Assert.assertTrue(records.get(1).getThrown() instanceof NoSuchMethodError);
+        Assert.assertEquals(ErrorDecorator.class.getName(), records.get(0).getParameters()[0]);
+    }
+
+    @Test
+    public void testBudget() throws IOException {
+        mockWebServer.enqueue(new MockResponse().setResponseCode(202));
+        OkHttpClient client = client(new TracingInterceptor.Builder(mockTracer)
+                .decorators(Arrays.asList(new SlowDecorator(), SpanDecorator.STANDARD_TAGS))
+                .decoratorStats(stats)
+                .decoratorBudget(10, TimeUnit.MILLISECONDS));
+
+        Assert.assertEquals(202, execute(client));
+
+        MockSpan mockSpan = mockTracer.finishedSpans().get(0);
+        Assert.assertNull(mockSpan.tags().get(Tags.HTTP_STATUS.getKey()));
+
+        Map<String, DecoratorStats.Snapshot> snapshots = snapshots();
+        DecoratorStats.Snapshot slow = snapshots.get(SlowDecorator.class.getName());
+        Assert.assertEquals(1, slow.invocations());
+        Assert.assertEquals(2, slow.skipped());
+        Assert.assertTrue(slow.micros() >= TimeUnit.MILLISECONDS.toMicros(20));
+        Assert.assertEquals(3, snapshots.get(StandardTagsDecorator.class.getName()).skipped());
+    }
+
+    private int execute(OkHttpClient client) throws IOException {
+        Response response = client.newCall(new Request.Builder()
+                .url(mockWebServer.url("foo"))
+                .build())
+                .execute();
+        response.close();
+        return response.code();
+    }
+
+    private Map<String, DecoratorStats.Snapshot> snapshots() {
+        Map<String, DecoratorStats.Snapshot> snapshots = new HashMap<>();
+        for (DecoratorStats.Snapshot snapshot: stats.snapshot()) {
+            snapshots.put(snapshot.decorator(), snapshot);
+        }
+        return snapshots;
+    }
+
+    private static OkHttpClient client(TracingInterceptor.Builder builder) {
+        TracingInterceptor tracingInterceptor = builder.build();
+        return new OkHttpClient.Builder()
+                .addInterceptor(tracingInterceptor)
+                .addNetworkInterceptor(tracingInterceptor)
+                .build();
+    }
+
+    private static class FailingDecorator implements SpanDecorator {
+        @Override
+        public void onRequest(Request request, Span span) {
+            throw new IllegalStateException("onRequest");
+        }
+
+        @Override
+        public void onResponse(Response response, Span span) {
+            throw new IllegalStateException("onResponse");
+        }
+
+        @Override
+        public void onError(Throwable throwable, Span span) {
+            throw new IllegalStateException("onError");
+        }
+
+        @Override
+        public void onNetworkResponse(Connection connection, Response response, Span span) {
+            throw new IllegalStateException("onNetworkResponse");
+        }
+    }
+
+    private static class ErrorDecorator implements SpanDecorator {
+        private final Error error;
+
+        ErrorDecorator(Error error) {
+            this.error = error;
+        }
+
+        @Override
+        public void onRequest(Request request, Span span) {
+            throw error;
+        }
+
+        @Override
+        public void onResponse(Response response, Span span) {
+        }
+
+        @Override
+        public void onError(Throwable throwable, Span span) {
+        }
+
+        @Override
+        public void onNetworkResponse(Connection connection, Response response, Span span) {
+            throw error;
+        }
+    }
+
+    private static class SlowDecorator implements SpanDecorator {
+        @Override
+        public void onRequest(Request request, Span span) {
+            try {
+                Thread.sleep(20);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        @Override
+        public void onResponse(Response response, Span span) {
+        }
+
+        @Override
+        public void onError(Throwable throwable, Span span) {
+        }
+
+        @Override
+        public void onNetworkResponse(Connection connection, Response response, Span span) {
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package io.opentracing.contrib.okhttp3;
+
+import io.opentracing.mock.MockSpan;
+import io.opentracing.mock.MockTracer;
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class DeduplicatingErrorLoggerTest {
+
+    private MockTracer mockTracer = new MockTracer();
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testStackLoggedOncePerFingerprint() {
+        DeduplicatingErrorLogger errorLogger = new DeduplicatingErrorLogger();
+
+        // same call site, same fingerprint
+        Map<String, ?>[] logs = new Map[2];
+        for (int i = 0; i < logs.length; i++) {
+            logs[i] = log(errorLogger, timeout());
+        }
+        Map<String, ?> first = logs[0];
+        Map<String, ?> second = logs[1];
+        Map<String, ?> other = log(errorLogger, new IOException("other"));
+
+        Assert.assertNotNull(first.get("stack"));
+        Assert.assertEquals(SocketTimeoutException.class.getName(), first.get("error.kind"));
+        Assert.assertEquals("timeout", first.get("message"));
+
+        Assert.assertNull(second.get("stack"));
+        Assert.assertEquals(4, second.size());
+        Assert.assertEquals(first.get(DeduplicatingErrorLogger.FINGERPRINT),
+                second.get(DeduplicatingErrorLogger.FINGERPRINT));
+
+        Assert.assertNotNull(other.get("stack"));
+        Assert.assertNotEquals(first.get(DeduplicatingErrorLogger.FINGERPRINT),
+                other.get(DeduplicatingErrorLogger.FINGERPRINT));
+    }
+
+    @Test
+    public void testStackLoggedAgainAfterWindow() {
+        DeduplicatingErrorLogger errorLogger = new DeduplicatingErrorLogger(5, 0, 0, TimeUnit.SECONDS, 10);
+
+        for (int i = 0; i < 2; i++) {
+            Assert.assertNotNull(log(errorLogger, timeout()).get("stack"));
+        }
+    }
+
+    @Test
+    public void testEvictedFingerprintLoggedAgain() {
+        DeduplicatingErrorLogger errorLogger = new DeduplicatingErrorLogger(5, 0, 1, TimeUnit.HOURS, 1);
+
+        for (int i = 0; i < 2; i++) {
+            Assert.assertNotNull(log(errorLogger, timeout()).get("stack"));
+            Assert.assertNotNull(log(errorLogger, new IOException()).get("stack"));
+        }
+    }
+
+    @Test
+    public void testStackDepthCap() {
+        DeduplicatingErrorLogger errorLogger = new DeduplicatingErrorLogger(5, 2, 1, TimeUnit.MINUTES, 10);
+        Throwable throwable = new IOException("outer", new IllegalStateException("inner"));
+
+        String stack = (String) log(errorLogger, throwable).get("stack");
+        String[] lines = stack.split(System.lineSeparator());
+        Assert.assertEquals(8, lines.length);
+        Assert.assertEquals(throwable.toString(), lines[0]);
+        Assert.assertTrue(lines[1].startsWith("\tat "));
+        Assert.assertTrue(lines[3].startsWith("\t... "));
+        Assert.assertEquals("Caused by: " + throwable.getCause(), lines[4]);
+    }
+
+    private Map<String, ?> log(ErrorLogger errorLogger, Throwable throwable) {
+        MockSpan span = mockTracer.buildSpan("foo").start();
+        errorLogger.log(throwable, span);
+        List<MockSpan.LogEntry> logEntries = span.logEntries();
+        Assert.assertEquals(1, logEntries.size());
+        return logEntries.get(0).fields();
+    }
+
+    private static SocketTimeoutException timeout() {
+        return new SocketTimeoutException("timeout");
+    }
+}
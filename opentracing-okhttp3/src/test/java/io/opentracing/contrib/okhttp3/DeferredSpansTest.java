@@ -0,0 +1,137 @@
+package io.opentracing.contrib.okhttp3;
+
+import io.opentracing.mock.MockSpan;
+import io.opentracing.mock.MockTracer;
+import io.opentracing.tag.Tags;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class DeferredSpansTest {
+
+    private MockTracer mockTracer = new MockTracer(MockTracer.Propagator.TEXT_MAP);
+    private MockWebServer mockWebServer = new MockWebServer();
+    private OkHttpClient okHttpClient;
+
+    public DeferredSpansTest() {
+        TracingInterceptor tracingInterceptor = new TracingInterceptor.Builder(mockTracer)
+                .deferSpans(new OperationThresholds(1, TimeUnit.HOURS)
+                        .threshold("POST", 0, TimeUnit.NANOSECONDS))
+                .build();
+        okHttpClient = new OkHttpClient.Builder()
+                .addInterceptor(tracingInterceptor)
+                .addNetworkInterceptor(tracingInterceptor)
+                .build();
+    }
+
+    @Before
+    public void before() throws IOException {
+        mockWebServer.start();
+    }
+
+    @After
+    public void after() throws IOException {
+        mockWebServer.close();
+    }
+
+    @Test
+    public void testFastCall() throws Exception {
+        mockWebServer.enqueue(new MockResponse()
+                .setResponseCode(200));
+
+        MockSpan parent = (MockSpan) mockTracer.buildSpan("parent").start();
+        okHttpClient.newCall(new Request.Builder()
+                .url(mockWebServer.url("foo"))
+                .tag(new TagWrapper(parent.context()))
+                .build())
+                .execute()
+                .close();
+
+        Assert.assertEquals(0, mockTracer.finishedSpans().size());
+        RecordedRequest recordedRequest = mockWebServer.takeRequest();
+        Assert.assertEquals(String.valueOf(parent.context().spanId()), recordedRequest.getHeader("spanid"));
+    }
+
+    @Test
+    public void testSlowCall() throws Exception {
+        mockWebServer.enqueue(new MockResponse()
+                .setResponseCode(200)
+                .setBody("ok"));
+
+        MockSpan parent = (MockSpan) mockTracer.buildSpan("parent").start();
+        long beforeMicros = TimeUnit.MILLISECONDS.toMicros(System.currentTimeMillis());
+        okHttpClient.newCall(new Request.Builder()
+                .url(mockWebServer.url("foo"))
+                .post(RequestBody.create(null, "request"))
+                .tag(new TagWrapper(parent.context()))
+                .build())
+                .execute()
+                .close();
+
+        List<MockSpan> mockSpans = mockTracer.finishedSpans();
+        Assert.assertEquals(1, mockSpans.size());
+        MockSpan mockSpan = mockSpans.get(0);
+        Assert.assertEquals(0, mockSpan.generatedErrors().size());
+        Assert.assertEquals("POST", mockSpan.operationName());
+        Assert.assertEquals(parent.context().spanId(), mockSpan.parentId());
+        Assert.assertTrue(mockSpan.startMicros() >= beforeMicros);
+        Assert.assertTrue(mockSpan.finishMicros() >= mockSpan.startMicros());
+        Assert.assertEquals(Tags.SPAN_KIND_CLIENT, mockSpan.tags().get(Tags.SPAN_KIND.getKey()));
+        Assert.assertEquals(200, mockSpan.tags().get(Tags.HTTP_STATUS.getKey()));
+        Assert.assertEquals(mockWebServer.getPort(), mockSpan.tags().get(Tags.PEER_PORT.getKey()));
+    }
+
+    @Test
+    public void testServerError() throws IOException {
+        mockWebServer.enqueue(new MockResponse()
+                .setResponseCode(503));
+
+        okHttpClient.newCall(new Request.Builder()
+                .url(mockWebServer.url("foo"))
+                .build())
+                .execute()
+                .close();
+
+        List<MockSpan> mockSpans = mockTracer.finishedSpans();
+        Assert.assertEquals(1, mockSpans.size());
+        Assert.assertEquals(0, mockSpans.get(0).generatedErrors().size());
+        Assert.assertEquals(0, mockSpans.get(0).parentId());
+        Assert.assertEquals(503, mockSpans.get(0).tags().get(Tags.HTTP_STATUS.getKey()));
+    }
+
+    @Test
+    public void testError() throws IOException {
+        mockWebServer.close();
+        try {
+            okHttpClient.newCall(new Request.Builder()
+                    .url(mockWebServer.url("foo"))
+                    .build())
+                    .execute();
+            Assert.fail();
+        } catch (IOException ex) {
+        }
+
+        List<MockSpan> mockSpans = mockTracer.finishedSpans();
+        Assert.assertEquals(1, mockSpans.size());
+        Assert.assertEquals(true, mockSpans.get(0).tags().get(Tags.ERROR.getKey()));
+        Assert.assertEquals(1, mockSpans.get(0).logEntries().size());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testTraceBodies() {
+        new TracingInterceptor.Builder(mockTracer)
+                .deferSpans(new OperationThresholds(1, TimeUnit.SECONDS))
+                .traceBodies(true)
+                .build();
+    }
+}
@@ -0,0 +1,261 @@
+package io.opentracing.contrib.okhttp3;
+
+import io.opentracing.mock.MockSpan;
+import io.opentracing.mock.MockTracer;
+import io.opentracing.tag.Tags;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.Interceptor;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import org.awaitility.Awaitility;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class HedgingInterceptorTest {
+
+    private static final int WARMUP_CALLS = 20;
+
+    private MockTracer mockTracer = new MockTracer();
+    private MockWebServer mockWebServer = new MockWebServer();
+    private AtomicInteger slowCalls = new AtomicInteger();
+
+    @Before
+    public void before() throws IOException {
+        mockWebServer.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                // first call to /slow hangs, hedges respond immediately
+                if (request.getPath().equals("/slow") && slowCalls.getAndIncrement() == 0) {
+                    return new MockResponse().setHeadersDelay(3, TimeUnit.SECONDS);
+                }
+                return new MockResponse().setResponseCode(200);
+            }
+        });
+        mockWebServer.start();
+    }
+
+    @After
+    public void after() throws IOException {
+        mockWebServer.close();
+    }
+
+    @Test
+    public void testHedgeWins() throws Exception {
+        HedgingInterceptor hedgingInterceptor = new HedgingInterceptor.Builder()
+                .budget(0.5)
+                .window(100, TimeUnit.MILLISECONDS, WARMUP_CALLS)
+                .build();
+        OkHttpClient client = client(hedgingInterceptor);
+        warmup(client);
+
+        long startNanos = System.nanoTime();
+        Call call = client.newCall(new Request.Builder()
+                .url(mockWebServer.url("slow"))
+                .build());
+        Response response = call.execute();
+        response.close();
+        Assert.assertEquals(200, response.code());
+        Assert.assertTrue(System.nanoTime() - startNanos < TimeUnit.SECONDS.toNanos(2));
+        Assert.assertFalse(call.isCanceled());
+        Assert.assertEquals(1, hedgingInterceptor.hedgeCount());
+
+        Awaitility.await().until(new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                return mockTracer.finishedSpans().size() == WARMUP_CALLS + 2;
+            }
+        });
+        List<MockSpan> mockSpans = mockTracer.finishedSpans().subList(WARMUP_CALLS, WARMUP_CALLS + 2);
+        MockSpan hedge = mockSpans.get(0);
+        MockSpan primary = mockSpans.get(1);
+        Assert.assertEquals(HedgingInterceptor.HEDGE, hedge.tags().get(HedgingInterceptor.HEDGE_ROLE.getKey()));
+        Assert.assertEquals(true, hedge.tags().get(HedgingInterceptor.HEDGE_WINNER.getKey()));
+        Assert.assertEquals(HedgingInterceptor.PRIMARY, primary.tags().get(HedgingInterceptor.HEDGE_ROLE.getKey()));
+        Assert.assertEquals(false, primary.tags().get(HedgingInterceptor.HEDGE_WINNER.getKey()));
+        Assert.assertEquals(200, primary.tags().get(Tags.HTTP_STATUS.getKey()));
+        Assert.assertNull(primary.tags().get(Tags.ERROR.getKey()));
+        Assert.assertEquals(0, hedge.generatedErrors().size());
+        Assert.assertEquals(0, primary.generatedErrors().size());
+    }
+
+    @Test
+    public void testHedgeDueBeforeAttempt() throws Exception {
+        HedgingInterceptor hedgingInterceptor = new HedgingInterceptor.Builder()
+                .budget(0.5)
+                .window(100, TimeUnit.MILLISECONDS, WARMUP_CALLS)
+                .build();
+        OkHttpClient client = client(hedgingInterceptor).newBuilder()
+                .addInterceptor(new Interceptor() {
+                    @Override
+                    public Response intercept(Chain chain) throws IOException {
+                        // the timer fires before the network attempt of the original call starts
+                        if (chain.request().url().encodedPath().equals("/slow") && slowCalls.get() == 0) {
+                            try {
+                                Thread.sleep(100);
+                            } catch (InterruptedException ex) {
+                                Thread.currentThread().interrupt();
+                            }
+                        }
+                        return chain.proceed(chain.request());
+                    }
+                })
+                .build();
+        warmup(client);
+
+        long startNanos = System.nanoTime();
+        Response response = client.newCall(new Request.Builder()
+                .url(mockWebServer.url("slow"))
+                .build())
+                .execute();
+        response.close();
+        Assert.assertEquals(200, response.code());
+        Assert.assertTrue(System.nanoTime() - startNanos < TimeUnit.SECONDS.toNanos(2));
+        Assert.assertEquals(1, hedgingInterceptor.hedgeCount());
+    }
+
+    @Test
+    public void testBudget() throws Exception {
+        HedgingInterceptor hedgingInterceptor = new HedgingInterceptor.Builder()
+                .budget(0)
+                .window(100, TimeUnit.MILLISECONDS, WARMUP_CALLS)
+                .build();
+        OkHttpClient client = client(hedgingInterceptor);
+        warmup(client);
+
+        try {
+            client.newBuilder()
+                    .readTimeout(500, TimeUnit.MILLISECONDS)
+                    .build()
+                    .newCall(new Request.Builder()
+                            .url(mockWebServer.url("slow"))
+                            .build())
+                    .execute();
+            Assert.fail();
+        } catch (IOException ex) {
+        }
+        Assert.assertEquals(0, hedgingInterceptor.hedgeCount());
+    }
+
+    @Test
+    public void testBudgetIsNotAccumulated() throws Exception {
+        HedgingInterceptor hedgingInterceptor = new HedgingInterceptor.Builder()
+                .budget(1)
+                .window(100, TimeUnit.MILLISECONDS, WARMUP_CALLS)
+                .build();
+        OkHttpClient client = client(hedgingInterceptor);
+        warmup(client);
+
+        // warmup calls earned 20 hedges, only a burst is kept
+        int hedges = 0;
+        for (int i = 0; i < WARMUP_CALLS; i++) {
+            if (hedgingInterceptor.acquireHedge()) {
+                hedges++;
+            }
+        }
+        Assert.assertEquals(HedgingInterceptor.MAX_HEDGE_BURST, hedges);
+        Assert.assertEquals(HedgingInterceptor.MAX_HEDGE_BURST, hedgingInterceptor.hedgeCount());
+    }
+
+    @Test
+    public void testPrimaryFailsWhileHedgeIsQueued() throws Exception {
+        HedgingInterceptor hedgingInterceptor = new HedgingInterceptor.Builder()
+                .budget(1)
+                .window(100, TimeUnit.MILLISECONDS, WARMUP_CALLS)
+                .build();
+        final OkHttpClient client = client(hedgingInterceptor);
+        warmup(client);
+        client.dispatcher().setMaxRequestsPerHost(1);
+
+        // the hedge waits for the slot held by the primary
+        final CountDownLatch failed = new CountDownLatch(1);
+        client.newBuilder()
+                .readTimeout(500, TimeUnit.MILLISECONDS)
+                .build()
+                .newCall(new Request.Builder()
+                        .url(mockWebServer.url("slow"))
+                        .build())
+                .enqueue(new Callback() {
+                    @Override
+                    public void onFailure(Call call, IOException e) {
+                        failed.countDown();
+                    }
+
+                    @Override
+                    public void onResponse(Call call, Response response) {
+                        response.close();
+                    }
+                });
+        Assert.assertTrue(failed.await(5, TimeUnit.SECONDS));
+        Assert.assertEquals(1, hedgingInterceptor.hedgeCount());
+        Awaitility.await().until(new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                return client.dispatcher().runningCallsCount() == 0 && client.dispatcher().queuedCallsCount() == 0;
+            }
+        });
+    }
+
+    @Test
+    public void testNotIdempotent() throws Exception {
+        HedgingInterceptor hedgingInterceptor = new HedgingInterceptor.Builder()
+                .budget(1)
+                .window(100, TimeUnit.MILLISECONDS, WARMUP_CALLS)
+                .build();
+        OkHttpClient client = client(hedgingInterceptor);
+        warmup(client);
+
+        try {
+            client.newBuilder()
+                    .readTimeout(500, TimeUnit.MILLISECONDS)
+                    .build()
+                    .newCall(new Request.Builder()
+                            .url(mockWebServer.url("slow"))
+                            .post(RequestBody.create(null, "body"))
+                            .build())
+                    .execute();
+            Assert.fail();
+        } catch (IOException ex) {
+        }
+        Assert.assertEquals(0, hedgingInterceptor.hedgeCount());
+        Assert.assertEquals(1, slowCalls.get());
+    }
+
+    private OkHttpClient client(HedgingInterceptor hedgingInterceptor) {
+        TracingInterceptor tracingInterceptor = new TracingInterceptor(mockTracer,
+                Collections.singletonList(SpanDecorator.STANDARD_TAGS));
+        return new OkHttpClient.Builder()
+                .addInterceptor(tracingInterceptor)
+                .addInterceptor(hedgingInterceptor)
+                .addNetworkInterceptor(tracingInterceptor)
+                .addNetworkInterceptor(hedgingInterceptor)
+                .build();
+    }
+
+    private void warmup(OkHttpClient client) throws Exception {
+        for (int i = 0; i < WARMUP_CALLS; i++) {
+            client.newCall(new Request.Builder()
+                    .url(mockWebServer.url("fast"))
+                    .build())
+                    .execute()
+                    .close();
+        }
+        // latency percentile is computed when the window ends
+        Thread.sleep(150);
+    }
+}
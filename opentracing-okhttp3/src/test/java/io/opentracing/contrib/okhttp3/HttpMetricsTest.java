@@ -0,0 +1,131 @@
+package io.opentracing.contrib.okhttp3;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class HttpMetricsTest {
+
+    @Test
+    public void testBucketBounds() {
+        for (long micros = 0; micros < 1 << 20; micros++) {
+            int bucket = LatencyHistogram.bucket(micros);
+            Assert.assertTrue(micros <= LatencyHistogram.upperBoundMicros(bucket));
+            if (bucket > 0) {
+                Assert.assertTrue(micros > LatencyHistogram.upperBoundMicros(bucket - 1));
+            }
+        }
+        Assert.assertEquals(LatencyHistogram.BUCKETS - 1, LatencyHistogram.bucket(Long.MAX_VALUE));
+    }
+
+    @Test
+    public void testPercentiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int millis = 1; millis <= 100; millis++) {
+            histogram.record(millis, TimeUnit.MILLISECONDS);
+        }
+
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        Assert.assertEquals(100, snapshot.count());
+        Assert.assertEquals(5050000, snapshot.sumMicros());
+        assertWithinBucket(50000, snapshot.percentileMicros(0.5));
+        assertWithinBucket(99000, snapshot.percentileMicros(0.99));
+        assertWithinBucket(100000, snapshot.percentileMicros(1));
+        Assert.assertEquals(0, new LatencyHistogram().snapshot().percentileMicros(0.5));
+    }
+
+    @Test
+    public void testSnapshotDelta() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(1, TimeUnit.SECONDS);
+        LatencyHistogram.Snapshot previous = histogram.snapshot();
+        for (int i = 0; i < 10; i++) {
+            histogram.record(1, TimeUnit.MILLISECONDS);
+        }
+
+        // the slow value recorded before the previous snapshot does not count
+        LatencyHistogram.Snapshot delta = histogram.snapshot().minus(previous);
+        Assert.assertEquals(10, delta.count());
+        Assert.assertEquals(10000, delta.sumMicros());
+        assertWithinBucket(1000, delta.percentileMicros(0.99));
+        assertWithinBucket(1000000, histogram.snapshot().percentileMicros(0.99));
+    }
+
+    @Test
+    public void testBoundedCardinality() {
+        HttpMetrics metrics = new HttpMetrics(2, 1);
+        metrics.record("a", "GET", 200, 1000);
+        metrics.record("a", "POST", 200, 1000);
+        metrics.record("b", "GET", 200, 1000);
+        metrics.record("c", "GET", 200, 1000);
+        metrics.record("d", "GET", 200, 1000);
+
+        Map<String, Long> counts = counts(metrics.snapshot());
+        Assert.assertEquals(4, counts.size());
+        Assert.assertEquals(Long.valueOf(1), counts.get("a GET 2xx"));
+        Assert.assertEquals(Long.valueOf(1), counts.get("a other 2xx"));
+        Assert.assertEquals(Long.valueOf(1), counts.get("b GET 2xx"));
+        Assert.assertEquals(Long.valueOf(2), counts.get("other GET 2xx"));
+    }
+
+    @Test
+    public void testMetricsInterceptor() throws IOException {
+        HttpMetrics metrics = new HttpMetrics();
+        OkHttpClient client = MetricsInterceptor.addMetrics(new OkHttpClient.Builder(), metrics).build();
+
+        MockWebServer mockWebServer = new MockWebServer();
+        mockWebServer.start();
+        mockWebServer.enqueue(new MockResponse().setResponseCode(200));
+        mockWebServer.enqueue(new MockResponse().setResponseCode(200));
+        mockWebServer.enqueue(new MockResponse().setResponseCode(503));
+        for (int i = 0; i < 3; i++) {
+            client.newCall(new Request.Builder()
+                    .url(mockWebServer.url("foo"))
+                    .build())
+                    .execute()
+                    .close();
+        }
+        String host = mockWebServer.getHostName();
+        mockWebServer.close();
+
+        try {
+            client.newCall(new Request.Builder()
+                    .url(mockWebServer.url("foo"))
+                    .build())
+                    .execute();
+            Assert.fail();
+        } catch (IOException ex) {
+        }
+
+        List<HttpMetrics.Snapshot> snapshots = metrics.snapshot();
+        Map<String, Long> counts = counts(snapshots);
+        Assert.assertEquals(3, counts.size());
+        Assert.assertEquals(Long.valueOf(2), counts.get(host + " GET 2xx"));
+        Assert.assertEquals(Long.valueOf(1), counts.get(host + " GET 5xx"));
+        Assert.assertEquals(Long.valueOf(1), counts.get(host + " GET " + HttpMetrics.ERROR));
+        for (HttpMetrics.Snapshot snapshot: snapshots) {
+            Assert.assertEquals(!"2xx".equals(snapshot.statusClass()), snapshot.isError());
+        }
+    }
+
+    private static Map<String, Long> counts(List<HttpMetrics.Snapshot> snapshots) {
+        Map<String, Long> counts = new HashMap<>();
+        for (HttpMetrics.Snapshot snapshot: snapshots) {
+            counts.put(snapshot.host() + " " + snapshot.method() + " " + snapshot.statusClass(), snapshot.count());
+        }
+        return counts;
+    }
+
+    private static void assertWithinBucket(long expected, long upperBound) {
+        Assert.assertTrue(upperBound >= expected);
+        Assert.assertTrue(upperBound <= expected * 1.125);
+    }
+}
@@ -0,0 +1,149 @@
+package io.opentracing.contrib.okhttp3;
+
+import io.opentracing.mock.MockSpan;
+import io.opentracing.mock.MockTracer;
+import io.opentracing.tag.Tags;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import okhttp3.Connection;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class NetworkSpansTest {
+
+    private MockTracer mockTracer = new MockTracer(MockTracer.Propagator.TEXT_MAP);
+    private MockWebServer mockWebServer = new MockWebServer();
+    private OkHttpClient okHttpClient;
+
+    public NetworkSpansTest() {
+        TracingInterceptor tracingInterceptor = new TracingInterceptor.Builder(mockTracer)
+                .networkSpans(true)
+                .build();
+        okHttpClient = new OkHttpClient.Builder()
+                .addInterceptor(tracingInterceptor)
+                .addNetworkInterceptor(tracingInterceptor)
+                .build();
+    }
+
+    @Before
+    public void before() throws IOException {
+        mockWebServer.start();
+    }
+
+    @After
+    public void after() throws IOException {
+        mockWebServer.close();
+    }
+
+    @Test
+    public void testRedirect() throws Exception {
+        mockWebServer.enqueue(new MockResponse()
+                .setResponseCode(301)
+                .setHeader("Location", "/redirect"));
+        mockWebServer.enqueue(new MockResponse()
+                .setResponseCode(200));
+
+        okHttpClient.newCall(new Request.Builder()
+                .url(mockWebServer.url("foo"))
+                .build())
+                .execute()
+                .close();
+
+        List<MockSpan> mockSpans = mockTracer.finishedSpans();
+        Assert.assertEquals(3, mockSpans.size());
+        for (MockSpan mockSpan: mockSpans) {
+            Assert.assertEquals(0, mockSpan.generatedErrors().size());
+        }
+
+        MockSpan first = mockSpans.get(0);
+        MockSpan second = mockSpans.get(1);
+        MockSpan call = mockSpans.get(2);
+        Assert.assertNull(call.tags().get(TracingInterceptor.ATTEMPT.getKey()));
+        Assert.assertEquals(200, call.tags().get(Tags.HTTP_STATUS.getKey()));
+
+        Assert.assertEquals(call.context().spanId(), first.parentId());
+        Assert.assertEquals(1, first.tags().get(TracingInterceptor.ATTEMPT.getKey()));
+        Assert.assertEquals(301, first.tags().get(Tags.HTTP_STATUS.getKey()));
+        Assert.assertEquals(false, first.tags().get(TracingEventListener.CONNECTION_REUSED.getKey()));
+        Assert.assertEquals(1, first.logEntries().size());
+
+        Assert.assertEquals(call.context().spanId(), second.parentId());
+        Assert.assertEquals(2, second.tags().get(TracingInterceptor.ATTEMPT.getKey()));
+        Assert.assertEquals(200, second.tags().get(Tags.HTTP_STATUS.getKey()));
+        Assert.assertEquals(true, second.tags().get(TracingEventListener.CONNECTION_REUSED.getKey()));
+        Assert.assertEquals("http://localhost:" + mockWebServer.getPort() + "/redirect",
+                second.tags().get(Tags.HTTP_URL.getKey()));
+
+        RecordedRequest firstRequest = mockWebServer.takeRequest();
+        Assert.assertEquals(String.valueOf(first.context().spanId()), firstRequest.getHeader("spanid"));
+        Assert.assertEquals(1, firstRequest.getHeaders().values("spanid").size());
+        RecordedRequest secondRequest = mockWebServer.takeRequest();
+        Assert.assertEquals(String.valueOf(second.context().spanId()), secondRequest.getHeader("spanid"));
+    }
+
+    @Test
+    public void testError() throws IOException {
+        mockWebServer.close();
+        try {
+            okHttpClient.newCall(new Request.Builder()
+                    .url(mockWebServer.url("foo"))
+                    .build())
+                    .execute();
+            Assert.fail();
+        } catch (IOException ex) {
+        }
+
+        // connection failed before any network attempt
+        List<MockSpan> mockSpans = mockTracer.finishedSpans();
+        Assert.assertEquals(1, mockSpans.size());
+        Assert.assertEquals(true, mockSpans.get(0).tags().get(Tags.ERROR.getKey()));
+    }
+
+    @Test
+    public void testConnectionReusedByEventListener() throws IOException {
+        OkHttpClient client = okHttpClient.newBuilder()
+                .eventListenerFactory(TracingEventListener.FACTORY)
+                .build();
+        for (int i = 0; i < 3; i++) {
+            mockWebServer.enqueue(new MockResponse());
+            client.newCall(new Request.Builder()
+                    .url(mockWebServer.url("foo"))
+                    .build())
+                    .execute()
+                    .close();
+        }
+
+        // attempt and call span of each call
+        List<MockSpan> mockSpans = mockTracer.finishedSpans();
+        Assert.assertEquals(6, mockSpans.size());
+        Assert.assertEquals(false, mockSpans.get(0).tags().get(TracingEventListener.CONNECTION_REUSED.getKey()));
+        Assert.assertEquals(true, mockSpans.get(2).tags().get(TracingEventListener.CONNECTION_REUSED.getKey()));
+        Assert.assertEquals(true, mockSpans.get(4).tags().get(TracingEventListener.CONNECTION_REUSED.getKey()));
+    }
+
+    @Test
+    public void testConnectionUsesEvicted() {
+        ConnectionCache<AtomicInteger> connectionUses = new ConnectionCache<AtomicInteger>(1) {
+            @Override
+            AtomicInteger compute(Connection connection) {
+                return new AtomicInteger();
+            }
+        };
+        Connection first = new PeerHostnameResolverTest.SocketConnection(null);
+        Connection second = new PeerHostnameResolverTest.SocketConnection(null);
+
+        Assert.assertEquals(1, connectionUses.get(first).incrementAndGet());
+        Assert.assertEquals(2, connectionUses.get(first).incrementAndGet());
+        Assert.assertEquals(1, connectionUses.get(second).incrementAndGet());
+        // without the event listener a reused connection whose slot was taken is reported as new
+        Assert.assertEquals(1, connectionUses.get(first).incrementAndGet());
+    }
+}
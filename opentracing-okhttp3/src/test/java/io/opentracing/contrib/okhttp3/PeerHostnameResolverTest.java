@@ -0,0 +1,200 @@
+package io.opentracing.contrib.okhttp3;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import okhttp3.Connection;
+import okhttp3.Handshake;
+import okhttp3.Protocol;
+import okhttp3.Route;
+import org.awaitility.Awaitility;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class PeerHostnameResolverTest {
+
+    private static final Executor SAME_THREAD = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+
+    private ServerSocket serverSocket;
+    private Socket socket;
+
+    @Before
+    public void before() throws IOException {
+        serverSocket = new ServerSocket(0, 1, InetAddress.getLoopbackAddress());
+        // address without host name, as if the URL contained an IP address
+        socket = new Socket(InetAddress.getByAddress(new byte[] {127, 0, 0, 1}), serverSocket.getLocalPort());
+    }
+
+    @After
+    public void after() throws IOException {
+        socket.close();
+        serverSocket.close();
+    }
+
+    @Test
+    public void testNonBlockingReturnsLiteral() {
+        Assert.assertEquals("127.0.0.1", PeerHostnameResolver.NON_BLOCKING.hostname(new SocketConnection(socket)));
+    }
+
+    @Test
+    public void testCachingReverseLookup() throws IOException {
+        final int[] lookups = {0};
+        Executor countingExecutor = new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                lookups[0]++;
+                command.run();
+            }
+        };
+        CachingReverseLookupResolver resolver =
+                new CachingReverseLookupResolver(1, TimeUnit.HOURS, 10, countingExecutor);
+        String expected = InetAddress.getByAddress(new byte[] {127, 0, 0, 1}).getHostName();
+
+        Assert.assertEquals(expected, resolver.hostname(new SocketConnection(socket)));
+        Assert.assertEquals(expected, resolver.hostname(new SocketConnection(socket)));
+        Assert.assertEquals(1, lookups[0]);
+    }
+
+    @Test
+    public void testCachingReverseLookupReturnsLiteralUntilResolved() {
+        final Runnable[] pending = new Runnable[1];
+        CachingReverseLookupResolver resolver = new CachingReverseLookupResolver(1, TimeUnit.HOURS, 10,
+                new Executor() {
+                    @Override
+                    public void execute(Runnable command) {
+                        pending[0] = command;
+                    }
+                });
+
+        Assert.assertEquals("127.0.0.1", resolver.hostname(new SocketConnection(socket)));
+        pending[0].run();
+        Assert.assertNotEquals("127.0.0.1", resolver.hostname(new SocketConnection(socket)));
+    }
+
+    @Test
+    public void testCachingReverseLookupSaturated() throws Exception {
+        ThreadPoolExecutor executor = CachingReverseLookupResolver.defaultExecutor(1);
+        CachingReverseLookupResolver resolver = new CachingReverseLookupResolver(1, TimeUnit.HOURS, 10, executor);
+        final CountDownLatch released = new CountDownLatch(1);
+        Runnable blocked = new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    released.await();
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        };
+        executor.execute(blocked);
+        executor.execute(blocked);
+
+        // lookup is rejected
+        Assert.assertEquals("127.0.0.1", resolver.hostname(new SocketConnection(socket)));
+        released.countDown();
+        awaitCompleted(executor, 2);
+
+        // and made again once the executor has room
+        resolver.hostname(new SocketConnection(socket));
+        awaitCompleted(executor, 3);
+        Assert.assertNotEquals("127.0.0.1", resolver.hostname(new SocketConnection(socket)));
+        executor.shutdown();
+    }
+
+    @Test
+    public void testCachingReverseLookupBounded() {
+        CachingReverseLookupResolver resolver = new CachingReverseLookupResolver(1, TimeUnit.HOURS, 0, SAME_THREAD);
+        Assert.assertEquals("127.0.0.1", resolver.hostname(new SocketConnection(socket)));
+    }
+
+    @Test
+    public void testIpv6Literal() throws IOException {
+        InetAddress loopback = InetAddress.getByName("::1");
+        Assert.assertTrue(CachingReverseLookupResolver.isIpLiteral("::1", loopback));
+        Assert.assertTrue(CachingReverseLookupResolver.isIpLiteral("127.0.0.1",
+                InetAddress.getByAddress(new byte[] {127, 0, 0, 1})));
+        Assert.assertFalse(CachingReverseLookupResolver.isIpLiteral("localhost", loopback));
+    }
+
+    @Test
+    public void testCachingReverseLookupEvictsRejected() throws Exception {
+        final boolean[] rejecting = {true};
+        final int[] lookups = {0};
+        CachingReverseLookupResolver resolver = new CachingReverseLookupResolver(1, TimeUnit.MILLISECONDS, 1,
+                new Executor() {
+                    @Override
+                    public void execute(Runnable command) {
+                        if (rejecting[0]) {
+                            throw new RejectedExecutionException();
+                        }
+                        lookups[0]++;
+                        command.run();
+                    }
+                });
+        Assert.assertEquals("127.0.0.1", resolver.hostname(new SocketConnection(socket)));
+
+        // the rejected address does not pin the only entry
+        rejecting[0] = false;
+        Thread.sleep(5);
+        InetAddress otherAddress = InetAddress.getByAddress(new byte[] {127, 0, 0, 2});
+        try (ServerSocket otherServerSocket = new ServerSocket(0, 1, otherAddress);
+             Socket otherSocket = new Socket(otherServerSocket.getInetAddress(), otherServerSocket.getLocalPort())) {
+            resolver.hostname(new SocketConnection(otherSocket));
+        }
+        Assert.assertEquals(1, lookups[0]);
+    }
+
+    private static void awaitCompleted(final ThreadPoolExecutor executor, final long tasks) {
+        Awaitility.await().until(new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                return executor.getCompletedTaskCount() >= tasks;
+            }
+        });
+    }
+
+    /**
+     * Connection without route, backed by a plain socket.
+     */
+    static class SocketConnection implements Connection {
+        private final Socket socket;
+
+        SocketConnection(Socket socket) {
+            this.socket = socket;
+        }
+
+        @Override
+        public Route route() {
+            return null;
+        }
+
+        @Override
+        public Socket socket() {
+            return socket;
+        }
+
+        @Override
+        public Handshake handshake() {
+            return null;
+        }
+
+        @Override
+        public Protocol protocol() {
+            return Protocol.HTTP_1_1;
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package io.opentracing.contrib.okhttp3;
+
+import io.opentracing.mock.MockSpan;
+import io.opentracing.mock.MockTracer;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class RouteTemplateResolverTest {
+
+    private RouteTemplateResolver resolver = new RouteTemplateResolver(
+            "/users/{id}",
+            "/users/{id}/orders",
+            "/users/me/orders",
+            "users/{id}/orders/{orderId}",
+            "/",
+            "/{tenant}/settings");
+
+    @Test
+    public void testTemplates() {
+        Assert.assertEquals("GET /users/{id}", operationName("GET", "/users/42"));
+        Assert.assertEquals("GET /users/{id}", operationName("GET", "/users/42/"));
+        Assert.assertEquals("DELETE /users/{id}/orders", operationName("DELETE", "/users/42/orders"));
+        Assert.assertEquals("GET /users/me/orders", operationName("GET", "/users/me/orders"));
+        Assert.assertEquals("GET /users/{id}/orders/{orderId}", operationName("GET", "/users/me/orders/7"));
+        Assert.assertEquals("GET /users/{id}/orders/{orderId}", operationName("GET", "/users/a%2Fb/orders/7?q=1"));
+        Assert.assertEquals("GET /", operationName("GET", "/"));
+        Assert.assertEquals("GET /{tenant}/settings", operationName("GET", "/acme/settings"));
+        Assert.assertEquals("GET /users/{id}", operationName("GET", "/users/settings"));
+        Assert.assertSame(operationName("GET", "/users/1"), operationName("GET", "/users/2"));
+    }
+
+    @Test
+    public void testNotMatched() {
+        Assert.assertEquals("GET", operationName("GET", "/users"));
+        Assert.assertEquals("GET", operationName("GET", "/users/42/orders/7/items"));
+        Assert.assertEquals("DELETE", operationName("DELETE", "/users//orders"));
+        Assert.assertEquals("GET", operationName("GET", "/other"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testAmbiguousTemplates() {
+        new RouteTemplateResolver("/users/{id}", "/users/{name}");
+    }
+
+    @Test
+    public void testOperationName() throws IOException {
+        MockTracer mockTracer = new MockTracer();
+        TracingInterceptor tracingInterceptor = new TracingInterceptor(mockTracer,
+                Collections.singletonList(SpanDecorator.STANDARD_TAGS), Sampler.ALWAYS, resolver);
+        OkHttpClient client = new OkHttpClient.Builder()
+                .addInterceptor(tracingInterceptor)
+                .addNetworkInterceptor(tracingInterceptor)
+                .build();
+
+        MockWebServer mockWebServer = new MockWebServer();
+        mockWebServer.enqueue(new MockResponse().setResponseCode(200));
+        mockWebServer.start();
+        client.newCall(new Request.Builder()
+                .url(mockWebServer.url("/users/42/orders"))
+                .build())
+                .execute()
+                .close();
+        mockWebServer.close();
+
+        List<MockSpan> mockSpans = mockTracer.finishedSpans();
+        Assert.assertEquals(1, mockSpans.size());
+        Assert.assertEquals("GET /users/{id}/orders", mockSpans.get(0).operationName());
+    }
+
+    private String operationName(String method, String path) {
+        return resolver.operationName(new Request.Builder()
+                .url("http://localhost" + path)
+                .method(method, null)
+                .build());
+    }
+}
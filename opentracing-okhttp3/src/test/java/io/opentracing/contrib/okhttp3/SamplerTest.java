@@ -0,0 +1,60 @@
+package io.opentracing.contrib.okhttp3;
+
+import okhttp3.Request;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class SamplerTest {
+
+    private static final Request FOO_GET = new Request.Builder().url("http://foo/").get().build();
+    private static final Request FOO_DELETE = new Request.Builder().url("http://foo/").delete().build();
+    private static final Request BAR_GET = new Request.Builder().url("http://bar/").get().build();
+
+    @Test
+    public void testProbabilisticBounds() {
+        Sampler never = new ProbabilisticSampler(0);
+        Sampler always = new ProbabilisticSampler(1);
+        for (int i = 0; i < 100; i++) {
+            Assert.assertFalse(never.sample(FOO_GET));
+            Assert.assertTrue(always.sample(FOO_GET));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testProbabilisticInvalidRatio() {
+        new ProbabilisticSampler(1.5);
+    }
+
+    @Test
+    public void testRateLimitingPerHostAndMethod() {
+        Sampler sampler = new RateLimitingSampler(0.001, 1, 10);
+
+        Assert.assertTrue(sampler.sample(FOO_GET));
+        Assert.assertFalse(sampler.sample(FOO_GET));
+        Assert.assertTrue(sampler.sample(FOO_DELETE));
+        Assert.assertFalse(sampler.sample(FOO_DELETE));
+        Assert.assertTrue(sampler.sample(BAR_GET));
+        Assert.assertFalse(sampler.sample(BAR_GET));
+    }
+
+    @Test
+    public void testRateLimitingHostsOverLimitShareBucket() {
+        Sampler sampler = new RateLimitingSampler(0.001, 1, 1);
+
+        Assert.assertTrue(sampler.sample(FOO_GET));
+        Assert.assertTrue(sampler.sample(BAR_GET));
+        Assert.assertFalse(sampler.sample(new Request.Builder().url("http://baz/").get().build()));
+    }
+
+    @Test
+    public void testTokenBucketRefill() {
+        RateLimitingSampler.TokenBucket bucket = new RateLimitingSampler.TokenBucket(2, 2, 0);
+
+        Assert.assertTrue(bucket.tryAcquire(0));
+        Assert.assertTrue(bucket.tryAcquire(0));
+        Assert.assertFalse(bucket.tryAcquire(0));
+        // 2 credits per second, half a second refills one
+        Assert.assertTrue(bucket.tryAcquire(500_000_000L));
+        Assert.assertFalse(bucket.tryAcquire(500_000_000L));
+    }
+}
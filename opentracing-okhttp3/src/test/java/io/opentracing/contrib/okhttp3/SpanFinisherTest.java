@@ -0,0 +1,290 @@
+package io.opentracing.contrib.okhttp3;
+
+import io.opentracing.Span;
+import io.opentracing.mock.MockSpan;
+import io.opentracing.mock.MockTracer;
+import io.opentracing.tag.Tags;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import okhttp3.Connection;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class SpanFinisherTest {
+
+    private MockTracer mockTracer = new MockTracer();
+    private MockWebServer mockWebServer = new MockWebServer();
+    private CountDownLatch decoratorReleased = new CountDownLatch(1);
+
+    @Before
+    public void before() throws IOException {
+        mockWebServer.start();
+    }
+
+    @After
+    public void after() throws IOException {
+        decoratorReleased.countDown();
+        mockWebServer.close();
+    }
+
+    @Test
+    public void testFinishedByWorker() throws Exception {
+        SpanFinisher spanFinisher = new SpanFinisher.Builder()
+                .maxDelay(10, TimeUnit.MILLISECONDS)
+                .shutdownHook(false)
+                .build();
+        BlockingDecorator blockingDecorator = new BlockingDecorator();
+        OkHttpClient client = client(spanFinisher, blockingDecorator);
+        mockWebServer.enqueue(new MockResponse().setResponseCode(202).setBody("body"));
+
+        // the response is returned while the decorator is blocked
+        Response response = call(client);
+        Assert.assertEquals("body", response.body().string());
+        Assert.assertTrue(mockTracer.finishedSpans().isEmpty());
+
+        decoratorReleased.countDown();
+        waitForSpans(1);
+        MockSpan mockSpan = mockTracer.finishedSpans().get(0);
+        Assert.assertEquals(202, mockSpan.tags().get(Tags.HTTP_STATUS.getKey()));
+        Assert.assertEquals("OkHttp Span Finisher", blockingDecorator.thread);
+        Assert.assertEquals(4, blockingDecorator.contentLength);
+        Assert.assertTrue(mockSpan.finishMicros() >= mockSpan.startMicros());
+        Assert.assertEquals(1, spanFinisher.finished());
+        Assert.assertEquals(0, spanFinisher.dropped());
+        Assert.assertTrue(spanFinisher.shutdown(1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testError() throws Exception {
+        SpanFinisher spanFinisher = new SpanFinisher.Builder()
+                .batchSize(1)
+                .shutdownHook(false)
+                .build();
+        OkHttpClient client = client(spanFinisher, SpanDecorator.STANDARD_TAGS);
+        mockWebServer.shutdown();
+
+        try {
+            call(client);
+            Assert.fail();
+        } catch (IOException ex) {
+        }
+
+        waitForSpans(1);
+        Assert.assertEquals(true, mockTracer.finishedSpans().get(0).tags().get(Tags.ERROR.getKey()));
+        Assert.assertTrue(spanFinisher.shutdown(1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testOverflow() throws Exception {
+        SpanFinisher spanFinisher = new SpanFinisher.Builder()
+                .capacity(2)
+                .batchSize(1)
+                .shutdownHook(false)
+                .build();
+        OkHttpClient client = client(spanFinisher, new BlockingDecorator());
+        for (int i = 0; i < 5; i++) {
+            mockWebServer.enqueue(new MockResponse());
+        }
+
+        // the worker blocks on the first span, two are queued, the rest is dropped
+        for (int i = 0; i < 5; i++) {
+            call(client).close();
+            if (i == 0) {
+                while (spanFinisher.pending() > 0) {
+                    Thread.sleep(1);
+                }
+            }
+        }
+        Assert.assertEquals(2, spanFinisher.dropped());
+        Assert.assertEquals(2, spanFinisher.pending());
+
+        decoratorReleased.countDown();
+        Assert.assertTrue(spanFinisher.shutdown(1, TimeUnit.SECONDS));
+        Assert.assertEquals(3, mockTracer.finishedSpans().size());
+        Assert.assertEquals(3, spanFinisher.finished());
+    }
+
+    @Test
+    public void testAfterShutdown() throws Exception {
+        SpanFinisher spanFinisher = new SpanFinisher.Builder()
+                .shutdownHook(false)
+                .build();
+        BlockingDecorator blockingDecorator = new BlockingDecorator();
+        decoratorReleased.countDown();
+        OkHttpClient client = client(spanFinisher, blockingDecorator);
+        mockWebServer.enqueue(new MockResponse());
+
+        Assert.assertTrue(spanFinisher.shutdown(1, TimeUnit.SECONDS));
+        call(client).close();
+        Assert.assertEquals(1, mockTracer.finishedSpans().size());
+        Assert.assertEquals(Thread.currentThread().getName(), blockingDecorator.thread);
+    }
+
+    @Test
+    public void testFlushOnShutdown() throws Exception {
+        SpanFinisher spanFinisher = new SpanFinisher.Builder()
+                .batchSize(100)
+                .maxDelay(1, TimeUnit.HOURS)
+                .shutdownHook(false)
+                .build();
+        OkHttpClient client = client(spanFinisher, SpanDecorator.STANDARD_TAGS);
+        for (int i = 0; i < 3; i++) {
+            mockWebServer.enqueue(new MockResponse());
+            call(client).close();
+        }
+        Assert.assertTrue(mockTracer.finishedSpans().isEmpty());
+        Assert.assertEquals(3, spanFinisher.pending());
+
+        Assert.assertTrue(spanFinisher.shutdown(1, TimeUnit.SECONDS));
+        Assert.assertEquals(3, mockTracer.finishedSpans().size());
+        Assert.assertEquals(0, spanFinisher.pending());
+    }
+
+    @Test
+    public void testCallThreadDecorator() throws Exception {
+        SpanFinisher spanFinisher = new SpanFinisher.Builder()
+                .capacity(2)
+                .batchSize(1)
+                .shutdownHook(false)
+                .build();
+        CallThreadRecordingDecorator callThreadDecorator = new CallThreadRecordingDecorator();
+        TracingInterceptor tracingInterceptor = new TracingInterceptor.Builder(mockTracer)
+                .decorators(Arrays.asList(SpanDecorator.STANDARD_TAGS, new BlockingDecorator(), callThreadDecorator))
+                .spanFinisher(spanFinisher)
+                .build();
+        OkHttpClient client = new OkHttpClient.Builder()
+                .addInterceptor(tracingInterceptor)
+                .addNetworkInterceptor(tracingInterceptor)
+                .build();
+        for (int i = 0; i < 5; i++) {
+            mockWebServer.enqueue(new MockResponse().setBody("body"));
+        }
+
+        // invoked before the response is returned, also for dropped spans
+        for (int i = 0; i < 5; i++) {
+            call(client).close();
+            Assert.assertEquals(Thread.currentThread().getName(), callThreadDecorator.thread);
+            Assert.assertEquals(4, callThreadDecorator.contentLength);
+            Assert.assertEquals(i + 1, callThreadDecorator.responses);
+            if (i == 0) {
+                while (spanFinisher.pending() > 0) {
+                    Thread.sleep(1);
+                }
+            }
+        }
+        Assert.assertEquals(2, spanFinisher.dropped());
+        decoratorReleased.countDown();
+        Assert.assertTrue(spanFinisher.shutdown(1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testWorkerSurvivesError() throws Exception {
+        SpanFinisher spanFinisher = new SpanFinisher.Builder()
+                .batchSize(1)
+                .shutdownHook(false)
+                .build();
+        OkHttpClient client = client(spanFinisher, new BlockingDecorator() {
+            private boolean failed;
+
+            @Override
+            public void onResponse(Response response, Span span) {
+                if (!failed) {
+                    failed = true;
+                    throw new StackOverflowError();
+                }
+            }
+        });
+        mockWebServer.enqueue(new MockResponse());
+        mockWebServer.enqueue(new MockResponse());
+
+        call(client).close();
+        call(client).close();
+        waitForSpans(1);
+        Assert.assertEquals(1, spanFinisher.failures());
+        Assert.assertEquals(1, spanFinisher.finished());
+        Assert.assertTrue(spanFinisher.shutdown(1, TimeUnit.SECONDS));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testTraceBodies() {
+        new TracingInterceptor.Builder(mockTracer)
+                .spanFinisher(new SpanFinisher.Builder().shutdownHook(false).build())
+                .traceBodies(true)
+                .build();
+    }
+
+    private OkHttpClient client(SpanFinisher spanFinisher, SpanDecorator decorator) {
+        TracingInterceptor tracingInterceptor = new TracingInterceptor.Builder(mockTracer)
+                .decorators(Arrays.asList(SpanDecorator.STANDARD_TAGS, decorator))
+                .spanFinisher(spanFinisher)
+                .build();
+        return new OkHttpClient.Builder()
+                .addInterceptor(tracingInterceptor)
+                .addNetworkInterceptor(tracingInterceptor)
+                .build();
+    }
+
+    private Response call(OkHttpClient client) throws IOException {
+        return client.newCall(new Request.Builder()
+                .url(mockWebServer.url("foo"))
+                .build())
+                .execute();
+    }
+
+    private void waitForSpans(int spans) throws InterruptedException {
+        for (int i = 0; i < 500 && mockTracer.finishedSpans().size() < spans; i++) {
+            Thread.sleep(10);
+        }
+        List<MockSpan> mockSpans = mockTracer.finishedSpans();
+        Assert.assertEquals(spans, mockSpans.size());
+    }
+
+    private class BlockingDecorator implements SpanDecorator {
+        volatile String thread;
+        volatile long contentLength;
+
+        @Override
+        public void onRequest(Request request, Span span) {
+        }
+
+        @Override
+        public void onResponse(Response response, Span span) {
+            thread = Thread.currentThread().getName();
+            contentLength = response.body().contentLength();
+            try {
+                decoratorReleased.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        @Override
+        public void onError(Throwable throwable, Span span) {
+        }
+
+        @Override
+        public void onNetworkResponse(Connection connection, Response response, Span span) {
+        }
+    }
+
+    private class CallThreadRecordingDecorator extends BlockingDecorator implements CallThreadDecorator {
+        private int responses;
+
+        @Override
+        public void onResponse(Response response, Span span) {
+            thread = Thread.currentThread().getName();
+            contentLength = response.body().contentLength();
+            responses++;
+        }
+    }
+}
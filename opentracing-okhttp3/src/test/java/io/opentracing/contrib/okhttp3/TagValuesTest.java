@@ -0,0 +1,28 @@
+package io.opentracing.contrib.okhttp3;
+
+import java.net.Inet4Address;
+import java.net.InetAddress;
+import java.nio.ByteBuffer;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TagValuesTest {
+
+    @Test
+    public void testIpv4ToInt() throws Exception {
+        for (String address: new String[] {"127.0.0.1", "10.0.0.255", "192.168.1.1", "255.255.255.255", "0.0.0.0"}) {
+            Inet4Address inetAddress = (Inet4Address) InetAddress.getByName(address);
+            Assert.assertEquals(ByteBuffer.wrap(inetAddress.getAddress()).getInt(), TagValues.ipv4ToInt(inetAddress));
+            Assert.assertEquals(TracingInterceptorTest.ipv4ToInt(address), TagValues.ipv4ToInt(inetAddress));
+        }
+    }
+
+    @Test
+    public void testStatusCode() {
+        Assert.assertSame(TagValues.statusCode(200), TagValues.statusCode(200));
+        Assert.assertSame(TagValues.statusCode(599), TagValues.statusCode(599));
+        Assert.assertEquals(Integer.valueOf(100), TagValues.statusCode(100));
+        Assert.assertEquals(Integer.valueOf(99), TagValues.statusCode(99));
+        Assert.assertEquals(Integer.valueOf(600), TagValues.statusCode(600));
+    }
+}
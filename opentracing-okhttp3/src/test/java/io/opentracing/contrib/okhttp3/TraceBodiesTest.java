@@ -0,0 +1,130 @@
+package io.opentracing.contrib.okhttp3;
+
+import io.opentracing.mock.MockSpan;
+import io.opentracing.mock.MockTracer;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.Callable;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import org.awaitility.Awaitility;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TraceBodiesTest {
+
+    private MockTracer mockTracer = new MockTracer();
+    private MockWebServer mockWebServer = new MockWebServer();
+    private OkHttpClient okHttpClient;
+
+    public TraceBodiesTest() {
+        TracingInterceptor tracingInterceptor = new TracingInterceptor.Builder(mockTracer)
+                .traceBodies(true)
+                .build();
+        okHttpClient = new OkHttpClient.Builder()
+                .addInterceptor(tracingInterceptor)
+                .addNetworkInterceptor(tracingInterceptor)
+                .build();
+    }
+
+    @Before
+    public void before() throws IOException {
+        mockWebServer.start();
+    }
+
+    @After
+    public void after() throws IOException {
+        mockWebServer.close();
+    }
+
+    @Test
+    public void testFinishOnBodyExhausted() throws IOException {
+        mockWebServer.enqueue(new MockResponse()
+                .setBody("response body"));
+
+        Response response = okHttpClient.newCall(new Request.Builder()
+                .url(mockWebServer.url("foo"))
+                .post(RequestBody.create(MediaType.parse("text/plain"), "request"))
+                .build())
+                .execute();
+        Assert.assertEquals(0, mockTracer.finishedSpans().size());
+        Assert.assertEquals("response body", response.body().string());
+
+        List<MockSpan> mockSpans = mockTracer.finishedSpans();
+        Assert.assertEquals(1, mockSpans.size());
+        Assert.assertEquals(0, mockSpans.get(0).generatedErrors().size());
+        Assert.assertEquals(7L, mockSpans.get(0).tags().get(BodyTags.REQUEST_BYTES));
+        Assert.assertNotNull(mockSpans.get(0).tags().get(BodyTags.REQUEST_BODY_DURATION.getKey()));
+        Assert.assertEquals(13L, mockSpans.get(0).tags().get(BodyTags.RESPONSE_BYTES));
+        Assert.assertNotNull(mockSpans.get(0).tags().get(BodyTags.RESPONSE_BODY_DURATION.getKey()));
+        Assert.assertNull(mockSpans.get(0).tags().get(BodyTags.ABANDONED.getKey()));
+    }
+
+    @Test
+    public void testFinishOnBodyClose() throws IOException {
+        mockWebServer.enqueue(new MockResponse()
+                .setBody("response body"));
+
+        Response response = okHttpClient.newCall(new Request.Builder()
+                .url(mockWebServer.url("foo"))
+                .build())
+                .execute();
+        response.body().source().readByte();
+        Assert.assertEquals(0, mockTracer.finishedSpans().size());
+        response.close();
+        response.close();
+
+        List<MockSpan> mockSpans = mockTracer.finishedSpans();
+        Assert.assertEquals(1, mockSpans.size());
+        Assert.assertEquals(0, mockSpans.get(0).generatedErrors().size());
+        Assert.assertNull(mockSpans.get(0).tags().get(BodyTags.REQUEST_BYTES));
+        Assert.assertTrue((Long) mockSpans.get(0).tags().get(BodyTags.RESPONSE_BYTES) > 0);
+    }
+
+    @Test
+    public void testEmptyBody() throws IOException {
+        mockWebServer.enqueue(new MockResponse()
+                .setResponseCode(204));
+
+        okHttpClient.newCall(new Request.Builder()
+                .url(mockWebServer.url("foo"))
+                .build())
+                .execute();
+
+        Assert.assertEquals(1, mockTracer.finishedSpans().size());
+    }
+
+    @Test
+    public void testAbandonedBody() throws IOException {
+        mockWebServer.enqueue(new MockResponse()
+                .setBody("response body"));
+        executeAndAbandon();
+
+        Awaitility.await().until(new Callable<Boolean>() {
+            @Override
+            public Boolean call() throws Exception {
+                System.gc();
+                TracingResponseBody.reapAbandoned();
+                return mockTracer.finishedSpans().size() == 1;
+            }
+        });
+        MockSpan mockSpan = mockTracer.finishedSpans().get(0);
+        Assert.assertEquals(true, mockSpan.tags().get(BodyTags.ABANDONED.getKey()));
+        Assert.assertEquals(0L, mockSpan.tags().get(BodyTags.RESPONSE_BYTES));
+        Assert.assertTrue(mockSpan.finishMicros() >= mockSpan.startMicros());
+    }
+
+    private void executeAndAbandon() throws IOException {
+        okHttpClient.newCall(new Request.Builder()
+                .url(mockWebServer.url("foo"))
+                .build())
+                .execute();
+    }
+}
@@ -0,0 +1,99 @@
+package io.opentracing.contrib.okhttp3;
+
+import io.opentracing.mock.MockSpan;
+import io.opentracing.mock.MockTracer;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TracingEventListenerTest {
+
+    private MockTracer mockTracer = new MockTracer();
+    private MockWebServer mockWebServer = new MockWebServer();
+    private OkHttpClient okHttpClient = TracingInterceptor.addTracing(new OkHttpClient.Builder(), mockTracer,
+            Collections.singletonList(SpanDecorator.STANDARD_TAGS))
+            .eventListenerFactory(TracingEventListener.FACTORY)
+            .build();
+
+    @Before
+    public void before() throws IOException {
+        mockWebServer.start();
+    }
+
+    @After
+    public void after() throws IOException {
+        mockWebServer.close();
+    }
+
+    @Test
+    public void testConnectionPhases() throws IOException {
+        mockWebServer.enqueue(new MockResponse().setResponseCode(200));
+        mockWebServer.enqueue(new MockResponse().setResponseCode(200));
+        for (int i = 0; i < 2; i++) {
+            okHttpClient.newCall(new Request.Builder()
+                    .url(mockWebServer.url("foo"))
+                    .build())
+                    .execute()
+                    .close();
+        }
+
+        List<MockSpan> mockSpans = mockTracer.finishedSpans();
+        Assert.assertEquals(2, mockSpans.size());
+
+        Map<String, Object> newConnection = mockSpans.get(0).tags();
+        Assert.assertEquals(false, newConnection.get(TracingEventListener.CONNECTION_REUSED.getKey()));
+        Assert.assertTrue(newConnection.get(TracingEventListener.DNS_DURATION.getKey()) instanceof Integer);
+        Assert.assertTrue(newConnection.get(TracingEventListener.CONNECT_DURATION.getKey()) instanceof Integer);
+        Assert.assertNull(newConnection.get(TracingEventListener.TLS_DURATION.getKey()));
+        Assert.assertTrue(newConnection.get(TracingEventListener.REQUEST_DURATION.getKey()) instanceof Integer);
+        Assert.assertTrue(newConnection.get(TracingEventListener.TIME_TO_FIRST_BYTE.getKey()) instanceof Integer);
+
+        Map<String, Object> pooledConnection = mockSpans.get(1).tags();
+        Assert.assertEquals(true, pooledConnection.get(TracingEventListener.CONNECTION_REUSED.getKey()));
+        Assert.assertNull(pooledConnection.get(TracingEventListener.DNS_DURATION.getKey()));
+        Assert.assertNull(pooledConnection.get(TracingEventListener.CONNECT_DURATION.getKey()));
+        Assert.assertTrue(pooledConnection.get(TracingEventListener.TIME_TO_FIRST_BYTE.getKey()) instanceof Integer);
+    }
+
+    @Test
+    public void testTimeToFirstByte() throws IOException {
+        mockWebServer.enqueue(new MockResponse()
+                .setHeadersDelay(200, TimeUnit.MILLISECONDS));
+        okHttpClient.newCall(new Request.Builder()
+                .url(mockWebServer.url("foo"))
+                .build())
+                .execute()
+                .close();
+
+        int ttfbMicros = (Integer) mockTracer.finishedSpans().get(0).tags()
+                .get(TracingEventListener.TIME_TO_FIRST_BYTE.getKey());
+        Assert.assertTrue(ttfbMicros >= TimeUnit.MILLISECONDS.toMicros(200));
+    }
+
+    @Test
+    public void testUnsampled() throws IOException {
+        OkHttpClient client = TracingInterceptor.addTracing(new OkHttpClient.Builder(), mockTracer,
+                Collections.singletonList(SpanDecorator.STANDARD_TAGS), new ProbabilisticSampler(0))
+                .eventListenerFactory(TracingEventListener.FACTORY)
+                .build();
+
+        mockWebServer.enqueue(new MockResponse().setResponseCode(200));
+        client.newCall(new Request.Builder()
+                .url(mockWebServer.url("foo"))
+                .build())
+                .execute()
+                .close();
+
+        Assert.assertEquals(0, mockTracer.finishedSpans().size());
+    }
+}
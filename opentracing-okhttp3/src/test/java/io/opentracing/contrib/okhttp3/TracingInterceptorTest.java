@@ -16,6 +16,7 @@ import okhttp3.Request;
 import okhttp3.Response;
 import okhttp3.mockwebserver.MockResponse;
 import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
 import org.awaitility.Awaitility;
 import org.hamcrest.core.IsEqual;
 import org.junit.After;
@@ -120,6 +121,26 @@ public class TracingInterceptorTest {
         Assert.assertEquals(0, mockSpan.logEntries().size());
     }
 
+    @Test
+    public void testIpAddressPeerHostname() throws IOException {
+        {
+            mockWebServer.enqueue(new MockResponse()
+                    .setResponseCode(200));
+
+            okHttpClient.newCall(new Request.Builder()
+                    .url("http://127.0.0.1:" + mockWebServer.getPort() + "/foo")
+                    .build())
+                    .execute();
+        }
+
+        List<MockSpan> mockSpans = mockTracer.finishedSpans();
+        Assert.assertEquals(1, mockSpans.size());
+        assertOnErrors(mockSpans);
+        // no reverse DNS lookup
+        Assert.assertEquals("127.0.0.1", mockSpans.get(0).tags().get(Tags.PEER_HOSTNAME.getKey()));
+        Assert.assertEquals(ipv4ToInt("127.0.0.1"), mockSpans.get(0).tags().get(Tags.PEER_HOST_IPV4.getKey()));
+    }
+
     @Test
     public void testUnknownHostException() throws IOException {
         {
@@ -245,6 +266,75 @@ public class TracingInterceptorTest {
                 mockSpan.logEntries().get(0).fields().get(Tags.PEER_HOST_IPV4.getKey()));
     }
 
+    @Test
+    public void testInjectReplacesExistingHeaders() throws Exception {
+        MockTracer tracer = new MockTracer(MockTracer.Propagator.TEXT_MAP);
+        OkHttpClient client = TracingInterceptor.addTracing(new OkHttpClient.Builder(), tracer,
+                Arrays.asList(SpanDecorator.STANDARD_TAGS))
+                .build();
+        {
+            mockWebServer.enqueue(new MockResponse().setResponseCode(200));
+
+            client.newCall(new Request.Builder()
+                    .url(mockWebServer.url("foo"))
+                    .header("traceid", "1")
+                    .build())
+                    .execute();
+        }
+
+        List<MockSpan> mockSpans = tracer.finishedSpans();
+        Assert.assertEquals(1, mockSpans.size());
+        RecordedRequest recordedRequest = mockWebServer.takeRequest();
+        Assert.assertEquals(Arrays.asList(String.valueOf(mockSpans.get(0).context().traceId())),
+                recordedRequest.getHeaders().values("traceid"));
+        Assert.assertEquals(Arrays.asList(String.valueOf(mockSpans.get(0).context().spanId())),
+                recordedRequest.getHeaders().values("spanid"));
+    }
+
+    @Test
+    public void testUnsampled() throws Exception {
+        MockTracer tracer = new MockTracer(MockTracer.Propagator.TEXT_MAP);
+        OkHttpClient client = TracingInterceptor.addTracing(new OkHttpClient.Builder(), tracer,
+                Arrays.asList(SpanDecorator.STANDARD_TAGS), new ProbabilisticSampler(0))
+                .build();
+        {
+            mockWebServer.enqueue(new MockResponse().setResponseCode(200));
+
+            client.newCall(new Request.Builder()
+                    .url(mockWebServer.url("foo"))
+                    .build())
+                    .execute();
+        }
+
+        Assert.assertEquals(0, tracer.finishedSpans().size());
+        RecordedRequest recordedRequest = mockWebServer.takeRequest();
+        Assert.assertNull(recordedRequest.getHeader("traceid"));
+        Assert.assertNull(recordedRequest.getHeader("spanid"));
+    }
+
+    @Test
+    public void testUnsampledPropagatesParent() throws Exception {
+        MockTracer tracer = new MockTracer(MockTracer.Propagator.TEXT_MAP);
+        OkHttpClient client = TracingInterceptor.addTracing(new OkHttpClient.Builder(), tracer,
+                Arrays.asList(SpanDecorator.STANDARD_TAGS), new ProbabilisticSampler(0))
+                .build();
+        MockSpan parent = tracer.buildSpan("parent").start();
+        {
+            mockWebServer.enqueue(new MockResponse().setResponseCode(200));
+
+            client.newCall(new Request.Builder()
+                    .url(mockWebServer.url("foo"))
+                    .tag(new TagWrapper(parent.context()))
+                    .build())
+                    .execute();
+        }
+
+        Assert.assertEquals(0, tracer.finishedSpans().size());
+        RecordedRequest recordedRequest = mockWebServer.takeRequest();
+        Assert.assertEquals(String.valueOf(parent.context().traceId()), recordedRequest.getHeader("traceid"));
+        Assert.assertEquals(String.valueOf(parent.context().spanId()), recordedRequest.getHeader("spanid"));
+    }
+
     private Callable<Integer> reportedSpansSize() {
         return new Callable<Integer>() {
             @Override
@@ -0,0 +1,179 @@
+package io.opentracing.contrib.okhttp3;
+
+import io.opentracing.mock.MockSpan;
+import io.opentracing.mock.MockTracer;
+import io.opentracing.tag.Tags;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.WebSocket;
+import okhttp3.WebSocketListener;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import okio.ByteString;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TracingWebSocketFactoryTest {
+
+    private MockTracer mockTracer = new MockTracer(MockTracer.Propagator.TEXT_MAP);
+    private MockWebServer mockWebServer = new MockWebServer();
+    private OkHttpClient client = new OkHttpClient();
+
+    @Before
+    public void before() throws IOException {
+        mockWebServer.start();
+    }
+
+    @After
+    public void after() throws IOException {
+        mockWebServer.close();
+    }
+
+    @Test
+    public void testMessagesAndClose() throws Exception {
+        mockWebServer.enqueue(new MockResponse().withWebSocketUpgrade(new EchoListener()));
+        WebSocket.Factory factory = new TracingWebSocketFactory.Builder(client, mockTracer)
+                .flushInterval(0, TimeUnit.SECONDS)
+                .build();
+
+        final CountDownLatch echoed = new CountDownLatch(2);
+        CountDownLatch closed = new CountDownLatch(1);
+        WebSocket webSocket = factory.newWebSocket(request(), new ClosingListener(closed) {
+            @Override
+            public void onMessage(WebSocket webSocket, String text) {
+                echoed.countDown();
+            }
+
+            @Override
+            public void onMessage(WebSocket webSocket, ByteString bytes) {
+                echoed.countDown();
+            }
+        });
+        Assert.assertTrue(webSocket.send("hello"));
+        Assert.assertTrue(webSocket.send(ByteString.of(new byte[10])));
+        Assert.assertTrue(echoed.await(10, TimeUnit.SECONDS));
+        webSocket.close(1000, "bye");
+        Assert.assertTrue(closed.await(10, TimeUnit.SECONDS));
+
+        MockSpan mockSpan = webSocketSpan();
+        Assert.assertEquals(101, mockSpan.tags().get(Tags.HTTP_STATUS.getKey()));
+        Assert.assertEquals(1000, mockSpan.tags().get(TracingWebSocketFactory.CLOSE_CODE.getKey()));
+        Assert.assertEquals("bye", mockSpan.tags().get(TracingWebSocketFactory.CLOSE_REASON.getKey()));
+        Assert.assertEquals(2L, mockSpan.tags().get(TracingWebSocketFactory.MESSAGES_SENT));
+        Assert.assertEquals(2L, mockSpan.tags().get(TracingWebSocketFactory.MESSAGES_RECEIVED));
+        Assert.assertEquals(15L, mockSpan.tags().get(TracingWebSocketFactory.BYTES_SENT));
+        Assert.assertEquals(15L, mockSpan.tags().get(TracingWebSocketFactory.BYTES_RECEIVED));
+        Assert.assertNull(mockSpan.tags().get(Tags.ERROR.getKey()));
+
+        // one log for the whole socket, not one per message
+        List<MockSpan.LogEntry> logEntries = mockSpan.logEntries();
+        Assert.assertEquals(1, logEntries.size());
+        Assert.assertEquals(TracingWebSocketFactory.STATS_EVENT, logEntries.get(0).fields().get("event"));
+        Assert.assertEquals(2L, logEntries.get(0).fields().get(TracingWebSocketFactory.MESSAGES_SENT));
+
+        RecordedRequest recordedRequest = mockWebServer.takeRequest();
+        Assert.assertEquals(String.valueOf(mockSpan.context().spanId()), recordedRequest.getHeader("spanid"));
+    }
+
+    @Test
+    public void testPeriodicFlush() throws Exception {
+        mockWebServer.enqueue(new MockResponse().withWebSocketUpgrade(new EchoListener()));
+        WebSocket.Factory factory = new TracingWebSocketFactory.Builder(client, mockTracer)
+                .flushInterval(50, TimeUnit.MILLISECONDS)
+                .build();
+
+        CountDownLatch closed = new CountDownLatch(1);
+        WebSocket webSocket = factory.newWebSocket(request(), new ClosingListener(closed));
+        webSocket.send("first");
+        Thread.sleep(300);
+        webSocket.send("second");
+        webSocket.close(1000, null);
+        Assert.assertTrue(closed.await(10, TimeUnit.SECONDS));
+
+        MockSpan mockSpan = webSocketSpan();
+        long sent = 0;
+        for (MockSpan.LogEntry logEntry: mockSpan.logEntries()) {
+            Assert.assertEquals(TracingWebSocketFactory.STATS_EVENT, logEntry.fields().get("event"));
+            sent += (Long) logEntry.fields().get(TracingWebSocketFactory.MESSAGES_SENT);
+        }
+        Assert.assertTrue(mockSpan.logEntries().size() >= 2);
+        Assert.assertEquals(2, sent);
+        Assert.assertEquals(2L, mockSpan.tags().get(TracingWebSocketFactory.MESSAGES_SENT));
+    }
+
+    @Test
+    public void testFailure() throws Exception {
+        mockWebServer.enqueue(new MockResponse().setResponseCode(404));
+        WebSocket.Factory factory = new TracingWebSocketFactory.Builder(client, mockTracer).build();
+
+        final CountDownLatch failed = new CountDownLatch(1);
+        factory.newWebSocket(request(), new WebSocketListener() {
+            @Override
+            public void onFailure(WebSocket webSocket, Throwable t, Response response) {
+                failed.countDown();
+            }
+        });
+        Assert.assertTrue(failed.await(10, TimeUnit.SECONDS));
+
+        MockSpan mockSpan = webSocketSpan();
+        Assert.assertEquals(true, mockSpan.tags().get(Tags.ERROR.getKey()));
+        Assert.assertEquals(404, mockSpan.tags().get(Tags.HTTP_STATUS.getKey()));
+        Assert.assertEquals(Tags.ERROR.getKey(), mockSpan.logEntries().get(0).fields().get("event"));
+        Assert.assertNull(mockSpan.tags().get(TracingWebSocketFactory.CLOSE_CODE.getKey()));
+    }
+
+    private Request request() {
+        return new Request.Builder()
+                .url(mockWebServer.url("ws"))
+                .build();
+    }
+
+    private MockSpan webSocketSpan() throws InterruptedException {
+        // the span is finished after the listener returns
+        for (int i = 0; i < 100 && mockTracer.finishedSpans().isEmpty(); i++) {
+            Thread.sleep(10);
+        }
+        List<MockSpan> mockSpans = mockTracer.finishedSpans();
+        Assert.assertEquals(1, mockSpans.size());
+        Assert.assertEquals(TracingWebSocketFactory.OPERATION_NAME, mockSpans.get(0).operationName());
+        return mockSpans.get(0);
+    }
+
+    private static class ClosingListener extends WebSocketListener {
+        private final CountDownLatch closed;
+
+        ClosingListener(CountDownLatch closed) {
+            this.closed = closed;
+        }
+
+        @Override
+        public void onClosed(WebSocket webSocket, int code, String reason) {
+            closed.countDown();
+        }
+    }
+
+    private static class EchoListener extends WebSocketListener {
+        @Override
+        public void onMessage(WebSocket webSocket, String text) {
+            webSocket.send(text);
+        }
+
+        @Override
+        public void onMessage(WebSocket webSocket, ByteString bytes) {
+            webSocket.send(bytes);
+        }
+
+        @Override
+        public void onClosing(WebSocket webSocket, int code, String reason) {
+            webSocket.close(code, reason);
+        }
+    }
+}